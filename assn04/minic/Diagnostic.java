@@ -0,0 +1,87 @@
+package minic;
+
+import minic.scanner.SourcePos;
+
+/** A single diagnostic recorded by the ErrorReporter.
+ *
+ * <p>Diagnostics are immutable. The message is kept as the unexpanded
+ * template (e.g., "#9: incompatible types for binary operator"), together
+ * with the arguments that replace the % placeholders, so that each output
+ * format can render it on its own terms.
+ */
+public final class Diagnostic {
+
+  /** Severity of a diagnostic. */
+  public enum Severity {
+    ERROR("error"),
+    WARNING("warning");
+
+    public final String label;
+
+    Severity(String label) {
+      this.label = label;
+    }
+  }
+
+  public final Severity severity;
+  // Error number taken from a "#N:" message prefix, -1 if there is none:
+  public final int code;
+  public final String template;
+  public final String[] args;
+  public final int startLine;
+  public final int endLine;
+  public final int startCol;
+  public final int endCol;
+
+  /** Constructor of the Diagnostic class. */
+  public Diagnostic(Severity severity, String template, String[] args,
+      SourcePos pos) {
+    this.severity = severity;
+    this.code = codeOf(template);
+    this.template = template;
+    this.args = args.clone();
+    this.startLine = pos.startLine;
+    this.endLine = pos.endLine;
+    this.startCol = pos.startCol;
+    this.endCol = pos.endCol;
+  }
+
+  /** Method codeOf: extract N from a message template of the form "#N: ...".
+   * Returns -1 if the template carries no error number.
+   */
+  static int codeOf(String template) {
+    if (template.length() < 3 || template.charAt(0) != '#') {
+      return -1;
+    }
+    int c = 1;
+    int n = 0;
+    while (c < template.length() && Character.isDigit(template.charAt(c))) {
+      n = n * 10 + (template.charAt(c) - '0');
+      c++;
+    }
+    if (c == 1 || c >= template.length() || template.charAt(c) != ':') {
+      return -1;
+    }
+    return n;
+  }
+
+  /** Method message: the template with each % replaced by the next argument.
+   * A single argument is reused for every %, as the ErrorReporter always did.
+   */
+  public String message() {
+    StringBuilder sb = new StringBuilder(template.length() + 16);
+    int nextArg = 0;
+    for (int c = 0; c < template.length(); c++) {
+      if (template.charAt(c) == '%') {
+        if (args.length > 0) {
+          sb.append(args[Math.min(nextArg, args.length - 1)]);
+        }
+        nextArg++;
+      } else {
+        sb.append(template.charAt(c));
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -1,14 +1,44 @@
 package minic;
 
+import java.io.*;
+import java.util.ArrayList;
 import minic.scanner.SourcePos;
 
-/** Report errors on the terminal. */
+/** Collect the diagnostics of a compilation and render them.
+ *
+ * <p>Each reported Diagnostic is recorded and printed to the terminal right
+ * away. With setBuffered(true), printing is deferred until flush() writes
+ * all pending diagnostics in one go. Besides the terminal text, the
+ * collected diagnostics can be written as JSON lines or as a SARIF log for
+ * tools. All methods may be called from several threads.
+ */
 public class ErrorReporter {
 
-  int numErrors;
+  /** Output formats for the collected diagnostics. */
+  public enum Format {
+    TEXT,
+    JSON,
+    SARIF
+  }
+
+  volatile int numErrors;
+  private final ArrayList<Diagnostic> diagnostics;
+  // Number of diagnostics already written to the terminal:
+  private int numFlushed;
+  private boolean buffered;
 
   ErrorReporter() {
     numErrors = 0;
+    diagnostics = new ArrayList<Diagnostic>();
+    numFlushed = 0;
+    buffered = false;
+  }
+
+  /** Method setBuffered: if buffered is true, diagnostics are not printed
+   * when they are reported, but by the next flush().
+   */
+  public synchronized void setBuffered(boolean buffered) {
+    this.buffered = buffered;
   }
 
   /**
@@ -19,15 +49,170 @@ public class ErrorReporter {
    * @param pos contains the position information.
    */
   public void reportError(String message, String tokenName, SourcePos pos) {
-    System.out.print("ERROR: ");
-    for (int c = 0; c < message.length(); c++) {
-      if (message.charAt(c) == '%') {
-        System.out.print(tokenName);
+    report(Diagnostic.Severity.ERROR, message, pos, tokenName);
+  }
+
+  /**
+   * Report given warning. Warnings do not make a compilation unsuccessful.
+   *
+   * @param message contains the warning message.
+   * @param tokenName is an optional string to insert in place of % in message.
+   * @param pos contains the position information.
+   */
+  public void reportWarning(String message, String tokenName, SourcePos pos) {
+    report(Diagnostic.Severity.WARNING, message, pos, tokenName);
+  }
+
+  /** Method report: record a diagnostic of the given severity. */
+  public synchronized void report(Diagnostic.Severity severity, String message,
+      SourcePos pos, String... args) {
+    diagnostics.add(new Diagnostic(severity, message, args, pos));
+    if (severity == Diagnostic.Severity.ERROR) {
+      numErrors++;
+    }
+    if (!buffered) {
+      flush();
+    }
+  }
+
+  /** Method getNumErrors: return the number of errors reported so far. */
+  public int getNumErrors() {
+    return numErrors;
+  }
+
+  /** Method getDiagnostics: return a snapshot of all diagnostics so far. */
+  public synchronized Diagnostic[] getDiagnostics() {
+    return diagnostics.toArray(new Diagnostic[diagnostics.size()]);
+  }
+
+  /** Method flush: write all diagnostics that have not been written yet to
+   * the terminal, using a single write.
+   */
+  public synchronized void flush() {
+    if (numFlushed == diagnostics.size()) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = numFlushed; i < diagnostics.size(); i++) {
+      appendText(sb, diagnostics.get(i));
+    }
+    numFlushed = diagnostics.size();
+    System.out.print(sb);
+    System.out.flush();
+  }
+
+  /** Method write: render all diagnostics in the given format to a file.
+   *
+   * @param format selects text, JSON lines or SARIF output.
+   * @param fileName is the name of the output file.
+   * @param sourceName is the compiled source file, referenced from SARIF.
+   */
+  public void write(Format format, String fileName, String sourceName) {
+    Diagnostic[] all = getDiagnostics();
+    StringBuilder sb = new StringBuilder();
+    if (format == Format.TEXT) {
+      for (Diagnostic d : all) {
+        appendText(sb, d);
+      }
+    } else if (format == Format.JSON) {
+      for (Diagnostic d : all) {
+        appendJson(sb, d);
+        sb.append('\n');
+      }
+    } else {
+      appendSarif(sb, all, sourceName);
+    }
+    try {
+      FileWriter fstream = new FileWriter(fileName);
+      BufferedWriter out = new BufferedWriter(fstream);
+      out.write(sb.toString());
+      out.close();
+    } catch (Exception e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private void appendText(StringBuilder sb, Diagnostic d) {
+    sb.append(d.severity == Diagnostic.Severity.ERROR
+        ? "ERROR: " : "WARNING: ");
+    sb.append(d.message());
+    sb.append(' ').append(d.startCol).append("..").append(d.endCol);
+    sb.append(", line ").append(d.startLine).append(".\n");
+  }
+
+  private void appendJson(StringBuilder sb, Diagnostic d) {
+    sb.append("{\"severity\":\"").append(d.severity.label).append('"');
+    sb.append(",\"code\":").append(d.code);
+    sb.append(",\"message\":");
+    appendString(sb, d.message());
+    sb.append(",\"template\":");
+    appendString(sb, d.template);
+    sb.append(",\"args\":[");
+    for (int i = 0; i < d.args.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      appendString(sb, d.args[i]);
+    }
+    sb.append("],\"line\":").append(d.startLine);
+    sb.append(",\"endLine\":").append(d.endLine);
+    sb.append(",\"startCol\":").append(d.startCol);
+    sb.append(",\"endCol\":").append(d.endCol);
+    sb.append('}');
+  }
+
+  private void appendSarif(StringBuilder sb, Diagnostic[] all,
+      String sourceName) {
+    sb.append("{\"version\":\"2.1.0\",");
+    sb.append("\"$schema\":");
+    sb.append("\"https://json.schemastore.org/sarif-2.1.0.json\",");
+    sb.append("\"runs\":[{\"tool\":{\"driver\":{\"name\":\"MiniC\"}},");
+    sb.append("\"results\":[");
+    for (int i = 0; i < all.length; i++) {
+      Diagnostic d = all[i];
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("\n{\"ruleId\":");
+      appendString(sb, d.code >= 0 ? "MC" + d.code : "MC");
+      sb.append(",\"level\":\"").append(d.severity.label).append('"');
+      sb.append(",\"message\":{\"text\":");
+      appendString(sb, d.message());
+      sb.append("},\"locations\":[{\"physicalLocation\":");
+      sb.append("{\"artifactLocation\":{\"uri\":");
+      appendString(sb, sourceName);
+      sb.append("},\"region\":{\"startLine\":");
+      sb.append(Math.max(d.startLine, 1));
+      sb.append(",\"startColumn\":").append(Math.max(d.startCol, 1));
+      sb.append(",\"endLine\":").append(Math.max(d.endLine, 1));
+      sb.append(",\"endColumn\":").append(Math.max(d.endCol, 1) + 1);
+      sb.append("}}}]}");
+    }
+    sb.append("]}]}\n");
+  }
+
+  // Append s as a JSON string literal:
+  private void appendString(StringBuilder sb, String s) {
+    if (s == null) {
+      sb.append("null");
+      return;
+    }
+    sb.append('"');
+    for (int c = 0; c < s.length(); c++) {
+      char ch = s.charAt(c);
+      if (ch == '"' || ch == '\\') {
+        sb.append('\\').append(ch);
+      } else if (ch == '\n') {
+        sb.append("\\n");
+      } else if (ch == '\t') {
+        sb.append("\\t");
+      } else if (ch < 0x20) {
+        sb.append(String.format("\\u%04x", (int) ch));
       } else {
-        System.out.print(message.charAt(c));
+        sb.append(ch);
       }
     }
-    System.out.println(" " + pos.startCol + ".." + pos.endCol + ", line " + pos.startLine + ".");
-    numErrors++;
+    sb.append('"');
   }
 }
@@ -1,11 +1,13 @@
 package minic;
 
+import java.io.File;
 import minic.StdEnvironment;
 import minic.astgen.Program;
 import minic.parser.Parser;
 import minic.scanner.Scanner;
 import minic.scanner.SourceFile;
 import minic.semanticanalysis.SemanticAnalysis;
+import minic.semanticanalysis.SemanticCache;
 import minic.treedrawer.Drawer;
 import minic.treeprinter.Printer;
 import minic.unparser.Unparser;
@@ -27,6 +29,8 @@ public class MiniC {
   private static Printer printer;
   private static Unparser unparser;
   private static StdEnvironment stdenv;
+  // Checked function bodies kept between compilations in watch mode:
+  private static SemanticCache semCache;
   /* The abstract syntax tree representing
    * the source program:
    */
@@ -40,6 +44,9 @@ public class MiniC {
   private static boolean UnparseTree;
   private static String PrintTreeF;
   private static String UnparseTreeF;
+  private static String JsonDiagF;
+  private static String SarifDiagF;
+  private static boolean Watch;
 
 
   static void compileProgram(String sourceName) {
@@ -54,9 +61,10 @@ public class MiniC {
      */
     // scanner.enableDebugging();
     reporter = new ErrorReporter();
-    stdenv   = new StdEnvironment();
+    reporter.setBuffered(true);
+    stdenv   = StdEnvironment.get();
     parser   = new Parser(scanner, reporter);
-    sem      = new SemanticAnalysis(reporter);
+    sem      = new SemanticAnalysis(reporter, semCache);
     drawer   = new Drawer();
     printer  = new Printer();
     unparser = new Unparser();
@@ -81,11 +89,23 @@ public class MiniC {
       }
       System.out.println("Semantic Analysis ...");
       sem.check(AST);  // 2nd pass
+      if (semCache != null) {
+        System.out.println("Reused " + semCache.getHits() + " of "
+            + (semCache.getHits() + semCache.getMisses())
+            + " checked function bodies.");
+      }
       if (DrawTree2) {
         drawer.draw(AST);
       }
     }
 
+    reporter.flush();
+    if (!JsonDiagF.equals("")) {
+      reporter.write(ErrorReporter.Format.JSON, JsonDiagF, sourceName);
+    }
+    if (!SarifDiagF.equals("")) {
+      reporter.write(ErrorReporter.Format.SARIF, SarifDiagF, sourceName);
+    }
     boolean successful = (reporter.numErrors == 0);
     if (successful) {
       System.out.println("Compilation was successful.");
@@ -101,6 +121,9 @@ public class MiniC {
     System.out.println("Option: -envast to draw the StdEnvironment AST"); 
     System.out.println("Option: -t <file> to dump the AST to <file>");
     System.out.println("Option: -u <file> to unparse the AST to <file>");
+    System.out.println("Option: -json <file> to write diagnostics as JSON lines to <file>");
+    System.out.println("Option: -sarif <file> to write diagnostics as SARIF to <file>");
+    System.out.println("Option: -watch to recompile whenever the source file changes");
     System.exit(1);
   }
 
@@ -112,6 +135,9 @@ public class MiniC {
     PrintTreeF = "";
     UnparseTree = false;
     UnparseTreeF = "";
+    JsonDiagF = "";
+    SarifDiagF = "";
+    Watch = false;
     sourceName = "";
     int argIndex = 0;
     while (argIndex < args.length) {
@@ -142,6 +168,25 @@ public class MiniC {
           UnparseTreeF = args[argIndex];
           argIndex++;
         }
+      } else if (args[argIndex].equals("-watch")) {
+        Watch = true;
+        argIndex++;
+      } else if (args[argIndex].equals("-json")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          argIndex++;
+          JsonDiagF = args[argIndex];
+          argIndex++;
+        }
+      } else if (args[argIndex].equals("-sarif")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          argIndex++;
+          SarifDiagF = args[argIndex];
+          argIndex++;
+        }
       } else {
         sourceName = args[argIndex];
         argIndex++;
@@ -156,10 +201,35 @@ public class MiniC {
     }
   }
 
+  /** Method watch: recompile the source file each time it is modified.
+   * Function bodies that did not change are not checked again.
+   */
+  private static void watch(String sourceName) {
+    File f = new File(sourceName);
+    long lastModified = f.lastModified();
+    while (true) {
+      try {
+        Thread.sleep(500);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (f.lastModified() != lastModified) {
+        lastModified = f.lastModified();
+        compileProgram(sourceName);
+      }
+    }
+  }
+
   /** Main method, which is the entry point when the MiniC compiler is run. */
   public static void main(String[] args) {
     processCmdLine(args);
+    if (Watch) {
+      semCache = new SemanticCache();
+    }
     compileProgram(sourceName);
+    if (Watch) {
+      watch(sourceName);
+    }
   }
 
 }
@@ -0,0 +1,73 @@
+package minic.astgen;
+
+import java.util.ArrayList;
+
+/** Class Walker traverses an AST with an explicit work stack.
+ *
+ * <p>A visitor that is driven by a Walker does not call accept() on the
+ * children of a node. Instead, its visit method is the pre-order callback:
+ * it schedules the children with visit(child) and the post-order work with
+ * then(action). The items scheduled by one callback run in the order they
+ * were scheduled, and all of them run before anything scheduled earlier,
+ * so the result is the same as with a recursive visitor. The nesting depth
+ * of the AST is limited by the heap, not by the thread stack.
+ *
+ * <p>Example, for a visitor with a Walker field walk:
+ * <pre>
+ *   public void visit(BinaryExpr x) {
+ *     walk.visit(x.lAST);
+ *     walk.visit(x.rAST);
+ *     walk.then(() -&gt; checkOperands(x));
+ *   }
+ * </pre>
+ */
+public final class Walker {
+
+  private final Visitor visitor;
+  // Work stack of AST nodes to visit and actions to run:
+  private final ArrayList<Object> stack;
+  // Items scheduled by the callback that is running:
+  private final ArrayList<Object> pending;
+
+  public Walker(Visitor visitor) {
+    this.visitor = visitor;
+    this.stack = new ArrayList<Object>();
+    this.pending = new ArrayList<Object>();
+  }
+
+  /** Method walk: traverse the AST rooted at x. Returns when x and all
+   * items scheduled while traversing it are done. Calls may be nested.
+   */
+  public void walk(AST x) {
+    int base = stack.size();
+    stack.add(x);
+    while (stack.size() > base) {
+      Object item = stack.remove(stack.size() - 1);
+      int mark = pending.size();
+      if (item instanceof AST) {
+        ((AST) item).accept(visitor);
+      } else {
+        ((Runnable) item).run();
+      }
+      // Push in reverse, so that the first item scheduled is on top:
+      for (int i = pending.size() - 1; i >= mark; i--) {
+        stack.add(pending.remove(i));
+      }
+    }
+  }
+
+  /** Method visit: schedule a visit of x. A null x is ignored. */
+  public void visit(AST x) {
+    if (x != null) {
+      pending.add(x);
+    }
+  }
+
+  /** Method then: schedule an action, e.g., post-order work on a node
+   * after the visits of its children that were scheduled before.
+   */
+  public void then(Runnable action) {
+    pending.add(action);
+  }
+
+}
@@ -1,5 +1,6 @@
 package minic.parser;
 
+import java.util.ArrayList;
 import minic.ErrorReporter;
 import minic.astgen.*;
 import minic.parser.SyntaxError;
@@ -660,24 +661,31 @@ public class Parser {
     return new ForStmt(init, cond, update, body, pos);
   }
 
-  // Recursive helper function parseCompoundStmts():
+  // Helper function parseCompoundStmts(). Parses the statements in a loop
+  // and builds the right-nested StmtSequence afterwards, so that long
+  // statement lists do not need deep recursion:
   private Stmt parseCompoundStmts() throws SyntaxError {
-    if (!(currentToken.kind == Token.LEFTBRACE
+    ArrayList<Stmt> stmts = new ArrayList<Stmt>();
+    ArrayList<SourcePos> starts = new ArrayList<SourcePos>();
+    while (currentToken.kind == Token.LEFTBRACE
         || currentToken.kind == Token.IF
         || currentToken.kind == Token.WHILE
         || currentToken.kind == Token.FOR
         || currentToken.kind == Token.RETURN
-        || currentToken.kind == Token.ID)) {
-      return new EmptyStmt(previousTokenPosition);
+        || currentToken.kind == Token.ID) {
+      SourcePos pos = new SourcePos();
+      start(pos);
+      starts.add(pos);
+      stmts.add(parseStmt());
     }
-    SourcePos pos = new SourcePos();
-    start(pos);
-    Stmt st = null;
-    // You can use the following code after implementation of parseStmt():
-    st = parseStmt();
-    Stmt stRest = parseCompoundStmts();
-    finish(pos);
-    return new StmtSequence(st, stRest, pos);
+    Stmt seq = new EmptyStmt(previousTokenPosition);
+    for (int i = stmts.size() - 1; i >= 0; i--) {
+      // Every sequence ends with the last statement:
+      SourcePos pos = starts.get(i);
+      finish(pos);
+      seq = new StmtSequence(stmts.get(i), seq, pos);
+    }
+    return seq;
   }
 
   /**
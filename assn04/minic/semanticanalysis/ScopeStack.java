@@ -1,5 +1,7 @@
 package minic.semanticanalysis;
 
+import java.util.Map;
+import minic.StdEnvironment;
 import minic.astgen.*;
 
 /** Class ScopeStack, for MiniC scopestacks. */
@@ -7,10 +9,61 @@ final class ScopeStack {
 
   private int level;
   private IdEntry latest;
+  // If not null, retrieve() records here every identifier it resolves to
+  // an entry of the global scope:
+  private Map<String, Decl> globalRefs;
 
   public ScopeStack() {
     level = 1;  // MiniC's global scope is on level 1.
     latest = null;
+    globalRefs = null;
+  }
+
+  /** Method recordGlobalRefs().
+   *
+   *<p>Starts recording the global entries found by retrieve() into refs,
+   * or stops recording if refs is null.
+   */
+  public void recordGlobalRefs(Map<String, Decl> refs) {
+    globalRefs = refs;
+  }
+
+  /*
+   * Frozen global scope with the entries of the StdEnvironment. It is built
+   * on first use and shared by all scope stacks: a scope stack only ever
+   * adds entries on top of it.
+   */
+  private static final class Prelude {
+    static final IdEntry entries;
+
+    static {
+      IdEntry e = null;
+      e = new IdEntry("int", StdEnvironment.intTypeDecl, 1, e);
+      e = new IdEntry("bool", StdEnvironment.boolTypeDecl, 1, e);
+      e = new IdEntry("float", StdEnvironment.floatTypeDecl, 1, e);
+      e = new IdEntry("void", StdEnvironment.voidTypeDecl, 1, e);
+      e = new IdEntry("getInt", StdEnvironment.getInt, 1, e);
+      e = new IdEntry("putInt", StdEnvironment.putInt, 1, e);
+      e = new IdEntry("getBool", StdEnvironment.getBool, 1, e);
+      e = new IdEntry("putBool", StdEnvironment.putBool, 1, e);
+      e = new IdEntry("getFloat", StdEnvironment.getFloat, 1, e);
+      e = new IdEntry("putFloat", StdEnvironment.putFloat, 1, e);
+      e = new IdEntry("getString", StdEnvironment.getString, 1, e);
+      e = new IdEntry("putString", StdEnvironment.putString, 1, e);
+      e = new IdEntry("putLn", StdEnvironment.putLn, 1, e);
+      entries = e;
+    }
+  }
+
+  /** Method withStdEnvironment().
+   *
+   *<p>Returns a new scope stack on level 1 that already contains the
+   * built-in types and functions of the StdEnvironment.
+   */
+  public static ScopeStack withStdEnvironment() {
+    ScopeStack s = new ScopeStack();
+    s.latest = Prelude.entries;
+    return s;
   }
 
   /* Method openScope().
@@ -101,6 +154,9 @@ final class ScopeStack {
       } else if (entry.id.equals(id)) {
         searching = false;
         declAst = entry.declAst;
+        if (globalRefs != null && entry.level == 1) {
+          globalRefs.put(id, declAst);
+        }
       } else {
         entry = entry.previous;
       }
@@ -10,28 +10,29 @@ public class SemanticAnalysis implements Visitor {
 
   private ErrorReporter reporter;
   private ScopeStack scopeStack;
+  private Walker walk;
   private boolean isFunctionBlock;
   private Type currentFunctionReturnType;
+  // Checked function bodies of the previous run, or null:
+  private SemanticCache cache;
+  // Cache entry of the function body being checked, or null:
+  private SemanticCache.Entry cacheEntry;
 
   /** Constructor of the SemanticAnalysis visitor class. */
   public SemanticAnalysis(ErrorReporter reporter) {
+    this(reporter, null);
+  }
+
+  /** Constructor of the SemanticAnalysis visitor class that reuses the
+   * function bodies checked in previous runs with the same cache.
+   */
+  public SemanticAnalysis(ErrorReporter reporter, SemanticCache cache) {
     this.reporter = reporter;
-    this.scopeStack = new ScopeStack();
-    // Here we enter the entities from the StdEnvironment into the scope stack:
-    // The scope stack is on level 1 now (initial setting).
-    scopeStack.enter("int", StdEnvironment.intTypeDecl);
-    scopeStack.enter("bool", StdEnvironment.boolTypeDecl);
-    scopeStack.enter("float", StdEnvironment.floatTypeDecl);
-    scopeStack.enter("void", StdEnvironment.voidTypeDecl);
-    scopeStack.enter("getInt", StdEnvironment.getInt);
-    scopeStack.enter("putInt", StdEnvironment.putInt);
-    scopeStack.enter("getBool", StdEnvironment.getBool);
-    scopeStack.enter("putBool", StdEnvironment.putBool);
-    scopeStack.enter("getFloat", StdEnvironment.getFloat);
-    scopeStack.enter("putFloat", StdEnvironment.putFloat);
-    scopeStack.enter("getString", StdEnvironment.getString);
-    scopeStack.enter("putString", StdEnvironment.putString);
-    scopeStack.enter("putLn", StdEnvironment.putLn);
+    this.cache = cache;
+    this.cacheEntry = null;
+    // The global scope starts out with the entities from the StdEnvironment
+    // (the scope stack is on level 1, its initial setting):
+    this.scopeStack = ScopeStack.withStdEnvironment();
   }
 
   //
@@ -331,7 +332,11 @@ public class SemanticAnalysis implements Visitor {
    * (b) Each expression and value-or-variable-name is decorated by its type.
    */
   public void check(Program progAst) {
-    visit(progAst);
+    walk = new Walker(this);
+    if (cache != null) {
+      cache.beginRun();
+    }
+    walk.walk(progAst);
     // STEP 3:
     // Check Error 0
     //
@@ -348,7 +353,7 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for Program. */
   public void visit(Program x) {
-    x.D.accept(this);
+    walk.visit(x.D);
   }
 
   /** visit method for EmptyDecl. */
@@ -381,6 +386,19 @@ public class SemanticAnalysis implements Visitor {
     }
     /* End of your code */
 
+    // With a cache: reuse the checked body of the previous run if neither
+    // the function nor any global it refers to has changed.
+    SemanticCache.Entry fresh = null;
+    if (cache != null) {
+      fresh = cache.fingerprint(x);
+      SemanticCache.Entry old = cache.lookup(x.idAST.Lexeme, fresh);
+      if (old != null && dependenciesUnchanged(old)) {
+        cache.transplant(old, fresh, x, scopeStack);
+        cache.store(x.idAST.Lexeme, old);
+        return;
+      }
+    }
+
     // STEP 1:
     // Open a new scope in the scope stack. This will be the scope for the
     // function's formal parameters and the function's body.
@@ -396,8 +414,48 @@ public class SemanticAnalysis implements Visitor {
     // already opened one, for the formal parameters).
     isFunctionBlock = true; // needed in {...}, to avoid opening a fresh scope.
 
-    x.paramsAST.accept(this);
-    x.stmtAST.accept(this);
+    if (fresh == null) {
+      walk.visit(x.paramsAST);
+      walk.visit(x.stmtAST);
+      return;
+    }
+    SemanticCache.Entry entry = fresh;
+    int errors = reporter.getNumErrors();
+    cacheEntry = entry;
+    scopeStack.recordGlobalRefs(entry.globalRefs);
+    walk.visit(x.paramsAST);
+    walk.visit(x.stmtAST);
+    walk.then(() -> postVisit(x, entry, errors));
+  }
+
+  // Post-order part of visit(FunDecl) with a cache: keep the checked body.
+  private void postVisit(FunDecl x, SemanticCache.Entry entry, int errors) {
+    scopeStack.recordGlobalRefs(null);
+    cacheEntry = null;
+    if (reporter.getNumErrors() == errors) {
+      // Only bodies without errors are worth keeping.
+      for (String id : entry.globalRefs.keySet()) {
+        entry.deps.put(id, SemanticCache.signature(entry.globalRefs.get(id)));
+      }
+      entry.paramsAST = x.paramsAST;
+      entry.stmtAST = x.stmtAST;
+      cache.store(x.idAST.Lexeme, entry);
+    }
+  }
+
+  /**
+   * Method dependenciesUnchanged() returns true, if every global that the
+   * cached function body e referred to is still declared with the same
+   * signature at this point of the program.
+   */
+  private boolean dependenciesUnchanged(SemanticCache.Entry e) {
+    for (String id : e.deps.keySet()) {
+      Decl d = scopeStack.retrieve(id);
+      if (d == null || !SemanticCache.signature(d).equals(e.deps.get(id))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /** visit method for TypeDecl. */
@@ -408,8 +466,13 @@ public class SemanticAnalysis implements Visitor {
   /** visit method for FormalParamDecl. */
   public void visit(FormalParamDecl x) {
     if (x.astType instanceof ArrayType) {
-      ((ArrayType) x.astType).astExpr.accept(this);
+      walk.visit(((ArrayType) x.astType).astExpr);
     }
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(FormalParamDecl).
+  private void postVisit(FormalParamDecl x) {
     // STEP 1:
     // Here we visit the declaration of a formal parameter. You should enter
     // the lexeme x.astIdent.Lexeme together with its declaration x into
@@ -441,8 +504,8 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for FormalParamDeclSequence. */
   public void visit(FormalParamDeclSequence x) {
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
   }
 
   /** visit method for EmptyFormalParamDecl. */
@@ -451,14 +514,19 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for StmtSequence. */
   public void visit(StmtSequence x) {
-    x.s1AST.accept(this);
-    x.s2AST.accept(this);
+    walk.visit(x.s1AST);
+    walk.visit(x.s2AST);
   }
 
   /** visit method for AssignStmt. */
   public void visit(AssignStmt x) {
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(AssignStmt).
+  private void postVisit(AssignStmt x) {
     // STEP 2:
     // Here we type-check assignment statements
     // Two conditions must be ensured:
@@ -495,7 +563,12 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for IfStmt. */
   public void visit(IfStmt x) {
-    x.eAST.accept(this);
+    walk.visit(x.eAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(IfStmt), after its condition.
+  private void postVisit(IfStmt x) {
     // STEP 2:
     // Here we are visiting an if statement. If the condition x.eAST.type
     // is not of type bool, we have to issue Error 20. You can have a
@@ -503,21 +576,26 @@ public class SemanticAnalysis implements Visitor {
 
     /* Start of your code: */
     if (!(x.eAST instanceof EmptyExpr)) {
-      x.eAST.accept(this);
-      if (!x.eAST.type.Tequal(StdEnvironment.boolType)) {
-        reporter.reportError(errMsg[20], "", x.eAST.pos);
-      }
+      walk.visit(x.eAST);
+      walk.then(() -> {
+        if (!x.eAST.type.Tequal(StdEnvironment.boolType)) {
+          reporter.reportError(errMsg[20], "", x.eAST.pos);
+        }
+      });
     }
     /* End of your code */
-    x.thenAST.accept(this);
-    if (x.elseAST != null) {
-      x.elseAST.accept(this);
-    }
+    walk.visit(x.thenAST);
+    walk.visit(x.elseAST);
   }
 
   /** visit method for WhileStmt. */
   public void visit(WhileStmt x) {
-    x.eAST.accept(this);
+    walk.visit(x.eAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(WhileStmt), after its condition.
+  private void postVisit(WhileStmt x) {
     // STEP 2:
     // Here we are visiting a while statement. If the loop condition
     // is not of type bool, we have to issue Error 22. You can have a
@@ -527,28 +605,32 @@ public class SemanticAnalysis implements Visitor {
 
     /* Start of your code: */
     if (!(x.eAST instanceof EmptyExpr)) {
-      x.eAST.accept(this);
-      if (!x.eAST.type.Tequal(StdEnvironment.boolType)) {
-        reporter.reportError(errMsg[22], "", x.eAST.pos);
-      }
+      walk.visit(x.eAST);
+      walk.then(() -> {
+        if (!x.eAST.type.Tequal(StdEnvironment.boolType)) {
+          reporter.reportError(errMsg[22], "", x.eAST.pos);
+        }
+      });
     }
     /* End of your code */
-    x.stmtAST.accept(this);
+    walk.visit(x.stmtAST);
   }
 
   /** visit method for ForStmt. */
   public void visit(ForStmt x) {
-    x.e1AST.accept(this);
+    walk.visit(x.e1AST);
     if (!(x.e2AST instanceof EmptyExpr)) {
-      x.e2AST.accept(this);
-      if (!x.e2AST.type.Tequal(StdEnvironment.boolType)) {
-        reporter.reportError(errMsg[21], "", x.e2AST.pos);
-      }
+      walk.visit(x.e2AST);
+      walk.then(() -> {
+        if (!x.e2AST.type.Tequal(StdEnvironment.boolType)) {
+          reporter.reportError(errMsg[21], "", x.e2AST.pos);
+        }
+      });
     }
     if (!(x.e3AST instanceof EmptyExpr)) {
-      x.e3AST.accept(this);
+      walk.visit(x.e3AST);
     }
-    x.stmtAST.accept(this);
+    walk.visit(x.stmtAST);
   }
 
   /** visit method for ReturnStmt. */
@@ -569,7 +651,12 @@ public class SemanticAnalysis implements Visitor {
     //
     // Falling through here means x.eAST != EmptyExpr:
     //
-    x.eAST.accept(this);
+    walk.visit(x.eAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(ReturnStmt) with an expression.
+  private void postVisit(ReturnStmt x) {
     if (x.eAST.type.AssignableTo(currentFunctionReturnType)) {
       // Check for type coercion: if the function returns float, but
       // the expression of the return statement is of type int, we
@@ -610,9 +697,14 @@ public class SemanticAnalysis implements Visitor {
     // AstGen/CompoundStmt.java to learn about the AST children of this node.
 
     /* Start of your code: */
-    x.astDecl.accept(this);
-    x.astStmt.accept(this);
+    walk.visit(x.astDecl);
+    walk.visit(x.astStmt);
     /* End of your code */
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(CompoundStmt).
+  private void postVisit(CompoundStmt x) {
 
     // STEP 1:
     // Visiting of this {...} compound statement is done. Close the scope
@@ -643,16 +735,23 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for CallStmt. */
   public void visit(CallStmt x) {
-    x.eAST.accept(this);
+    walk.visit(x.eAST);
   }
 
   /** visit method for VarDecl. */
   public void visit(VarDecl x) {
     if (x.tAST instanceof ArrayType) {
-      ((ArrayType) x.tAST).astExpr.accept(this);
+      walk.visit(((ArrayType) x.tAST).astExpr);
     }
     if (!(x.eAST instanceof EmptyExpr)) {
-      x.eAST.accept(this);
+      walk.visit(x.eAST);
+    }
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(VarDecl).
+  private void postVisit(VarDecl x) {
+    if (!(x.eAST instanceof EmptyExpr)) {
       if (x.tAST instanceof ArrayType) {
         // STEP 4:
         //
@@ -756,13 +855,18 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for DeclSequence. */
   public void visit(DeclSequence x) {
-    x.D1.accept(this);
-    x.D2.accept(this);
+    walk.visit(x.D1);
+    walk.visit(x.D2);
   }
 
   /** visit method for VarExpr. */
   public void visit(VarExpr x) {
-    x.Ident.accept(this);
+    walk.visit(x.Ident);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(VarExpr).
+  private void postVisit(VarExpr x) {
     // STEP 2:
     // Here we are visiting a variable expression.
     // Its type is synthesized from the type of the applied occurrence
@@ -782,8 +886,13 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for AssignExpr. */
   public void visit(AssignExpr x) {
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(AssignExpr).
+  private void postVisit(AssignExpr x) {
     if (x.rAST.type.AssignableTo(x.lAST.type)) {
       // check for type coercion:
       if (x.lAST.type.Tequal(StdEnvironment.floatType)
@@ -849,8 +958,13 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for ArrayExpr. */
   public void visit(ArrayExpr x) {
-    x.idAST.accept(this);
-    x.indexAST.accept(this);
+    walk.visit(x.idAST);
+    walk.visit(x.indexAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(ArrayExpr).
+  private void postVisit(ArrayExpr x) {
     if (!x.indexAST.type.Tequal(StdEnvironment.intType)) {
       reporter.reportError(errMsg[17], "", x.indexAST.pos);
     }
@@ -865,9 +979,14 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for BinaryExpr. */
   public void visit(BinaryExpr x) {
-    x.lAST.accept(this);
-    x.oAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.oAST);
+    walk.visit(x.rAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(BinaryExpr).
+  private void postVisit(BinaryExpr x) {
     if (hasIntOrFloatArgs(x.oAST)) {
       if (x.lAST.type.Tequal(StdEnvironment.intType)
           && x.rAST.type.Tequal(StdEnvironment.intType)) {
@@ -940,8 +1059,13 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for UnaryExpr. */
   public void visit(UnaryExpr x) {
-    x.oAST.accept(this);
-    x.eAST.accept(this);
+    walk.visit(x.oAST);
+    walk.visit(x.eAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(UnaryExpr).
+  private void postVisit(UnaryExpr x) {
     // STEP 2:
     // Here we synthesize the type attribute for a unary operator.
     // x.eAST.type contains the type of the subexpression of this
@@ -1001,8 +1125,8 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for ActualParam. */
   public void visit(ActualParam x) {
-    x.pAST.accept(this);
-    x.type = x.pAST.type;
+    walk.visit(x.pAST);
+    walk.then(() -> x.type = x.pAST.type);
   }
 
   /** visit method for EmptyActualParam. */
@@ -1011,16 +1135,21 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for ActualParamSequence. */
   public void visit(ActualParamSequence x) {
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
   }
 
   /** visit method for CallExpr. */
   public void visit(CallExpr x) {
     // Here we perform semantic analysis of function calls:
     x.type = StdEnvironment.errorType;
-    x.idAST.accept(this);
-    x.paramAST.accept(this);
+    walk.visit(x.idAST);
+    walk.visit(x.paramAST);
+    walk.then(() -> postVisit(x));
+  }
+
+  // Post-order part of visit(CallExpr).
+  private void postVisit(CallExpr x) {
     // Retrieve the declaration of x from the scope stack:
     Decl d = scopeStack.retrieve(x.idAST.Lexeme);
     // STEP 3:
@@ -1109,8 +1238,8 @@ public class SemanticAnalysis implements Visitor {
 
   /** visit method for ExprSequence. */
   public void visit(ExprSequence x) {
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
   }
 
   /** visit method for ID. */
@@ -1122,6 +1251,9 @@ public class SemanticAnalysis implements Visitor {
     Decl binding = scopeStack.retrieve(x.Lexeme);
     if (binding != null) {
       x.declAST = binding;
+      if (cacheEntry != null && cacheEntry.globalRefs.get(x.Lexeme) == binding) {
+        cacheEntry.globalIds.add(x);
+      }
     }
     /* Start of your code: */
     else {
@@ -0,0 +1,429 @@
+package minic.semanticanalysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import minic.astgen.*;
+
+/** Class SemanticCache keeps the checked bodies of MiniC functions across
+ * compilations of the same program (e.g., in watch mode).
+ *
+ * <p>A function is identified by its name and by a textual fingerprint of
+ * its return type, formal parameters and body. Together with the body, the
+ * cache records every global declaration the body resolved through
+ * ScopeStack.retrieve(), and the signature that declaration had. If on the
+ * next run the fingerprint is the same and all those globals still have the
+ * same signature, the decorated body of the previous run (ID.declAST,
+ * Expr.type, i2f coercions) is put back into the new AST instead of checking
+ * the body again.
+ */
+public final class SemanticCache {
+
+  /** Cache entry for one function. */
+  static final class Entry {
+    // Fingerprint of return type, parameters and body:
+    final String text;
+    // Nodes of parameters and body in pre-order, before checking:
+    final ArrayList<AST> nodes;
+    // Globals resolved by the body while it was checked:
+    final HashMap<String, Decl> globalRefs;
+    // Signatures of those globals after the body was checked:
+    final HashMap<String, String> deps;
+    // Applied occurrences in the body that refer to globals:
+    final ArrayList<ID> globalIds;
+    Decl paramsAST;
+    Stmt stmtAST;
+
+    Entry(String text, ArrayList<AST> nodes) {
+      this.text = text;
+      this.nodes = nodes;
+      this.globalRefs = new HashMap<String, Decl>();
+      this.deps = new HashMap<String, String>();
+      this.globalIds = new ArrayList<ID>();
+    }
+  }
+
+  // Entries of the previous run, and the entries stored during this run:
+  private HashMap<String, Entry> previous;
+  private HashMap<String, Entry> current;
+  private int lookups;
+  private int hits;
+
+  /** Constructor of the SemanticCache class. */
+  public SemanticCache() {
+    previous = new HashMap<String, Entry>();
+    current = new HashMap<String, Entry>();
+  }
+
+  /** Number of function bodies reused in the last run. */
+  public int getHits() {
+    return hits;
+  }
+
+  /** Number of function bodies that had to be checked in the last run. */
+  public int getMisses() {
+    return lookups - hits;
+  }
+
+  /** Method beginRun: start a new compilation. Entries not stored again
+   * during the run are dropped at the next call.
+   */
+  void beginRun() {
+    if (!current.isEmpty()) {
+      previous = current;
+      current = new HashMap<String, Entry>();
+    }
+    lookups = 0;
+    hits = 0;
+  }
+
+  /** Method fingerprint: create a fresh entry for an unchecked function. */
+  Entry fingerprint(FunDecl f) {
+    Fingerprinter fp = new Fingerprinter();
+    fp.text.append(f.tAST.getClass().getSimpleName()).append('(');
+    fp.walk.walk(f.paramsAST);
+    fp.text.append(')');
+    fp.walk.walk(f.stmtAST);
+    return new Entry(fp.text.toString(), fp.nodes);
+  }
+
+  /** Method lookup: return the previous entry for function name with the
+   * given fingerprint, or null. An entry is handed out at most once per run.
+   */
+  Entry lookup(String name, Entry fresh) {
+    lookups++;
+    Entry e = previous.remove(name);
+    if (e == null || !e.text.equals(fresh.text)) {
+      return null;
+    }
+    return e;
+  }
+
+  /** Method store: keep entry e for function name for the next run. */
+  void store(String name, Entry e) {
+    current.put(name, e);
+  }
+
+  /** Method signature: a string that changes whenever something a function
+   * body may depend on changes in declaration d.
+   */
+  static String signature(Decl d) {
+    if (d instanceof FunDecl) {
+      FunDecl f = (FunDecl) d;
+      StringBuilder sb = new StringBuilder("fun ");
+      sb.append(typeSignature(f.tAST)).append('(');
+      Decl p = f.paramsAST;
+      while (p instanceof FormalParamDeclSequence) {
+        FormalParamDeclSequence s = (FormalParamDeclSequence) p;
+        sb.append(typeSignature(((FormalParamDecl) s.lAST).astType)).append(',');
+        p = s.rAST;
+      }
+      return sb.append(')').toString();
+    } else if (d instanceof VarDecl) {
+      return "var " + typeSignature(((VarDecl) d).tAST);
+    } else if (d instanceof FormalParamDecl) {
+      return "param " + typeSignature(((FormalParamDecl) d).astType);
+    }
+    return d.getClass().getSimpleName();
+  }
+
+  private static String typeSignature(Type t) {
+    if (t instanceof ArrayType) {
+      ArrayType a = (ArrayType) t;
+      String range = (a.astExpr instanceof IntExpr)
+          ? ((IntExpr) a.astExpr).astIL.Lexeme : "";
+      return typeSignature(a.astType) + "[" + range + "]";
+    }
+    return t.getClass().getSimpleName();
+  }
+
+  /** Method transplant: put the checked body of entry e into function f,
+   * whose fresh fingerprint is given, and link the body's references to
+   * globals to the declarations in scope now.
+   */
+  void transplant(Entry e, Entry fresh, FunDecl f, ScopeStack scopeStack) {
+    hits++;
+    // Same fingerprint, so both node lists have the same shape. The cached
+    // nodes take over the positions of the new source text:
+    for (int i = 0; i < e.nodes.size(); i++) {
+      e.nodes.get(i).pos = fresh.nodes.get(i).pos;
+    }
+    for (ID id : e.globalIds) {
+      id.declAST = scopeStack.retrieve(id.Lexeme);
+    }
+    f.paramsAST = e.paramsAST;
+    f.stmtAST = e.stmtAST;
+  }
+
+  /*
+   * Visitor that writes a fingerprint of a function part and collects its
+   * nodes in pre-order. Every node kind has a fixed number of children
+   * (the optional else-part is marked explicitly), so the sequence of node
+   * names and lexemes determines the tree.
+   */
+  private static final class Fingerprinter implements Visitor {
+
+    final StringBuilder text = new StringBuilder();
+    final ArrayList<AST> nodes = new ArrayList<AST>();
+    final Walker walk = new Walker(this);
+
+    private void node(AST x) {
+      nodes.add(x);
+      text.append(x.getClass().getSimpleName()).append(' ');
+    }
+
+    private void terminal(Terminal x) {
+      nodes.add(x);
+      text.append(x.getClass().getSimpleName()).append(' ');
+      text.append(x.Lexeme.length()).append(':').append(x.Lexeme).append(' ');
+    }
+
+    public void visit(Program x) {
+      node(x);
+      walk.visit(x.D);
+    }
+
+    public void visit(EmptyDecl x) {
+      node(x);
+    }
+
+    public void visit(FunDecl x) {
+      node(x);
+      walk.visit(x.tAST);
+      walk.visit(x.idAST);
+      walk.visit(x.paramsAST);
+      walk.visit(x.stmtAST);
+    }
+
+    public void visit(VarDecl x) {
+      node(x);
+      walk.visit(x.tAST);
+      walk.visit(x.idAST);
+      walk.visit(x.eAST);
+    }
+
+    public void visit(TypeDecl x) {
+      node(x);
+      walk.visit(x.tAST);
+    }
+
+    public void visit(FormalParamDecl x) {
+      node(x);
+      walk.visit(x.astType);
+      walk.visit(x.astIdent);
+    }
+
+    public void visit(FormalParamDeclSequence x) {
+      node(x);
+      walk.visit(x.lAST);
+      walk.visit(x.rAST);
+    }
+
+    public void visit(EmptyFormalParamDecl x) {
+      node(x);
+    }
+
+    public void visit(DeclSequence x) {
+      node(x);
+      walk.visit(x.D1);
+      walk.visit(x.D2);
+    }
+
+    public void visit(AssignStmt x) {
+      node(x);
+      walk.visit(x.lAST);
+      walk.visit(x.rAST);
+    }
+
+    public void visit(IfStmt x) {
+      node(x);
+      walk.visit(x.eAST);
+      walk.visit(x.thenAST);
+      if (x.elseAST != null) {
+        walk.then(() -> text.append("else "));
+        walk.visit(x.elseAST);
+      } else {
+        walk.then(() -> text.append("noelse "));
+      }
+    }
+
+    public void visit(WhileStmt x) {
+      node(x);
+      walk.visit(x.eAST);
+      walk.visit(x.stmtAST);
+    }
+
+    public void visit(ForStmt x) {
+      node(x);
+      walk.visit(x.e1AST);
+      walk.visit(x.e2AST);
+      walk.visit(x.e3AST);
+      walk.visit(x.stmtAST);
+    }
+
+    public void visit(ReturnStmt x) {
+      node(x);
+      walk.visit(x.eAST);
+    }
+
+    public void visit(CompoundStmt x) {
+      node(x);
+      walk.visit(x.astDecl);
+      walk.visit(x.astStmt);
+    }
+
+    public void visit(EmptyCompoundStmt x) {
+      node(x);
+    }
+
+    public void visit(EmptyStmt x) {
+      node(x);
+    }
+
+    public void visit(StmtSequence x) {
+      node(x);
+      walk.visit(x.s1AST);
+      walk.visit(x.s2AST);
+    }
+
+    public void visit(CallStmt x) {
+      node(x);
+      walk.visit(x.eAST);
+    }
+
+    public void visit(VarExpr x) {
+      node(x);
+      walk.visit(x.Ident);
+    }
+
+    public void visit(AssignExpr x) {
+      node(x);
+      walk.visit(x.lAST);
+      walk.visit(x.rAST);
+    }
+
+    public void visit(IntExpr x) {
+      node(x);
+      walk.visit(x.astIL);
+    }
+
+    public void visit(FloatExpr x) {
+      node(x);
+      walk.visit(x.astFL);
+    }
+
+    public void visit(BoolExpr x) {
+      node(x);
+      walk.visit(x.astBL);
+    }
+
+    public void visit(ArrayExpr x) {
+      node(x);
+      walk.visit(x.idAST);
+      walk.visit(x.indexAST);
+    }
+
+    public void visit(StringExpr x) {
+      node(x);
+      walk.visit(x.astSL);
+    }
+
+    public void visit(BinaryExpr x) {
+      node(x);
+      walk.visit(x.lAST);
+      walk.visit(x.oAST);
+      walk.visit(x.rAST);
+    }
+
+    public void visit(UnaryExpr x) {
+      node(x);
+      walk.visit(x.oAST);
+      walk.visit(x.eAST);
+    }
+
+    public void visit(EmptyExpr x) {
+      node(x);
+    }
+
+    public void visit(ActualParam x) {
+      node(x);
+      walk.visit(x.pAST);
+    }
+
+    public void visit(EmptyActualParam x) {
+      node(x);
+    }
+
+    public void visit(ActualParamSequence x) {
+      node(x);
+      walk.visit(x.lAST);
+      walk.visit(x.rAST);
+    }
+
+    public void visit(CallExpr x) {
+      node(x);
+      walk.visit(x.idAST);
+      walk.visit(x.paramAST);
+    }
+
+    public void visit(ExprSequence x) {
+      node(x);
+      walk.visit(x.lAST);
+      walk.visit(x.rAST);
+    }
+
+    public void visit(ID x) {
+      terminal(x);
+    }
+
+    public void visit(Operator x) {
+      terminal(x);
+    }
+
+    public void visit(IntLiteral x) {
+      terminal(x);
+    }
+
+    public void visit(FloatLiteral x) {
+      terminal(x);
+    }
+
+    public void visit(BoolLiteral x) {
+      terminal(x);
+    }
+
+    public void visit(StringLiteral x) {
+      terminal(x);
+    }
+
+    public void visit(IntType x) {
+      node(x);
+    }
+
+    public void visit(FloatType x) {
+      node(x);
+    }
+
+    public void visit(BoolType x) {
+      node(x);
+    }
+
+    public void visit(VoidType x) {
+      node(x);
+    }
+
+    public void visit(StringType x) {
+      node(x);
+    }
+
+    public void visit(ArrayType x) {
+      node(x);
+      walk.visit(x.astType);
+      walk.visit(x.astExpr);
+    }
+
+    public void visit(ErrorType x) {
+      node(x);
+    }
+  }
+
+}
@@ -0,0 +1,18 @@
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 0 of 3 checked function bodies.
+Compilation was successful.
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 2 of 3 checked function bodies.
+ERROR: #25: wrong type for actual parameter, parameter 1, 10..21, line 16.
+Compilation was unsuccessful.
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 0 of 3 checked function bodies.
+ERROR: #24: too few actual parameters 10..15, line 11.
+ERROR: #24: too few actual parameters 19..24, line 11.
+Compilation was unsuccessful.
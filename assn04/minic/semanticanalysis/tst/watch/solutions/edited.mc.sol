@@ -0,0 +1,16 @@
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 0 of 3 checked function bodies.
+Compilation was successful.
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 2 of 3 checked function bodies.
+Compilation was successful.
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 2 of 3 checked function bodies.
+ERROR: #9: incompatible types for binary operator 10..17, line 3.
+Compilation was unsuccessful.
@@ -0,0 +1,16 @@
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 0 of 3 checked function bodies.
+Compilation was successful.
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 3 of 3 checked function bodies.
+Compilation was successful.
+********** MiniC Compiler **********
+Syntax Analysis ...
+Semantic Analysis ...
+Reused 3 of 4 checked function bodies.
+ERROR: #6: incompatible types for = 7..14, line 24.
+Compilation was unsuccessful.
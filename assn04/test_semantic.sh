@@ -22,6 +22,8 @@ NC='\033[0m' # No Color
 # Directories
 TESTCASES_DIR="minic/semanticanalysis/tst/base/testcases"
 SOLUTIONS_DIR="minic/semanticanalysis/tst/base/solutions"
+WATCH_DIR="minic/semanticanalysis/tst/watch"
+DIAG_DIR="minic/semanticanalysis/tst/diagnostics"
 JAR_FILE="build/libs/MiniC-SemAnalysis.jar"
 TEMP_DIR="/tmp/minic_sem_test_$$"
 RESULTS_DIR="/tmp/minic_sem_results_$$"
@@ -37,6 +39,59 @@ PREV_PERCENTAGE=0
 declare -a PREV_FAILED_LIST
 RUN_COUNT=0
 
+# Wait until the output file $1 reports the end of $2 compilations
+wait_for_compilations() {
+    local i
+    for i in $(seq 100); do
+        if [ "$(grep -c '^Compilation was' "$1")" -ge "$2" ]; then
+            return 0
+        fi
+        sleep 0.1
+    done
+    return 1
+}
+
+# Run the versions 1.mc, 2.mc, ... of a watch testcase through one
+# -watch session and write its output to $2
+run_watch_test() {
+    local casedir=$1
+    local output_file=$2
+    local workdir="$TEMP_DIR/watch_$(basename "$casedir")"
+    mkdir -p "$workdir"
+    cp "$casedir/1.mc" "$workdir/prog.mc"
+    java -ea -jar "$JAR_FILE" -watch "$workdir/prog.mc" > "$output_file" 2>&1 &
+    local pid=$!
+    local n=1
+    local step
+    for step in "$casedir"/[2-9].mc; do
+        [ -f "$step" ] || continue
+        wait_for_compilations "$output_file" $n
+        # Let the modification time change; the rename swaps in the whole file
+        sleep 1
+        cp "$step" "$workdir/next.mc"
+        mv "$workdir/next.mc" "$workdir/prog.mc"
+        n=$((n + 1))
+    done
+    wait_for_compilations "$output_file" $n
+    kill $pid 2>/dev/null
+    wait $pid 2>/dev/null
+}
+
+# Record the result of comparing $2 (expected) with $3 (actual) for test $1
+check_output() {
+    local testname=$1
+    local difffile="$RESULTS_DIR/diff_$(echo "$testname" | tr '/' '_').txt"
+    if diff -u --ignore-all-space "$2" "$3" > "$difffile" 2>&1; then
+        rm -f "$difffile"
+        echo -e "  ${GREEN}✓${NC} Test ${testname}: PASSED"
+        PASSED_TESTS=$((PASSED_TESTS + 1))
+    else
+        echo -e "  ${RED}✗${NC} Test ${testname}: FAILED"
+        FAILED_TESTS=$((FAILED_TESTS + 1))
+        FAILED_LIST+=("${testname}")
+    fi
+}
+
 # Function to run tests
 run_tests() {
     # Counters
@@ -140,6 +195,33 @@ run_tests() {
         fi
     done
 
+    # Step 3: Watch mode, where unchanged function bodies are reused
+    for casedir in "$WATCH_DIR"/testcases/*/; do
+        [ -d "$casedir" ] || continue
+        casename=$(basename "$casedir")
+        TOTAL_TESTS=$((TOTAL_TESTS + 1))
+        output_file="$TEMP_DIR/output_watch_${casename}.txt"
+        run_watch_test "$casedir" "$output_file"
+        check_output "watch/${casename}" \
+            "$WATCH_DIR/solutions/${casename}.mc.sol" "$output_file"
+    done
+
+    # Step 4: Diagnostics written as JSON lines and as SARIF
+    for testfile in "$DIAG_DIR"/testcases/*.mc; do
+        [ -f "$testfile" ] || continue
+        testname=$(basename "$testfile" .mc)
+        TOTAL_TESTS=$((TOTAL_TESTS + 1))
+        json_file="$TEMP_DIR/${testname}.json"
+        sarif_file="$TEMP_DIR/${testname}.sarif"
+        java -ea -jar "$JAR_FILE" -json "$json_file" -sarif "$sarif_file" \
+            "$testfile" > /dev/null 2>&1
+        cat "$json_file" "$sarif_file" > "$TEMP_DIR/output_diag_${testname}.txt"
+        cat "$DIAG_DIR/solutions/${testname}.json" \
+            "$DIAG_DIR/solutions/${testname}.sarif" > "$TEMP_DIR/expected_diag_${testname}.txt"
+        check_output "diagnostics/${testname}" \
+            "$TEMP_DIR/expected_diag_${testname}.txt" "$TEMP_DIR/output_diag_${testname}.txt"
+    done
+
     # Calculate percentages
     if [ $TOTAL_TESTS -gt 0 ]; then
         PERCENTAGE=$((PASSED_TESTS * 100 / TOTAL_TESTS))
@@ -161,7 +243,7 @@ run_tests() {
         BONUS_PERCENTAGE=0
     fi
 
-    # Step 3: Display summary
+    # Step 5: Display summary
     echo ""
     echo -e "${BLUE}========================================${NC}"
     echo -e "${BLUE}  Test Summary${NC}"
@@ -292,8 +374,9 @@ run_tests() {
             fi
 
             # Show where to find the diff
-            if [ -f "$RESULTS_DIR/diff_${failure}.txt" ]; then
-                echo -e "      Diff saved: ${RESULTS_DIR}/diff_${failure}.txt"
+            difffile="$RESULTS_DIR/diff_$(echo "$failure" | tr '/' '_').txt"
+            if [ -f "$difffile" ]; then
+                echo -e "      Diff saved: ${difffile}"
             fi
         done
         echo ""
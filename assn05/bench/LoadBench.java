@@ -0,0 +1,47 @@
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+/** LoadBench class: measures the time the JVM needs to load, verify and
+ * initialize a class generated by the MiniC compiler.
+ *
+ * <p>Usage: java LoadBench.java directory className [runs]
+ *
+ * <p>Each run loads the class with a new class loader, so that it is
+ * read, verified and initialized again; the first runs, while the JIT
+ * warms up, are not counted.
+ */
+public class LoadBench {
+
+  private static final int WARMUP = 5;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.out.println("Usage: java LoadBench.java directory className [runs]");
+      System.exit(1);
+    }
+    URL[] path = {new File(args[0]).toURI().toURL()};
+    String name = args[1];
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+    long[] times = new long[runs];
+    for (int k = -WARMUP; k < runs; k++) {
+      // The platform class loader as the parent: with the application
+      // class loader, a class on the class path would be loaded only once.
+      URLClassLoader loader =
+          new URLClassLoader(path, ClassLoader.getPlatformClassLoader());
+      long start = System.nanoTime();
+      Class.forName(name, true, loader);
+      long time = System.nanoTime() - start;
+      loader.close();
+      if (k >= 0) {
+        times[k] = time;
+      }
+    }
+    Arrays.sort(times);
+    System.out.printf("%s: median %.3f ms, min %.3f ms, max %.3f ms"
+        + " (%d runs)%n", args[0], times[runs / 2] / 1e6, times[0] / 1e6,
+        times[runs - 1] / 1e6, runs);
+  }
+
+}
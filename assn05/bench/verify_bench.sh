@@ -0,0 +1,106 @@
+#!/usr/bin/env bash
+
+# Class-load and verification benchmark for the two ways of writing class
+# files:
+#   jasmin:    the Jasmin code assembled by jasmin.jar (class file version
+#              45.3, no StackMapTable: the JVM infers the types of each
+#              method with the old verifier),
+#   classfile: the same code written with -classfile (current version with
+#              a StackMapTable: the type-checking verifier is used).
+#
+# Usage: bench/verify_bench.sh [functions] [runs]
+#
+# Generates a MiniC program with the given number of functions (default
+# 500), each with loops, if statements and short-circuit conditions, and
+# reports the time to load, verify and initialize each class. The
+# compiler is built with "./gradlew jarProvidedFrontEnd" (our driver,
+# which knows -classfile, with the provided front end) unless MINIC sets
+# another compiler command; MINIC_OPTS adds options (e.g. MINIC_OPTS=-ir).
+# -classfile needs JDK 25. The script stops if either way fails to
+# produce the class file.
+
+set -eu
+
+ROOT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+FUNCTIONS="${1:-500}"
+RUNS="${2:-30}"
+if [ -z "${MINIC:-}" ]; then
+  (cd "$ROOT_DIR" && ./gradlew jarProvidedFrontEnd -q)
+  MINIC="java -jar $ROOT_DIR/build/libs/MiniC-CodeGen.jar"
+fi
+MINIC_OPTS="${MINIC_OPTS:-}"
+JASMIN_JAR="$ROOT_DIR/resources/jasmin_2.4/jasmin.jar"
+
+WORK_DIR="$(mktemp -d /tmp/minic_verify_bench_XXXXXX)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+# 1) Generate the program:
+{
+  for ((i = 0; i < FUNCTIONS; i++)); do
+    cat <<MC
+int f$i(int n, float x) {
+  int s;
+  int k;
+  float y;
+  s = 0;
+  y = x;
+  for (k = 0; k < n; k = k + 1) {
+    if (k > 3 && s < 100 || k == $((i % 7))) {
+      s = s + k * $i;
+    } else {
+      y = y * 0.5;
+    }
+    while (s > 1000 && !(y < 0.0)) {
+      s = s - 1000;
+    }
+  }
+  if (y > 1.0 || s == 0) {
+    s = s + 1;
+  }
+  return s;
+}
+
+MC
+  done
+  echo "int main() {"
+  echo "  putInt(f0(10, 1.5));"
+  echo "  putLn();"
+  echo "  return 0;"
+  echo "}"
+} > "$WORK_DIR/big.mc"
+
+# Print the end of log file $2 of mode $1 and stop:
+fail() {
+  echo "$1: no class file" >&2
+  tail -n 5 "$WORK_DIR/$1/$2" >&2
+  exit 1
+}
+
+# 2) Compile it both ways:
+mkdir -p "$WORK_DIR/jasmin" "$WORK_DIR/classfile"
+(
+  cd "$WORK_DIR/jasmin"
+  $MINIC $MINIC_OPTS ../big.mc > compile.log 2>&1
+) || fail jasmin compile.log
+(
+  cd "$WORK_DIR/jasmin"
+  java -jar "$JASMIN_JAR" big.j > asm.log 2>&1
+) || fail jasmin asm.log
+(
+  cd "$WORK_DIR/classfile"
+  $MINIC $MINIC_OPTS -classfile ../big.mc > compile.log 2>&1
+) || fail classfile compile.log
+
+# 3) Load and verify:
+echo "Program: $FUNCTIONS functions, $(wc -l < "$WORK_DIR/big.mc") lines"
+for mode in jasmin classfile; do
+  class="$WORK_DIR/$mode/big.class"
+  if [ ! -f "$class" ]; then
+    fail "$mode" compile.log
+  fi
+  version="$(javap -v "$class" | sed -n 's/.*major version: *//p')"
+  maps="$(javap -v "$class" | grep -c 'StackMapTable' || true)"
+  echo "$mode: $(wc -c < "$class") bytes, major version $version, $maps StackMapTables"
+  java -Xverify:all "$ROOT_DIR/bench/LoadBench.java" "$WORK_DIR/$mode" big "$RUNS" \
+    | sed "s|$WORK_DIR/||"
+done
@@ -1,8 +1,19 @@
 package minic;
 
+import java.io.FileWriter;
+import java.io.IOException;
 import minic.StdEnvironment;
 import minic.astgen.Program;
+import minic.codegen.ClassFileAssembler;
 import minic.codegen.Emitter;
+import minic.codegen.IrEmitter;
+import minic.codegen.Peephole;
+import minic.ir.CallGraph;
+import minic.ir.IrBuilder;
+import minic.ir.IrOptimizer;
+import minic.ir.Module;
+import minic.optimizer.ConstantFolder;
+import minic.optimizer.RangeAnalysis;
 import minic.parser.Parser;
 import minic.scanner.Scanner;
 import minic.scanner.SourceFile;
@@ -23,7 +34,12 @@ public class MiniC {
   private static Scanner scanner;
   private static Parser parser;
   private static SemanticAnalysis sem;
+  private static ConstantFolder folder;
+  private static RangeAnalysis range;
   private static Emitter emitter;
+  private static IrEmitter irEmitter;
+  private static Peephole peephole;
+  private static ClassFileAssembler assembler;
   private static ErrorReporter reporter;
   private static Drawer drawer;
   private static Printer printer;
@@ -40,8 +56,18 @@ public class MiniC {
   private static boolean DrawStdEnvTree;
   private static boolean PrintTree;
   private static boolean UnparseTree;
+  private static boolean Optimize;
+  private static boolean UseIr;
+  private static String IrDumpF;
+  private static String CallGraphF;
+  private static boolean WriteClassFile;
+  private static boolean StaticMethods;
+  private static String PeepholeStatsF;
+  private static String RangeStatsF;
   private static String PrintTreeF;
   private static String UnparseTreeF;
+  private static String JsonDiagF;
+  private static String SarifDiagF;
 
   static void compileProgram(String sourceName) {
     System.out.println("********** MiniC Compiler **********");
@@ -55,10 +81,30 @@ public class MiniC {
      */
     // scanner.enableDebugging();
     reporter = new ErrorReporter();
-    stdenv   = new StdEnvironment();
+    reporter.setBuffered(true);
+    stdenv   = StdEnvironment.get();
     parser   = new Parser(scanner, reporter);
     sem      = new SemanticAnalysis(reporter);
-    emitter  = new Emitter(sourceName, reporter);
+    folder   = new ConstantFolder();
+    range    = new RangeAnalysis(reporter);
+    peephole = new Peephole();
+    assembler = WriteClassFile ? new ClassFileAssembler() : null;
+    if (UseIr) {
+      irEmitter = new IrEmitter(sourceName, reporter);
+      if (Optimize) {
+        irEmitter.setPeephole(peephole);
+      }
+      irEmitter.setStaticMethods(StaticMethods);
+      irEmitter.setAssembler(assembler);
+    } else {
+      emitter = new Emitter(sourceName, reporter);
+      if (Optimize) {
+        emitter.setPeephole(peephole);
+        emitter.setRangeAnalysis(range);
+      }
+      emitter.setStaticMethods(StaticMethods);
+      emitter.setAssembler(assembler);
+    }
     drawer   = new Drawer();
     printer  = new Printer();
     unparser = new Unparser();
@@ -86,12 +132,38 @@ public class MiniC {
       if (DrawTree2) {
         drawer.draw(AST);
       }
+      if (reporter.numErrors == 0 && Optimize) {
+        folder.fold(AST);
+      }
+      if (reporter.numErrors == 0) {
+        range.analyze(AST);
+        if (!RangeStatsF.equals("")) {
+          writeFile(RangeStatsF, range.getStatistics());
+        }
+      }
       if (reporter.numErrors == 0) {
         System.out.println("Code Generation ...");
-        emitter.genCode(AST);
+        if (UseIr) {
+          genCodeFromIr();
+        } else {
+          emitter.genCode(AST);
+        }
+        if (!PeepholeStatsF.equals("")) {
+          writeFile(PeepholeStatsF, peephole.getStatistics());
+        }
+        if (reporter.numErrors == 0 && WriteClassFile) {
+          assembler.assemble();
+        }
       }
     }
 
+    reporter.flush();
+    if (!JsonDiagF.equals("")) {
+      reporter.write(ErrorReporter.Format.JSON, JsonDiagF, sourceName);
+    }
+    if (!SarifDiagF.equals("")) {
+      reporter.write(ErrorReporter.Format.SARIF, SarifDiagF, sourceName);
+    }
     boolean successful = (reporter.numErrors == 0);
     if (successful) {
       System.out.println("Compilation was successful.");
@@ -100,6 +172,36 @@ public class MiniC {
     }
   }
 
+  // Write text to the file name, for the dumps and statistics options:
+  private static void writeFile(String name, String text) {
+    try (FileWriter w = new FileWriter(name)) {
+      w.write(text);
+    } catch (IOException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /* Method genCodeFromIr: lower the AST to the IR and generate the
+   * code from there.
+   */
+  private static void genCodeFromIr() {
+    Module module = new IrBuilder(reporter).build(AST, irEmitter.getClassName());
+    if (reporter.numErrors == 0 && !CallGraphF.equals("")) {
+      writeFile(CallGraphF, new CallGraph(module).toString());
+    }
+    IrOptimizer optimizer = new IrOptimizer();
+    if (reporter.numErrors == 0 && Optimize) {
+      optimizer.optimize(module);
+    }
+    if (!IrDumpF.equals("")) {
+      writeFile(IrDumpF, optimizer.getStatistics() + module.toString());
+    }
+    if (reporter.numErrors == 0) {
+      irEmitter.genCode(module);
+    }
+  }
+
   private static void usage() {
     System.out.println("Usage: MiniC [options] filename");
     System.out.println("Option: -ast1 to draw the AST before semantic analysis");
@@ -107,6 +209,16 @@ public class MiniC {
     System.out.println("Option: -envast to draw the StdEnvironment AST"); 
     System.out.println("Option: -t <file> to dump the AST to <file>");
     System.out.println("Option: -u <file> to unparse the AST to <file>");
+    System.out.println("Option: -O0 to disable the optimizations");
+    System.out.println("Option: -ir to generate code via the SSA intermediate representation");
+    System.out.println("Option: -irdump <file> to dump the IR to <file> (implies -ir)");
+    System.out.println("Option: -callgraph <file> to dump the call graph and function summaries to <file> (implies -ir)");
+    System.out.println("Option: -classfile to write the class file directly, without Jasmin");
+    System.out.println("Option: -static to generate the MiniC functions as static methods");
+    System.out.println("Option: -peepstats <file> to write the statistics of the peephole optimizer to <file>");
+    System.out.println("Option: -rangestats <file> to write the statistics of the array index range analysis to <file>");
+    System.out.println("Option: -json <file> to write diagnostics as JSON lines to <file>");
+    System.out.println("Option: -sarif <file> to write diagnostics as SARIF to <file>");
     System.exit(1);
   }
 
@@ -118,6 +230,16 @@ public class MiniC {
     PrintTreeF = "";
     UnparseTree = false;
     UnparseTreeF = "";
+    Optimize = true;
+    UseIr = false;
+    IrDumpF = "";
+    CallGraphF = "";
+    WriteClassFile = false;
+    PeepholeStatsF = "";
+    RangeStatsF = "";
+    StaticMethods = false;
+    JsonDiagF = "";
+    SarifDiagF = "";
     sourceName = "";
     int argIndex = 0;
     while (argIndex < args.length) {
@@ -148,6 +270,68 @@ public class MiniC {
           UnparseTreeF = args[argIndex];
           argIndex++;
         }
+      } else if (args[argIndex].equals("-O0")) {
+        Optimize = false;
+        argIndex++;
+      } else if (args[argIndex].equals("-ir")) {
+        UseIr = true;
+        argIndex++;
+      } else if (args[argIndex].equals("-irdump")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          UseIr = true;
+          argIndex++;
+          IrDumpF = args[argIndex];
+          argIndex++;
+        }
+      } else if (args[argIndex].equals("-callgraph")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          UseIr = true;
+          argIndex++;
+          CallGraphF = args[argIndex];
+          argIndex++;
+        }
+      } else if (args[argIndex].equals("-classfile")) {
+        WriteClassFile = true;
+        argIndex++;
+      } else if (args[argIndex].equals("-static")) {
+        StaticMethods = true;
+        argIndex++;
+      } else if (args[argIndex].equals("-peepstats")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          argIndex++;
+          PeepholeStatsF = args[argIndex];
+          argIndex++;
+        }
+      } else if (args[argIndex].equals("-rangestats")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          argIndex++;
+          RangeStatsF = args[argIndex];
+          argIndex++;
+        }
+      } else if (args[argIndex].equals("-json")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          argIndex++;
+          JsonDiagF = args[argIndex];
+          argIndex++;
+        }
+      } else if (args[argIndex].equals("-sarif")) {
+        if (args.length < argIndex + 2) {
+          usage();
+        } else {
+          argIndex++;
+          SarifDiagF = args[argIndex];
+          argIndex++;
+        }
       } else {
         sourceName = args[argIndex];
         argIndex++;
@@ -5,43 +5,51 @@ import minic.scanner.SourcePos;
 
 /** The StdEnvironment class that contains the AST that belongs to the
  * MiniC standard environment, i.e., built-in functions and types.
+ *
+ * <p>The standard environment never changes, so it is built only once per
+ * JVM, when the class is first used. The JVM runs this class initialization
+ * exactly once and makes its result visible to all threads, so concurrent
+ * compilations can share the ASTs below. They must not be modified.
  */
 public final class StdEnvironment {
 
   // The pre-defined language environment for MiniC:
 
   // ASTs representing the MiniC standard type declarations:
-  public static TypeDecl intTypeDecl;
-  public static TypeDecl boolTypeDecl;
-  public static TypeDecl floatTypeDecl;
-  public static TypeDecl stringTypeDecl;
-  public static TypeDecl voidTypeDecl;
-  public static TypeDecl errorTypeDecl;
+  public static final TypeDecl intTypeDecl;
+  public static final TypeDecl boolTypeDecl;
+  public static final TypeDecl floatTypeDecl;
+  public static final TypeDecl stringTypeDecl;
+  public static final TypeDecl voidTypeDecl;
+  public static final TypeDecl errorTypeDecl;
 
   // ASTs representing the MiniC standard types:
-  public static Type intType;
-  public static Type boolType;
-  public static Type floatType;
-  public static Type stringType;
-  public static Type voidType;
-  public static Type errorType;
+  public static final Type intType;
+  public static final Type boolType;
+  public static final Type floatType;
+  public static final Type stringType;
+  public static final Type voidType;
+  public static final Type errorType;
 
   // ASTs representing the declarations of our pre-defined MiniC functions:
-  public static FunDecl getInt;
-  public static FunDecl putInt;
-  public static FunDecl getBool;
-  public static FunDecl putBool;
-  public static FunDecl getFloat;
-  public static FunDecl putFloat;
-  public static FunDecl getString;
-  public static FunDecl putString;
-  public static FunDecl putLn;
-
-  public Program ast;
-  private static SourcePos dummyPos = new SourcePos();
-
-  /** Constructor of StdEnvironment class. */
-  public StdEnvironment() {
+  public static final FunDecl getInt;
+  public static final FunDecl putInt;
+  public static final FunDecl getBool;
+  public static final FunDecl putBool;
+  public static final FunDecl getFloat;
+  public static final FunDecl putFloat;
+  public static final FunDecl getString;
+  public static final FunDecl putString;
+  public static final FunDecl putLn;
+
+  // The AST of the whole standard environment:
+  private static final Program prelude;
+  private static final StdEnvironment instance;
+
+  public final Program ast;
+
+  static {
+    SourcePos dummyPos = new SourcePos();
 
     /*
      * Generate the declarations for the StdEnvironment,
@@ -158,8 +166,20 @@ public final class StdEnvironment {
     intTypeDecl = new TypeDecl(intType, dummyPos);
     d = new DeclSequence(intTypeDecl, d, dummyPos);
 
-    ast = new Program(d, dummyPos);
+    prelude = new Program(d, dummyPos);
+    instance = new StdEnvironment();
+  }
+
+  /** Constructor of StdEnvironment class. Prefer StdEnvironment.get(),
+   * all instances share the same AST.
+   */
+  public StdEnvironment() {
+    ast = prelude;
+  }
 
+  /** Method get: return the shared standard environment. */
+  public static StdEnvironment get() {
+    return instance;
   }
 
 }
@@ -0,0 +1,364 @@
+package minic.codegen;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
+import java.lang.classfile.TypeKind;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** ClassFileAssembler class that writes the class file for the code of
+ * the Emitter or the IrEmitter itself, with the java.lang.classfile API
+ * of the JDK, instead of running jasmin.jar in a second JVM.
+ *
+ * <p>An emitter that has an assembler (see Emitter.setAssembler()) passes
+ * each directive, label and instruction to add() as it generates it,
+ * instead of writing it to the Jasmin file. The instructions are decoded
+ * with Opcode once, when they are added, and assemble() builds the class
+ * from them; no Jasmin file is written or read.
+ *
+ * <p>It accepts the subset of Jasmin that the emitters generate: the
+ * .class, .super, .field and .method directives, labels, and the
+ * instructions of class JVM, plus new, dup and invokespecial for the
+ * constructor and main. Comments and the .limit and .var directives are
+ * skipped: the classfile API computes the maximum stack size and the
+ * number of locals of each method itself.
+ *
+ * <p>Unlike Jasmin 2.4, which writes class files of version 45.3, the
+ * assembler writes the current class file version of the JDK it runs on,
+ * with a StackMapTable attribute in each method that has branches: a
+ * frame with the types of the locals and of the operand stack at each
+ * branch target (the labels of if, while and for statements and of the
+ * short-circuit operators). The JVM then checks the methods with the
+ * type-checking verifier, in one pass, instead of inferring the types
+ * with the old verifier. Code that cannot be reached (statements after
+ * a return) has no frame and is replaced by nop ... athrow.
+ */
+public class ClassFileAssembler {
+
+  // A field or method: access flags, name, descriptor, and for a method
+  // its code:
+  private static final class Member {
+    int flags;
+    String name;
+    String descriptor;
+    ArrayList<Instruction> code = new ArrayList<Instruction>();
+  }
+
+  // An instruction, or the definition of a label if op is null:
+  private static final class Instruction {
+    final Opcode op;
+    final String arg;
+
+    Instruction(Opcode op, String arg) {
+      this.op = op;
+      this.arg = arg;
+    }
+  }
+
+  private String className;
+  private String superName;
+  private int classFlags;
+  private ArrayList<Member> fields;
+  private ArrayList<Member> methods;
+  // The method whose code is being added, null outside of methods:
+  private Member method;
+
+  /** Constructor of the ClassFileAssembler class. */
+  public ClassFileAssembler() {
+    fields = new ArrayList<Member>();
+    methods = new ArrayList<Member>();
+  }
+
+  /** Method assemble: write the class file of the class added so far to
+   * the current directory, where Jasmin would.
+   */
+  public void assemble() {
+    try {
+      ClassFile cf = ClassFile.of(
+          ClassFile.StackMapsOption.GENERATE_STACK_MAPS);
+      byte[] bytes = cf.build(
+          ClassDesc.ofInternalName(className), cb -> {
+            cb.withVersion(ClassFile.latestMajorVersion(), 0);
+            cb.withFlags(classFlags | ClassFile.ACC_SUPER);
+            cb.withSuperclass(ClassDesc.ofInternalName(superName));
+            for (Member f : fields) {
+              cb.withField(f.name, ClassDesc.ofDescriptor(f.descriptor),
+                  f.flags);
+            }
+            for (Member m : methods) {
+              cb.withMethodBody(m.name,
+                  MethodTypeDesc.ofDescriptor(m.descriptor), m.flags,
+                  code -> genCode(code, m));
+            }
+          });
+      FileOutputStream out = new FileOutputStream(className + ".class");
+      out.write(bytes);
+      out.close();
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /** Method add: add a line of the generated code, a directive, a label
+   * or an instruction. Comments, and the .limit and .var directives, are
+   * skipped.
+   */
+  public void add(String line) {
+    line = line.trim();
+    if (line.isEmpty() || line.startsWith(";")) {
+      return;
+    }
+    String[] words = line.split("\\s+");
+    if (words[0].equals(".class")) {
+      classFlags = getFlags(words, 1, words.length - 1);
+      className = words[words.length - 1];
+    } else if (words[0].equals(".super")) {
+      superName = words[1];
+    } else if (words[0].equals(".field")) {
+      Member f = new Member();
+      f.flags = getFlags(words, 1, words.length - 2);
+      f.name = words[words.length - 2];
+      f.descriptor = words[words.length - 1];
+      fields.add(f);
+    } else if (words[0].equals(".method")) {
+      method = new Member();
+      method.flags = getFlags(words, 1, words.length - 1);
+      String sig = words[words.length - 1];
+      method.name = sig.substring(0, sig.indexOf('('));
+      method.descriptor = sig.substring(sig.indexOf('('));
+      methods.add(method);
+    } else if (words[0].equals(".end")) {
+      method = null;
+    } else if (words[0].equals(".limit") || words[0].equals(".var")) {
+      return;
+    } else if (method != null && line.endsWith(":")) {
+      method.code.add(
+          new Instruction(null, line.substring(0, line.length() - 1)));
+    } else if (method != null && !words[0].startsWith(".")) {
+      method.code.add(decode(line));
+    } else {
+      throw new IllegalArgumentException("unexpected " + line);
+    }
+  }
+
+  /* Method decode returns the instruction of a line of code, with the
+   * operand of the short forms with the slot in the name (iload_0 etc.)
+   * made explicit.
+   */
+  private Instruction decode(String line) {
+    int sp = line.indexOf(' ');
+    Opcode op = Opcode.forMnemonic(sp < 0 ? line : line.substring(0, sp));
+    String arg = sp < 0 ? "" : line.substring(sp + 1).trim();
+    if (op == null) {
+      throw new IllegalArgumentException(method.name
+          + ": unknown instruction " + line);
+    }
+    if (op.getLongForm() != null) {
+      arg = String.valueOf(op.getSlot());
+      op = op.getLongForm();
+    }
+    return new Instruction(op, arg);
+  }
+
+  private static int getFlags(String[] words, int from, int to) {
+    int flags = 0;
+    for (int k = from; k < to; k++) {
+      if (words[k].equals("public")) {
+        flags |= ClassFile.ACC_PUBLIC;
+      } else if (words[k].equals("private")) {
+        flags |= ClassFile.ACC_PRIVATE;
+      } else if (words[k].equals("static")) {
+        flags |= ClassFile.ACC_STATIC;
+      } else if (words[k].equals("final")) {
+        flags |= ClassFile.ACC_FINAL;
+      } else {
+        throw new IllegalArgumentException("unknown flag " + words[k]);
+      }
+    }
+    return flags;
+  }
+
+  /* Method genCode translates the instructions of method m. The builder
+   * picks the shortest encoding of loads, stores and constants again
+   * (iload 2 becomes iload_2, ldc of a constant beyond the first 256
+   * entries becomes ldc_w).
+   */
+  private void genCode(CodeBuilder code, Member m) {
+    HashMap<String, Label> labels = new HashMap<String, Label>();
+    for (Instruction i : m.code) {
+      Opcode op = i.op;
+      String arg = i.arg;
+      if (op == null) {
+        code.labelBinding(getLabel(code, labels, arg));
+        continue;
+      }
+      switch (op) {
+        case ICONST_M1: code.iconst_m1(); break;
+        case ICONST_0: code.iconst_0(); break;
+        case ICONST_1: code.iconst_1(); break;
+        case ICONST_2: code.iconst_2(); break;
+        case ICONST_3: code.iconst_3(); break;
+        case ICONST_4: code.iconst_4(); break;
+        case ICONST_5: code.iconst_5(); break;
+        case FCONST_0: code.fconst_0(); break;
+        case FCONST_1: code.fconst_1(); break;
+        case FCONST_2: code.fconst_2(); break;
+        case BIPUSH: code.bipush(Integer.parseInt(arg)); break;
+        case SIPUSH: code.sipush(Integer.parseInt(arg)); break;
+        case LDC: code.ldc(getConstant(arg)); break;
+        case ILOAD: code.iload(Integer.parseInt(arg)); break;
+        case FLOAD: code.fload(Integer.parseInt(arg)); break;
+        case ALOAD: code.aload(Integer.parseInt(arg)); break;
+        case ISTORE: code.istore(Integer.parseInt(arg)); break;
+        case FSTORE: code.fstore(Integer.parseInt(arg)); break;
+        case ASTORE: code.astore(Integer.parseInt(arg)); break;
+        case IINC: {
+          String[] a = arg.split("\\s+");
+          code.iinc(Integer.parseInt(a[0]), Integer.parseInt(a[1]));
+          break;
+        }
+        case IADD: code.iadd(); break;
+        case ISUB: code.isub(); break;
+        case IMUL: code.imul(); break;
+        case IDIV: code.idiv(); break;
+        case INEG: code.ineg(); break;
+        case IXOR: code.ixor(); break;
+        case FADD: code.fadd(); break;
+        case FSUB: code.fsub(); break;
+        case FMUL: code.fmul(); break;
+        case FDIV: code.fdiv(); break;
+        case FNEG: code.fneg(); break;
+        case FCMPL: code.fcmpl(); break;
+        case FCMPG: code.fcmpg(); break;
+        case I2F: code.i2f(); break;
+        case NEWARRAY: code.newarray(getTypeKind(arg)); break;
+        case IALOAD: code.iaload(); break;
+        case FALOAD: code.faload(); break;
+        case BALOAD: code.baload(); break;
+        case IASTORE: code.iastore(); break;
+        case FASTORE: code.fastore(); break;
+        case BASTORE: code.bastore(); break;
+        case POP: code.pop(); break;
+        case DUP: code.dup(); break;
+        case NEW: code.new_(ClassDesc.ofInternalName(arg)); break;
+        case RETURN: code.return_(); break;
+        case IRETURN: code.ireturn(); break;
+        case FRETURN: code.freturn(); break;
+        case GETSTATIC:
+        case PUTSTATIC: {
+          // owner.name descriptor:
+          String[] a = arg.split("\\s+");
+          int dot = a[0].lastIndexOf('.');
+          ClassDesc owner = ClassDesc.ofInternalName(a[0].substring(0, dot));
+          String name = a[0].substring(dot + 1);
+          ClassDesc type = ClassDesc.ofDescriptor(a[1]);
+          if (op == Opcode.GETSTATIC) {
+            code.getstatic(owner, name, type);
+          } else {
+            code.putstatic(owner, name, type);
+          }
+          break;
+        }
+        case INVOKESTATIC:
+        case INVOKEVIRTUAL:
+        case INVOKESPECIAL: {
+          // owner/name(descriptor):
+          int paren = arg.indexOf('(');
+          int slash = arg.lastIndexOf('/', paren);
+          ClassDesc owner = ClassDesc.ofInternalName(arg.substring(0, slash));
+          String name = arg.substring(slash + 1, paren);
+          MethodTypeDesc type = MethodTypeDesc.ofDescriptor(
+              arg.substring(paren));
+          if (op == Opcode.INVOKESTATIC) {
+            code.invokestatic(owner, name, type);
+          } else if (op == Opcode.INVOKEVIRTUAL) {
+            code.invokevirtual(owner, name, type);
+          } else {
+            code.invokespecial(owner, name, type);
+          }
+          break;
+        }
+        case GOTO: code.goto_(getLabel(code, labels, arg)); break;
+        case IFEQ: code.ifeq(getLabel(code, labels, arg)); break;
+        case IFNE: code.ifne(getLabel(code, labels, arg)); break;
+        case IFLT: code.iflt(getLabel(code, labels, arg)); break;
+        case IFLE: code.ifle(getLabel(code, labels, arg)); break;
+        case IFGT: code.ifgt(getLabel(code, labels, arg)); break;
+        case IFGE: code.ifge(getLabel(code, labels, arg)); break;
+        case IF_ICMPEQ: code.if_icmpeq(getLabel(code, labels, arg)); break;
+        case IF_ICMPNE: code.if_icmpne(getLabel(code, labels, arg)); break;
+        case IF_ICMPLT: code.if_icmplt(getLabel(code, labels, arg)); break;
+        case IF_ICMPLE: code.if_icmple(getLabel(code, labels, arg)); break;
+        case IF_ICMPGT: code.if_icmpgt(getLabel(code, labels, arg)); break;
+        case IF_ICMPGE: code.if_icmpge(getLabel(code, labels, arg)); break;
+        default:
+          throw new IllegalArgumentException(m.name + ": unknown instruction "
+              + op.getMnemonic());
+      }
+    }
+  }
+
+  private static Label getLabel(CodeBuilder code, HashMap<String, Label> labels,
+                                String name) {
+    Label l = labels.get(name);
+    if (l == null) {
+      l = code.newLabel();
+      labels.put(name, l);
+    }
+    return l;
+  }
+
+  // The element type of newarray (int, float or boolean):
+  private static TypeKind getTypeKind(String arg) {
+    switch (arg) {
+      case "int": return TypeKind.INT;
+      case "float": return TypeKind.FLOAT;
+      case "boolean": return TypeKind.BOOLEAN;
+      default:
+        throw new IllegalArgumentException("unknown array type " + arg);
+    }
+  }
+
+  /* Method getConstant returns the operand of an ldc: a string in double
+   * quotes, with the escapes of Jasmin, an int, or a float as written by
+   * Float.toString().
+   */
+  private static ConstantDesc getConstant(String arg) {
+    if (arg.startsWith("\"")) {
+      StringBuilder s = new StringBuilder();
+      for (int k = 1; k < arg.length() - 1; k++) {
+        char c = arg.charAt(k);
+        if (c == '\\' && k + 1 < arg.length() - 1) {
+          c = arg.charAt(++k);
+          switch (c) {
+            case 'n': c = '\n'; break;
+            case 't': c = '\t'; break;
+            case 'r': c = '\r'; break;
+            case 'b': c = '\b'; break;
+            case 'f': c = '\f'; break;
+            case 'u':
+              c = (char) Integer.parseInt(arg.substring(k + 1, k + 5), 16);
+              k += 4;
+              break;
+            default: break; // \" \' \\
+          }
+        }
+        s.append(c);
+      }
+      return s.toString();
+    }
+    try {
+      return Integer.valueOf(arg);
+    } catch (NumberFormatException e) {
+      return Float.valueOf(arg);
+    }
+  }
+
+}
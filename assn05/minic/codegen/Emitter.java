@@ -1,255 +1,271 @@
 package minic.codegen;
 
-import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import minic.ErrorReporter;
 import minic.StdEnvironment;
 import minic.astgen.*;
+import minic.optimizer.RangeAnalysis;
+import minic.scanner.SourcePos;
 
 /** Emitter class that implements the code generator. */
-public class Emitter implements Visitor {
+public class Emitter extends JasminWriter implements Visitor {
 
   private ErrorReporter reporter;
-  private FileWriter fstream;
-  private BufferedWriter out;
-  private String className;
-  private int indent;
-  private final int indentPerLevel = 3; // amount of indentation per level
-  private Frame frame;
-
-  // Upper bound for the maximum operand stack height for a MiniC function.
-  // The actual stack height can be determined by interpreting the function's
-  // bytecode. 
-  private int maxOperandStackSize = 150;
-
-  private int labelIndent;
+  private RangeAnalysis range;
+  private boolean staticMethods;
+  private Walker walk;
+
   private boolean isMain; // true if we are generating code for "main".
   private boolean isGlobalScope; // true if we are in the outermost "global" scope.
+  // The "label" of genCond() for the code that follows:
+  private static final int FALL = -1;
 
   /** Constructor of the Emitter class. */
   public Emitter(String infile, ErrorReporter reporter) {
-    try {
-      this.isMain = false;
-      this.isGlobalScope = true;
-      this.reporter = reporter;
-      labelIndent = 1;
-      String outfile;
-      String namepart;
-      // Create output file name:
-      File f = new File(infile);
-      namepart = f.getName(); // strip directory part
-      int l = namepart.length();
-      if (namepart.charAt(l - 3) == '.'
-          && namepart.charAt(l - 2) == 'm'
-          && namepart.charAt(l - 1) == 'c') {
-        className = new String(namepart.substring(0, l - 3));
-        outfile = new String(namepart.substring(0, l - 2));
-        outfile = outfile.concat("j");
-      } else {
-        className = new String(namepart);
-        outfile = new String(namepart);
-        outfile = outfile.concat(".j");
-      }
-      // Create output file: 
-      fstream = new FileWriter(outfile);
-      out = new BufferedWriter(fstream);
-      indent = 0;
-    } catch (Exception e) {
-      // Catch exception if any:
-      System.err.println("Error: " + e.getMessage());
-      System.exit(1);
-    }
+    super(infile);
+    this.isMain = false;
+    this.isGlobalScope = true;
+    this.reporter = reporter;
   }
 
-  /** Top-level routine, called by the compiler driver. */
-  public void genCode(Program progAst) {
-    visit(progAst);
-    try {
-      out.close();
-    } catch (Exception e) {
-      // Catch exception if any
-      System.err.println("Error: " + e.getMessage());
-      System.exit(1);
-    }
+  /** Generate the counted for loops found by range, tested at the
+   * bottom and with a hoisted limit (see emitCountedLoop()).
+   */
+  public void setRangeAnalysis(RangeAnalysis range) {
+    this.range = range;
   }
 
-  /*
-   * emit* routines output Jasmin assembly code of various sorts.
+  /** Generate all MiniC functions as static methods, called with
+   * invokestatic, instead of instance methods of an object that main
+   * creates.
    */
+  public void setStaticMethods(boolean staticMethods) {
+    this.staticMethods = staticMethods;
+  }
+
+  /** Top-level routine, called by the compiler driver. */
+  public void genCode(Program progAst) {
+    walk = new Walker(this);
+    openOutput();
+    walk.walk(progAst);
+    closeOutput();
+  }
 
-  /** Method emitNoIndent(String s).
-   * Emit a single string, but do not indent.
+  /** Method emitBCONST.
+   * Emit a boolean constant.
    */
-  private void emitNoIndent(String s) {
-    try {
-      out.write(s + "\n");
-    } catch (Exception e) {
-      System.err.println("Error: " + e.getMessage());
-      System.exit(1);
+  private void emitBCONST(boolean value) {
+    if (value) {
+      emit(JVM.ICONST_1); // true = 1 with the JVM
+    } else {
+      emit(JVM.ICONST_0);
     }
   }
 
-  /** Method emit(String s).
-   * Emit single string using indentation.
+  /** Method emitILOAD.
+   * Emit an integer load instruction for the given local
+   * variable array slot index.
    */
-  private void emit(String s) {
-    try {
-      for (int i = 1; i <= indent * indentPerLevel; i++) {
-        out.write(" ");
-      }
-      out.write(s + "\n");
-    } catch (Exception e) {
-      System.err.println("Error: " + e.getMessage());
-      System.exit(1);
-    }
+  private void emitILOAD(int localVarIndex) {
+    emit(Opcode.ILOAD.withLocal(localVarIndex));
   }
 
-  /** Method emit(String s, int value).
-   * Overloaded emit() method for string and int output.
+  /** Method getIncrement.
+   * Returns c if the assignment of e to the local int variable d can be
+   * done with "iinc", because e is d + c, c + d or d - c for an integer
+   * literal c that fits into the signed byte operand of iinc, and null
+   * otherwise.
    */
-  private void emit(String s, int value) {
-    emit(s + " " + value);
+  private Integer getIncrement(Decl d, Expr e) {
+    if (d.isGlobal() || !typeOfDecl(d).Tequal(StdEnvironment.intType)
+        || d.index > 255 || !(e instanceof BinaryExpr)) {
+      return null;
+    }
+    BinaryExpr b = (BinaryExpr) e;
+    String op = b.oAST.Lexeme;
+    Expr var = b.lAST;
+    Expr lit = b.rAST;
+    if (op.equals("+") && b.lAST instanceof IntExpr) {
+      var = b.rAST;
+      lit = b.lAST;
+    } else if (!op.equals("+") && !op.equals("-")) {
+      return null;
+    }
+    if (!(var instanceof VarExpr) || !(lit instanceof IntExpr)
+        || ((VarExpr) var).Ident.declAST != d) {
+      return null;
+    }
+    int c = ((IntExpr) lit).GetValue();
+    if (op.equals("-")) {
+      c = -c;
+    }
+    return c >= -128 && c <= 127 ? c : null;
   }
 
-  /** Method emit(String s, float value).
-   * Overloaded emit() method for string and float output.
+  /** Method emitISTORE.
+   * Emit an integer store instruction for the given local
+   * variable array slot index.
    */
-  private void emit(String s, float value) {
-    emit(s + " " + value);
+  private void emitISTORE(int localVarIndex) {
+    emit(Opcode.ISTORE.withLocal(localVarIndex));
   }
 
-  /** Method getLabelString.
-   * For a given label nr, return the string representation
-   * of that label.
+  /** Method emitFLOAD.
+   * Emit a floating point load instruction for the given local
+   * variable array slot index.
    */
-  private String getLabelString(int label) {
-    return new String("Label" + label);
+  private void emitFLOAD(int localVarIndex) {
+    emit(Opcode.FLOAD.withLocal(localVarIndex));
   }
 
-  /** Method emitLabel.
-   * Emit the defining occurrence of a label.
+  /** Method emitFSTORE.
+   * Emit a floating point store instruction for given
+   * variable index.
    */
-  private void emitLabel(int label) {
-    assert (label >= 0);
-    String ind = new String(" ");
-    for (int i = 1; i <= labelIndent; i++) {
-      ind = ind.concat(" ");
-    }
-    emitNoIndent(ind + "Label" + label + ":");
+  private void emitFSTORE(int localVarIndex) {
+    emit(Opcode.FSTORE.withLocal(localVarIndex));
   }
 
-  /** Method emitICONST.
-   * Emit an integer constant.
+  /** Method emitALOAD.
+   * Emit a reference (array) load instruction for the given local
+   * variable array slot index.
    */
-  private void emitICONST(int value) {
-    if (value == -1) {
-      emit(JVM.ICONST_M1);
-    } else if (value >= 0 && value <= 5) {
-      emit(JVM.ICONST + "_" + value);
-    } else if (value >= -128 && value <= 127) {
-      emit(JVM.BIPUSH, value);
-    } else if (value >= -32768 && value <= 32767) {
-      emit(JVM.SIPUSH, value);
-    } else {
-      emit(JVM.LDC, value);
-    }
+  private void emitALOAD(int localVarIndex) {
+    emit(Opcode.ALOAD.withLocal(localVarIndex));
   }
 
-  /** Method emitFCONST.
-   * Emit a floating point constant.
+  /** Method emitASTORE.
+   * Emit a reference (array) store instruction for the given local
+   * variable array slot index.
    */
-  private void emitFCONST(float value) {
-    if (value == 0.0) {
-      emit(JVM.FCONST_0);
-    } else if (value == 1.0) {
-      emit(JVM.FCONST_1);
-    } else if (value == 2.0) {
-      emit(JVM.FCONST_2);
-    } else {
-      emit(JVM.LDC, value);
-    }
+  private void emitASTORE(int localVarIndex) {
+    emit(Opcode.ASTORE.withLocal(localVarIndex));
   }
 
-  /** Method emitBCONST.
-   * Emit a boolean constant.
+  /** Method emitArrayLoad.
+   * Emit the load of an element of type t, with the array and the index
+   * on the stack. bool arrays are boolean[] (baload).
    */
-  private void emitBCONST(boolean value) {
-    if (value) {
-      emit(JVM.ICONST_1); // true = 1 with the JVM
+  private void emitArrayLoad(Type t) {
+    if (t.Tequal(StdEnvironment.intType)) {
+      emit(JVM.IALOAD);
+    } else if (t.Tequal(StdEnvironment.floatType)) {
+      emit(JVM.FALOAD);
+    } else if (t.Tequal(StdEnvironment.boolType)) {
+      emit(JVM.BALOAD);
     } else {
-      emit(JVM.ICONST_0);
+      assert (false);
     }
   }
 
-  /** Method emitILOAD.
-   * Emit an integer load instruction for the given local
-   * variable array slot index.
+  /** Method emitArrayStore.
+   * Emit the store of an element of type t, with the array, the index
+   * and the value on the stack.
    */
-  private void emitILOAD(int localVarIndex) {
-    if (localVarIndex == 0) {
-      emit(JVM.ILOAD_0);
-    } else if (localVarIndex == 1) {
-      emit(JVM.ILOAD_1);
-    } else if (localVarIndex == 2) {
-      emit(JVM.ILOAD_2);
-    } else if (localVarIndex == 3) {
-      emit(JVM.ILOAD_3);
+  private void emitArrayStore(Type t) {
+    if (t.Tequal(StdEnvironment.intType)) {
+      emit(JVM.IASTORE);
+    } else if (t.Tequal(StdEnvironment.floatType)) {
+      emit(JVM.FASTORE);
+    } else if (t.Tequal(StdEnvironment.boolType)) {
+      emit(JVM.BASTORE);
     } else {
-      emit(JVM.ILOAD, localVarIndex);
+      assert (false);
     }
   }
 
-  /** Method emitISTORE.
-   * Emit an integer store instruction for the given local
-   * variable array slot index.
+  /** Method emitNewArray.
+   * Emit the allocation of an array of type t, which newarray fills with
+   * zeros (0, 0.0 and false).
    */
-  private void emitISTORE(int localVarIndex) {
-    if (localVarIndex == 0) {
-      emit(JVM.ISTORE_0);
-    } else if (localVarIndex == 1) {
-      emit(JVM.ISTORE_1);
-    } else if (localVarIndex == 2) {
-      emit(JVM.ISTORE_2);
-    } else if (localVarIndex == 3) {
-      emit(JVM.ISTORE_3);
+  private void emitNewArray(ArrayType t) {
+    emitICONST(t.GetRange());
+    if (t.astType.Tequal(StdEnvironment.intType)) {
+      emit(JVM.NEWARRAY + " int");
+    } else if (t.astType.Tequal(StdEnvironment.floatType)) {
+      emit(JVM.NEWARRAY + " float");
+    } else if (t.astType.Tequal(StdEnvironment.boolType)) {
+      emit(JVM.NEWARRAY + " boolean");
     } else {
-      emit(JVM.ISTORE, localVarIndex);
+      assert (false);
     }
   }
 
-  /** Method emitFLOAD.
-   * Emit a floating point load instruction for the given local
-   * variable array slot index.
+  /** Method emitArrayInitializer.
+   * Emit the stores of the elements of the initializer list init into
+   * the new array on top of the stack, which stays there. Elements that
+   * are constant zeros are skipped, newarray has stored them already.
+   * Runs of at least BULK_INIT_MIN constants are stored in bulk (see
+   * emitConstantElements()). The elements that are not constant are
+   * walked here, in a nested walk, so that the code is emitted before
+   * this method returns, also in the class initializer.
    */
-  private void emitFLOAD(int localVarIndex) {
-    if (localVarIndex == 0) {
-      emit(JVM.FLOAD_0);
-    } else if (localVarIndex == 1) {
-      emit(JVM.FLOAD_1);
-    } else if (localVarIndex == 2) {
-      emit(JVM.FLOAD_2);
-    } else if (localVarIndex == 3) {
-      emit(JVM.FLOAD_3);
-    } else {
-      emit(JVM.FLOAD, localVarIndex);
+  private void emitArrayInitializer(Expr init, Type elemType) {
+    ArrayList<Expr> elems = new ArrayList<Expr>();
+    while (init instanceof ExprSequence) {
+      elems.add(((ExprSequence) init).lAST);
+      init = ((ExprSequence) init).rAST;
+    }
+    int i = 0;
+    while (i < elems.size()) {
+      int end = i;
+      while (end < elems.size() && getConstantBits(elems.get(end)) != null) {
+        end++;
+      }
+      if (end - i >= BULK_INIT_MIN) {
+        int[] bits = new int[end - i];
+        for (int k = 0; k < bits.length; k++) {
+          bits[k] = getConstantBits(elems.get(i + k));
+        }
+        emitConstantElements(bits, i, getTypeDescriptorLabel(elemType));
+        i = end;
+        continue;
+      }
+      for (end = Math.max(end, i + 1); i < end; i++) {
+        Expr e = elems.get(i);
+        Integer bits = getConstantBits(e);
+        if (bits != null && bits == 0) {
+          continue;
+        }
+        emit(JVM.DUP);
+        emitICONST(i);
+        walk.walk(e);
+        emitArrayStore(elemType);
+      }
     }
   }
 
-  /** Method emitFSTORE.
-   * Emit a floating point store instruction for given
-   * variable index.
+  /** Method getConstantBits.
+   * For a literal e, possibly negated or converted with i2f, return its
+   * value as the bits of the JVM: an int, 0 or 1 for a bool, and the raw
+   * int bits for a float. For any other expression, return null.
    */
-  private void emitFSTORE(int localVarIndex) {
-    if (localVarIndex == 0) {
-      emit(JVM.FSTORE_0);
-    } else if (localVarIndex == 1) {
-      emit(JVM.FSTORE_1);
-    } else if (localVarIndex == 2) {
-      emit(JVM.FSTORE_2);
-    } else if (localVarIndex == 3) {
-      emit(JVM.FSTORE_3);
-    } else {
-      emit(JVM.FSTORE, localVarIndex);
+  private Integer getConstantBits(Expr e) {
+    boolean negate = false;
+    boolean toFloat = false;
+    while (e instanceof UnaryExpr) {
+      String op = ((UnaryExpr) e).oAST.Lexeme;
+      if (op.equals("-")) {
+        negate = !negate;
+      } else if (op.equals("i2f") && !negate) {
+        toFloat = true;
+      } else if (!op.equals("+")) {
+        return null;
+      }
+      e = ((UnaryExpr) e).eAST;
     }
+    if (e instanceof IntExpr) {
+      int value = ((IntExpr) e).GetValue();
+      value = negate ? -value : value;
+      return toFloat ? Float.floatToRawIntBits((float) value) : value;
+    } else if (e instanceof FloatExpr) {
+      float value = ((FloatExpr) e).astFL.GetValue();
+      return Float.floatToRawIntBits(negate ? -value : value);
+    } else if (e instanceof BoolExpr && !negate) {
+      return ((BoolExpr) e).astBL.GetValue() ? 1 : 0;
+    }
+    return null;
   }
 
   /** Method emitRETURN.
@@ -284,40 +300,54 @@ public class Emitter implements Visitor {
     emit(".end method");
   }
 
+  /** Method getGlobalVarDecls.
+   * Return the variable declarations in the global block of the program,
+   * in program order. The declaration sequences are traversed with an
+   * explicit stack.
+   */
+  private ArrayList<VarDecl> getGlobalVarDecls(Decl d) {
+    ArrayList<VarDecl> vars = new ArrayList<VarDecl>();
+    ArrayDeque<Decl> stack = new ArrayDeque<Decl>();
+    stack.push(d);
+    while (!stack.isEmpty()) {
+      d = stack.pop();
+      assert (d != null);
+      if (d instanceof DeclSequence) {
+        DeclSequence sd = (DeclSequence) d;
+        stack.push(sd.D2);
+        stack.push(sd.D1);
+      } else if (d instanceof VarDecl) {
+        vars.add((VarDecl) d);
+      }
+    }
+    return vars;
+  }
+
   /** Method emitStaticClassVariableDeclaration.
    * Emit declarations for the static class variables. Static class variables
-   * correspont to MiniC global variables. This function recursively traverses
-   * the declarations in the global block of the program.
+   * correspont to MiniC global variables.
    */
   private void emitStaticClassVariableDeclaration(Decl d) {
-    assert (d != null);
-    if (d instanceof DeclSequence) {
-      DeclSequence sd = (DeclSequence) d;
-      emitStaticClassVariableDeclaration(sd.D1);
-      emitStaticClassVariableDeclaration(sd.D2);
-    } else if (d instanceof VarDecl) {
-      VarDecl vd = (VarDecl) d;
+    for (VarDecl vd : getGlobalVarDecls(d)) {
       Type t = typeOfDecl(vd);
+      // Mark it now, for the initializers in clinit that read it:
+      vd.setGlobal();
       emit(".field static " + vd.idAST.Lexeme + " "
           + getTypeDescriptorLabel(t));         
     }
   }
 
   /** Method emitInitializer.
-   * Emit initializers for the static class variables. This function
-   * recursively traverses the declarations in the global block of the program.
+   * Emit initializers for the static class variables.
    */
   private void emitInitializer(Decl d) {
-    assert (d != null);
-    if (d instanceof DeclSequence) {
-      DeclSequence sd = (DeclSequence) d;
-      emitInitializer(sd.D1);
-      emitInitializer(sd.D2);
-    } else if (d instanceof VarDecl) {
-      VarDecl vd = (VarDecl) d;
+    for (VarDecl vd : getGlobalVarDecls(d)) {
       Type t = typeOfDecl(vd);
       Expr initExpr = vd.eAST;
-      if (initExpr instanceof EmptyExpr) {
+      if (t instanceof ArrayType) {
+        emitNewArray((ArrayType) t);
+        emitArrayInitializer(initExpr, ((ArrayType) t).astType);
+      } else if (initExpr instanceof EmptyExpr) {
         // Programmer did not provide initializer for global variable.
         // Initialize to something safe:
         if (t.Tequal(StdEnvironment.intType)
@@ -331,7 +361,7 @@ public class Emitter implements Visitor {
         }
       } else {
         // Programmer provided initializer expression, emit it:
-        initExpr.accept(this);
+        walk.walk(initExpr);
       }
       emitStaticVariableReference(vd.idAST, vd.tAST, true); 
     }
@@ -346,10 +376,13 @@ public class Emitter implements Visitor {
   private void emitClassInitializer(Decl d) {
     emit("\n.method static <clinit>()V");
     indent++;
-    emit(".limit stack 1");
-    emit(".limit locals 0");
+    frame = new Frame(false, true);
     emitInitializer(d);
     emit(JVM.RETURN);
+    flushCode();
+    emit(".limit stack " + frame.getMaxStackSize());
+    emit(".limit locals 0");
+    frame = null;
     indent--;
     emit(".end method");
   }
@@ -360,7 +393,9 @@ public class Emitter implements Visitor {
   private String getTypeDescriptorLabel(Type t) {
     String l = new String("");
     assert ((t != null) && !(t instanceof ErrorType));
-    if (t.Tequal(StdEnvironment.intType)) {
+    if (t instanceof ArrayType) {
+      l = "[" + getTypeDescriptorLabel(((ArrayType) t).astType);
+    } else if (t.Tequal(StdEnvironment.intType)) {
       l = new String("I");
     } else if (t.Tequal(StdEnvironment.boolType)) {
       l = new String("Z");
@@ -380,7 +415,6 @@ public class Emitter implements Visitor {
    * Return the type of the given declaration d.
    */
   private Type typeOfDecl(AST d) {
-    final Type retType;
     final Type t;
     assert (d != null);
     assert ((d instanceof FunDecl) || (d instanceof VarDecl)
@@ -392,13 +426,7 @@ public class Emitter implements Visitor {
     } else {
       t = ((FormalParamDecl) d).astType;
     }
-    if (t instanceof ArrayType) {
-      reporter.reportError("Arrays not implemented", "", d.pos);
-      retType = ((ArrayType) t).astType;
-    } else {
-      retType = t;
-    }
-    return retType;
+    return t;
   }
 
   /** Method emitStaticVariableReference.
@@ -520,7 +548,7 @@ public class Emitter implements Visitor {
     emitStaticClassVariableDeclaration(x.D);
     emitClassInitializer(x.D);
     emitConstructor();
-    x.D.accept(this);
+    walk.visit(x.D);
   }
 
   /** visit method for EmptyDecl. */
@@ -534,42 +562,48 @@ public class Emitter implements Visitor {
     // Allocate a frame for this function:
     isMain = x.idAST.Lexeme.equals("main");
     if (isMain) {
-      frame = new Frame(true);
+      frame = new Frame(true, staticMethods);
       emit("\n.method public static main([Ljava/lang/String;)V");
       // .var for main"s "this" pointer:
       // emit (".var 0 is this L" + className + "; from Label0 to Label1");
       // .var for main's String[] argument:
       // emit (".var 1 is arg0 [Ljava/lang/String; from Label0 to Label1");
     } else {
-      frame = new Frame(false);
-      emit("\n.method public " + x.idAST.Lexeme
-          + getDescriptor(x));
-      x.paramsAST.accept(this); // process formal parameters to adjust the
+      frame = new Frame(false, staticMethods);
+      emit("\n.method public " + (staticMethods ? "static " : "")
+          + x.idAST.Lexeme + getDescriptor(x));
+      walk.visit(x.paramsAST); // process formal parameters to adjust the
       // local variable count.
     }
-    indent++;
-    final int l0 = frame.getNewLabel();
-    final int l1 = frame.getNewLabel();
-    emitLabel(l0);
-    if (isMain) {
-      emit("new " + className);
-      emit("dup");
-      emit("invokespecial " + className + "/<init>()V");
-      emit("astore_1");
-    }
-    // x.tAST.accept(this);
-    // x.idAST.accept(this);
-    x.stmtAST.accept(this);
-    emitLabel(l1);
-    if (isMain) {
-      emit(JVM.RETURN);
-    }
-    emit(".limit locals " + frame.getNewLocalVarIndex());
-    emit(".limit stack " + maxOperandStackSize);
-    indent--;
-    emit(".end method");
-    isGlobalScope = true;
-    isMain = false;
+    walk.then(() -> {
+      indent++;
+      final int l0 = frame.getNewLabel();
+      final int l1 = frame.getNewLabel();
+      emitLabel(l0);
+      if (isMain && !staticMethods) {
+        emit("new " + className);
+        emit("dup");
+        emit("invokespecial " + className + "/<init>()V");
+        emit("astore_1");
+      }
+      // x.tAST.accept(this);
+      // x.idAST.accept(this);
+      walk.visit(x.stmtAST);
+      walk.then(() -> {
+        emitLabel(l1);
+        if (isMain || x.tAST.Tequal(StdEnvironment.voidType)) {
+          // A void function may end without a return statement:
+          emit(JVM.RETURN);
+        }
+        flushCode();
+        emit(".limit locals " + frame.getNrOfLocalVars());
+        emit(".limit stack " + frame.getMaxStackSize());
+        indent--;
+        emit(".end method");
+        isGlobalScope = true;
+        isMain = false;
+      });
+    });
   }
 
   /** visit method for TypeDecl. */
@@ -580,19 +614,16 @@ public class Emitter implements Visitor {
   /** visit method for FormalParamDecl. */
   public void visit(FormalParamDecl x) {
     // emit("; FormalParamDecl");
-    // TBD:
-    // Here you need to allocate a new local variable index for the formal
-    // parameter and store it for later use with the declaration AST.
-    //
-    // Relevant: x.index, frame.getNewLocalVarIndex();
-
+    // Allocate a new local variable index for the formal parameter and
+    // store it with the declaration AST for later use:
+    x.index = frame.getNewLocalVarIndex();
   }
 
   /** visit method for FormalParamDeclSequence. */
   public void visit(FormalParamDeclSequence x) {
     // emit("; FormalParamDeclSequence");
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
   }
 
   /** visit method for EmptyFormalParamDecl. */
@@ -602,98 +633,244 @@ public class Emitter implements Visitor {
 
   /** visit method for StmtSequence. */
   public void visit(StmtSequence x) {
-    x.s1AST.accept(this);
-    x.s2AST.accept(this);
+    walk.visit(x.s1AST);
+    walk.visit(x.s2AST);
   }
 
   /** visit method for AssignStmt. */
   public void visit(AssignStmt x) {
     emit("; AssignStmt, line " + x.pos.startLine);
     // x.lAST.accept(this);
-    x.rAST.accept(this);
     if (x.lAST instanceof VarExpr) {
-      VarExpr v = (VarExpr) x.lAST;
-      Decl d = (Decl) v.Ident.declAST; 
-      Type t = typeOfDecl(d);
-      // TBD:
-      // Here you have to distinguish between local and global MiniC variables.
-      // Local variables are kept in the JVM's local variable array.  Global
-      // variables are kept as static JVM class variables. The code for the
-      // right-hand side of the assignment statement has already been generated
-      // by calling method x.rAST.accept(). Now the result of the right-hand
-      // side of the expression needs to be written back from the stack to the
-      // left-hand side variable.
-      //
-      // Relevant functions: isGlobal()
-      //                     emitStaticVariableReference()
-      //                     emitISTORE()
-      //                     emitFSTORE()
-
+      Decl d = (Decl) ((VarExpr) x.lAST).Ident.declAST;
+      Integer c = getIncrement(d, x.rAST);
+      if (c != null) {
+        // i = i + c  =>  iinc i c
+        emit(JVM.IINC + " " + d.index + " " + c);
+        return;
+      }
     } else {
-      assert (false); // Arrays not implemented.
+      // The array and the index go below the value of the right-hand side:
+      walk.visit(((ArrayExpr) x.lAST).idAST);
+      walk.visit(((ArrayExpr) x.lAST).indexAST);
     }
+    walk.visit(x.rAST);
+    walk.then(() -> {
+      if (x.lAST instanceof VarExpr) {
+        VarExpr v = (VarExpr) x.lAST;
+        Decl d = (Decl) v.Ident.declAST;
+        Type t = typeOfDecl(d);
+        // The value of the right-hand side is on the stack. Write it back
+        // to the static class variable of a global MiniC variable, or to
+        // the local variable array for a local one:
+        if (d.isGlobal()) {
+          emitStaticVariableReference(v.Ident, t, true);
+        } else {
+          if (t.Tequal(StdEnvironment.intType)
+              || t.Tequal(StdEnvironment.boolType)) {
+            emitISTORE(d.index);
+          } else if (t.Tequal(StdEnvironment.floatType)) {
+            emitFSTORE(d.index);
+          } else if (t instanceof ArrayType) {
+            emitASTORE(d.index);
+          } else {
+            assert (false);
+          }
+        }
+      } else {
+        emitArrayStore(x.lAST.type);
+      }
+    });
   }
 
   /** visit method for IfStmt. */
   public void visit(IfStmt x) {
     emit("; IfStmt, line " + x.pos.startLine);
-    // TBD:
-    // The following code evaluates the condition of the if statement. After
-    // execution of this code, the stack will contain 0 if the condition
-    // evaluated to false, and 1 if the condition evaluated to true. You
-    // should apply the template for if statements from the lecture slides
-    // to finish code generation at the places marked by // TBD: below.
-    x.eAST.accept(this);
+    // The condition jumps to Label1 if it is false (see genCond()):
+    //
+    //   if (E) S1 else S2  =>    [[E]] false: Label1
+    //                            [[S1]]
+    //                            goto Label2
+    //                         Label1:
+    //                            [[S2]]
+    //                         Label2:
+    //
     // Allocate 2 new labels for this if statement.
     final int l1 = frame.getNewLabel();
     final int l2 = frame.getNewLabel();
-    // TBD:
-
-    x.thenAST.accept(this);
-    // TBD:
+    genCond(x.eAST, FALL, l1);
+    walk.visit(x.thenAST);
+    walk.then(() -> {
+      // No goto after S1 if it always returns: Label2 may be the end of
+      // the method then, which is no target of a jump.
+      if (canFallThrough(x.thenAST)) {
+        emit(JVM.GOTO + " " + getLabelString(l2));
+      }
+      emitLabel(l1);
+    });
+    walk.visit(x.elseAST);
+    walk.then(() -> emitLabel(l2));
+  }
 
-    if (x.elseAST != null) {
-      x.elseAST.accept(this);
+  /** Method canFallThrough.
+   * Return false if the statement s always ends with a return statement,
+   * i.e., if the code after it cannot be reached from it. The last
+   * statements of sequences and compound statements, and both branches
+   * of if statements, are followed with an explicit stack.
+   */
+  private boolean canFallThrough(Stmt s) {
+    ArrayDeque<Stmt> stack = new ArrayDeque<Stmt>();
+    while (s != null) {
+      if (s instanceof StmtSequence) {
+        // The parser ends a statement list with an EmptyStmt:
+        StmtSequence seq = (StmtSequence) s;
+        s = seq.s2AST instanceof EmptyStmt ? seq.s1AST : seq.s2AST;
+      } else if (s instanceof CompoundStmt) {
+        s = ((CompoundStmt) s).astStmt;
+      } else if (s instanceof IfStmt && ((IfStmt) s).elseAST != null) {
+        stack.push(((IfStmt) s).elseAST);
+        s = ((IfStmt) s).thenAST;
+      } else if (s instanceof ReturnStmt) {
+        s = stack.poll();
+        if (s == null) {
+          return false;
+        }
+      } else {
+        return true;
+      }
     }
-    // TBD:
-
+    // An empty compound statement:
+    return true;
   }
 
   /** visit method for WhileStmt. */
   public void visit(WhileStmt x) {
     emit("; WhileStmt, line " + x.pos.startLine);
-    // TBD:
-    // Please apply the code template for while loops from the lecture
-    // slides.
-
+    //
+    //   while (E) S  =>       Label1:
+    //                            [[E]] false: Label2
+    //                            [[S]]
+    //                            goto Label1
+    //                         Label2:
+    final int l1 = frame.getNewLabel();
+    final int l2 = frame.getNewLabel();
+    emitLabel(l1);
+    genCond(x.eAST, FALL, l2);
+    walk.visit(x.stmtAST);
+    walk.then(() -> {
+      emit(JVM.GOTO + " " + getLabelString(l1));
+      emitLabel(l2);
+    });
   }
 
   /** visit method for ForStmt. */
   public void visit(ForStmt x) {
     emit("; ForStmt, line " + x.pos.startLine);
-    // TBD:
-    // No template was given for "for" loops, but you can find out by compiling
-    // a Java "for" loop to bytecode, use "classfileanalyzer" to disassemble
-    // and look how it is done there. Using the classfileanalyzer is described
-    // in the Assignment 5 spec.
-
+    RangeAnalysis.CountedLoop loop = range == null ? null
+        : range.getCountedLoop(x);
+    if (loop != null) {
+      emitCountedLoop(x, loop);
+      return;
+    }
+    // Like javac does it, a "for" loop is a while loop with the
+    // initialization in front and the update at the end of the body:
+    //
+    //   for (E1; E2; E3) S  =>   [[E1]]
+    //                         Label1:
+    //                            [[E2]] false: Label2
+    //                            [[S]]
+    //                            [[E3]]
+    //                            goto Label1
+    //                         Label2:
+    final int l1 = frame.getNewLabel();
+    final int l2 = frame.getNewLabel();
+    walk.visit(x.e1AST);
+    walk.then(() -> emitLabel(l1));
+    if (!(x.e2AST instanceof EmptyExpr)) {
+      genCond(x.e2AST, FALL, l2);
+    }
+    walk.visit(x.stmtAST);
+    walk.visit(x.e3AST);
+    walk.then(() -> {
+      emit(JVM.GOTO + " " + getLabelString(l1));
+      emitLabel(l2);
+    });
+  }
+
+  /** Method emitCountedLoop.
+   * Schedule the code of a counted for loop (see RangeAnalysis), with the
+   * test at the bottom, in the shape of the counted loops of the JIT
+   * compilers, so that they remove the bounds checks of the array
+   * accesses with the induction variable:
+   *
+   *   for (E1; E2; E3) S  =>   [[E1]]
+   *                            [[L]]                (if L is hoisted)
+   *                            istore t
+   *                            [[E2]] false: Label2 (unless entered)
+   *                         Label1:
+   *                            [[S]]
+   *                            [[E3]]
+   *                            [[E2]] true: Label1
+   *                         Label2:
+   *
+   * The limit L of E2, if it is neither a literal nor a local variable,
+   * is evaluated once into a new local variable t, which E2 reads then.
+   */
+  private void emitCountedLoop(ForStmt x, RangeAnalysis.CountedLoop loop) {
+    final int l1 = frame.getNewLabel();
+    final int l2 = frame.getNewLabel();
+    // The slot of t is free again after the loop:
+    frame.openScope();
+    walk.visit(x.e1AST);
+    Expr cond = x.e2AST;
+    if (loop.hoistLimit) {
+      SourcePos pos = loop.limit.pos;
+      VarDecl t = new VarDecl(StdEnvironment.intType, new ID("limit", pos),
+          new EmptyExpr(pos), pos);
+      t.index = frame.getNewLocalVarIndex();
+      VarExpr tv = new VarExpr(new ID("limit", pos), pos);
+      tv.Ident.declAST = t;
+      tv.type = StdEnvironment.intType;
+      BinaryExpr b = (BinaryExpr) x.e2AST;
+      cond = b.lAST == loop.limit ? new BinaryExpr(tv, b.oAST, b.rAST, b.pos)
+          : new BinaryExpr(b.lAST, b.oAST, tv, b.pos);
+      cond.type = b.type;
+      walk.visit(loop.limit);
+      walk.then(() -> emitISTORE(t.index));
+    }
+    if (!loop.entered) {
+      genCond(cond, FALL, l2);
+    }
+    walk.then(() -> emitLabel(l1));
+    walk.visit(x.stmtAST);
+    walk.visit(x.e3AST);
+    genCond(cond, l1, FALL);
+    walk.then(() -> {
+      emitLabel(l2);
+      frame.closeScope();
+    });
   }
 
   /** visit method for ReturnStmt. */
   public void visit(ReturnStmt x) {
     emit("; ReturnStmt, line " + x.pos.startLine);
-    x.eAST.accept(this); // visit even in "main", for possible side-effects
-    if (isMain || x.eAST instanceof EmptyExpr) {
-      emitRETURN(StdEnvironment.voidType);
-    } else {
-      emitRETURN(x.eAST.type);
-    }
+    walk.visit(x.eAST); // visit even in "main", for possible side-effects
+    walk.then(() -> {
+      if (isMain || x.eAST instanceof EmptyExpr) {
+        emitRETURN(StdEnvironment.voidType);
+      } else {
+        emitRETURN(x.eAST.type);
+      }
+    });
   }
 
   /** visit method for CompoundStmt. */
   public void visit(CompoundStmt x) {
-    x.astDecl.accept(this);
-    x.astStmt.accept(this);
+    // The slots of the local variables of the block are reused after it:
+    frame.openScope();
+    walk.visit(x.astDecl);
+    walk.visit(x.astStmt);
+    walk.then(() -> frame.closeScope());
   }
 
   /** visit method for EmptyStmt. */
@@ -709,7 +886,12 @@ public class Emitter implements Visitor {
   /** visit method for CallStmt. */
   public void visit(CallStmt x) {
     emit("; CallStmt, line " + x.pos.startLine);
-    x.eAST.accept(this);
+    walk.visit(x.eAST);
+    // The result of a function that is called as a statement is unused:
+    FunDecl f = (FunDecl) ((CallExpr) x.eAST).idAST.declAST;
+    if (!f.tAST.Tequal(StdEnvironment.voidType)) {
+      walk.then(() -> emit(JVM.POP));
+    }
   }
 
   /** visit method for VarDecl. */
@@ -720,17 +902,33 @@ public class Emitter implements Visitor {
       // early exit:
       return;
     }
-    // TBD:
-    // If we fall through here, we're visiting a local variable declaration.
-    // You have to allocate a new local variable index from "frame"
-    // and assign it to x.index.
-    //
-    // Relevant methods:
-    //                        frame.getNewLocalVarIndex
-    //                        x.tAST.accept(this);
-    //                        x.idAST.accept(this);
-    //                        x.eAST.accept(this);
-
+    // A local variable declaration: allocate a new local variable index
+    // from "frame", and store the initial value if there is one.
+    x.index = frame.getNewLocalVarIndex();
+    if (x.tAST instanceof ArrayType) {
+      // An array is allocated at its declaration, with or without an
+      // initializer list:
+      ArrayType t = (ArrayType) x.tAST;
+      emitNewArray(t);
+      emitArrayInitializer(x.eAST, t.astType);
+      emitASTORE(x.index);
+      return;
+    }
+    if (x.eAST instanceof EmptyExpr) {
+      return;
+    }
+    walk.visit(x.eAST);
+    walk.then(() -> {
+      Type t = typeOfDecl(x);
+      if (t.Tequal(StdEnvironment.intType)
+          || t.Tequal(StdEnvironment.boolType)) {
+        emitISTORE(x.index);
+      } else if (t.Tequal(StdEnvironment.floatType)) {
+        emitFSTORE(x.index);
+      } else {
+        assert (false);
+      }
+    });
   }
 
   /** visit method for DeclSequence. */
@@ -741,39 +939,29 @@ public class Emitter implements Visitor {
     if ((x.D2 instanceof VarDecl) && isGlobalScope) {
       ((VarDecl) x.D2).setGlobal();
     }
-    x.D1.accept(this);
-    x.D2.accept(this);
+    walk.visit(x.D1);
+    walk.visit(x.D2);
   }
 
   /** visit method for VarExpr. */
   public void visit(VarExpr x) {
-    Decl d = (Decl) x.Ident.declAST; 
+    Decl d = (Decl) x.Ident.declAST;
     Type t = typeOfDecl(d);
-    // TBD:
     // Here we are dealing with read-accesses of applied occurrences of
-    // variables. Why only read-access? Basically, no left-hand side of an
-    // assignment statement will occur here, because we do not invoke accept()
-    // on left-hand sides of assignment statements. This means that left-hand
-    // sides of assignments are not traversed; they are handled right at the
-    // visit method for AssignStmt.
-    //
-    // Example1: a = b + 1
-    // The left-hand side of the assignment won't be traversed ("a"). But the
-    // right-hand side ("b+1") will.
-    //
-    // Example2: foo(247+x)
-    // "x" will be another VarExpr, again a read-access.
-    //
-    // What you should do:
-    // - if x is global, emit a static variable access to push the static
-    //   variable onto the stack.
-    // - if x is a local variable, you need to emit an ILOAD or an FLOAD,
-    //   depending on the type of variable (ILOAD for int and bool).
-    //
-    // Relevant methods: isGlobal()
-    //                   emitStaticVariableReference()
-    //                   emitILOAD(), emitFLOAD()
-
+    // variables. Left-hand sides of assignments are not traversed; they are
+    // handled right at the visit methods for AssignStmt and AssignExpr.
+    if (d.isGlobal()) {
+      emitStaticVariableReference(x.Ident, t, false);
+    } else if (t.Tequal(StdEnvironment.intType)
+        || t.Tequal(StdEnvironment.boolType)) {
+      emitILOAD(d.index);
+    } else if (t.Tequal(StdEnvironment.floatType)) {
+      emitFLOAD(d.index);
+    } else if (t instanceof ArrayType) {
+      emitALOAD(d.index);
+    } else {
+      assert (false);
+    }
   }
 
   /** visit method for AssignExpr. */
@@ -781,107 +969,282 @@ public class Emitter implements Visitor {
     emit("; AssignExpr");
     // x.lAST.accept(this);
     // x.rAST.accept(this);
-    x.rAST.accept(this);
     if (x.lAST instanceof VarExpr) {
-      VarExpr v = (VarExpr) x.lAST;
-      Decl d = (Decl) v.Ident.declAST; 
-      Type t = typeOfDecl(d);
-      if (d.isGlobal()) {
-        emitStaticVariableReference(v.Ident, typeOfDecl(v.Ident.declAST), true);
-      } else {
-        if (t.Tequal(StdEnvironment.intType)
-            || t.Tequal(StdEnvironment.boolType)) {
-          emitISTORE(d.index);
-        } else if (t.Tequal(StdEnvironment.floatType)) {
-          emitFSTORE(d.index);
-        } else {
-          assert (false);
-        }
-      } 
+      Decl d = (Decl) ((VarExpr) x.lAST).Ident.declAST;
+      Integer c = getIncrement(d, x.rAST);
+      if (c != null) {
+        // i = i + c  =>  iinc i c
+        emit(JVM.IINC + " " + d.index + " " + c);
+        return;
+      }
     } else {
-      assert (false); // Arrays not implemented.
+      // The array and the index go below the value of the right-hand side:
+      walk.visit(((ArrayExpr) x.lAST).idAST);
+      walk.visit(((ArrayExpr) x.lAST).indexAST);
     }
+    walk.visit(x.rAST);
+    walk.then(() -> {
+      if (x.lAST instanceof VarExpr) {
+        VarExpr v = (VarExpr) x.lAST;
+        Decl d = (Decl) v.Ident.declAST;
+        Type t = typeOfDecl(d);
+        if (d.isGlobal()) {
+          emitStaticVariableReference(v.Ident, typeOfDecl(v.Ident.declAST), true);
+        } else {
+          if (t.Tequal(StdEnvironment.intType)
+              || t.Tequal(StdEnvironment.boolType)) {
+            emitISTORE(d.index);
+          } else if (t.Tequal(StdEnvironment.floatType)) {
+            emitFSTORE(d.index);
+          } else if (t instanceof ArrayType) {
+            emitASTORE(d.index);
+          } else {
+            assert (false);
+          }
+        }
+      } else {
+        emitArrayStore(x.lAST.type);
+      }
+    });
   }
 
   /** visit method for IntExpr. */
   public void visit(IntExpr x) {
-    x.astIL.accept(this);
+    walk.visit(x.astIL);
   }
 
   /** visit method for FloatExpr. */
   public void visit(FloatExpr x) {
-    x.astFL.accept(this);
+    walk.visit(x.astFL);
   }
 
   /** visit method for BoolExpr. */
   public void visit(BoolExpr x) {
-    x.astBL.accept(this);
+    walk.visit(x.astBL);
   }
 
   /** visit method for StringExpr. */
   public void visit(StringExpr x) {
-    x.astSL.accept(this);
+    walk.visit(x.astSL);
   }
 
   /** visit method for ArrayExpr. */
   public void visit(ArrayExpr x) {
-    emit("; ArrayExpr");
-    x.idAST.accept(this);
-    x.indexAST.accept(this);
+    // A read access; the element stores are done by AssignStmt and
+    // AssignExpr:
+    walk.visit(x.idAST);
+    walk.visit(x.indexAST);
+    walk.then(() -> emitArrayLoad(x.type));
   }
 
   /** visit method for BinaryExpr. */
   public void visit(BinaryExpr x) {
     // emit("; BinaryExpr");
     String op = new String(x.oAST.Lexeme);
-    if (op.equals("&&")) {
-      final int l1 = frame.getNewLabel();
-      final int l2 = frame.getNewLabel();
-      // TBD:
-      // Implement the code template for && short circuit evaluation
-      // from the lecture slides.
+    if (isCondition(x)) {
+      emitBoolValue(x);
+      return;
+    }
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> emitBinaryOperator(op, x.oAST.type));
+  }
+
+  /** Method emitBinaryOperator.
+   * Emit the instructions for arithmetic operators, with both operands on
+   * the stack.
+   */
+  private void emitBinaryOperator(String op, Type t) {
+    boolean isFloat = t.Tequal(StdEnvironment.floatType);
+    if (op.equals("+")) {
+      emit(isFloat ? JVM.FADD : JVM.IADD);
+    } else if (op.equals("-")) {
+      emit(isFloat ? JVM.FSUB : JVM.ISUB);
+    } else if (op.equals("*")) {
+      emit(isFloat ? JVM.FMUL : JVM.IMUL);
+    } else if (op.equals("/")) {
+      emit(isFloat ? JVM.FDIV : JVM.IDIV);
+    }
+  }
+
+  /** Method isCondition.
+   * True for the expressions that genCond() translates to jumps: the
+   * relational operators, "&&", "||" and "!".
+   */
+  private boolean isCondition(Expr e) {
+    String op;
+    if (e instanceof BinaryExpr) {
+      op = ((BinaryExpr) e).oAST.Lexeme;
+    } else if (e instanceof UnaryExpr) {
+      op = ((UnaryExpr) e).oAST.Lexeme;
+    } else {
+      return false;
+    }
+    return op.equals("&&") || op.equals("||") || op.equals("!")
+        || op.equals("==") || op.equals("!=") || op.equals("<")
+        || op.equals("<=") || op.equals(">") || op.equals(">=");
+  }
 
+  /** Method emitBoolValue.
+   * Emit a condition e where its value is needed:
+   *
+   *    [[E]] false: Label1
+   *    iconst_1
+   *    goto Label2
+   *  Label1:
+   *    iconst_0
+   *  Label2:
+   */
+  private void emitBoolValue(Expr e) {
+    final int l1 = frame.getNewLabel();
+    final int l2 = frame.getNewLabel();
+    genCond(e, FALL, l1);
+    walk.then(() -> {
+      emitBCONST(true);
+      emit(JVM.GOTO + " " + getLabelString(l2));
+      emitLabel(l1);
+      emitBCONST(false);
+      emitLabel(l2);
+    });
+  }
+
+  /** Method genCond.
+   * Schedule the code of the boolean expression e as jumps: to trueLabel
+   * if e is true and to falseLabel if it is false. One of them may be
+   * FALL, for the code that follows. No boolean value is pushed for the
+   * operators of isCondition(): a comparison becomes one if_icmp<op>
+   * (fcmpl/fcmpg and if<op> for floats), and
+   *
+   *    E1 && E2  =>    [[E1]] false: falseLabel (or Label1 if FALL)
+   *                    [[E2]] true: trueLabel, false: falseLabel
+   *                  Label1:
+   *
+   * "||" is dual to "&&", and "!" swaps the labels. The operands are
+   * scheduled with walk.then(), so that long chains of operators do not
+   * nest calls of genCond().
+   */
+  private void genCond(Expr e, int trueLabel, int falseLabel) {
+    assert (trueLabel == FALL) != (falseLabel == FALL);
+    if (e instanceof UnaryExpr && ((UnaryExpr) e).oAST.Lexeme.equals("!")) {
+      Expr operand = ((UnaryExpr) e).eAST;
+      walk.then(() -> genCond(operand, falseLabel, trueLabel));
+      return;
+    }
+    if (e instanceof BoolExpr) {
+      boolean value = ((BoolExpr) e).astBL.GetValue();
+      int target = value ? trueLabel : falseLabel;
+      if (target != FALL) {
+        walk.then(() -> emit(JVM.GOTO + " " + getLabelString(target)));
+      }
+      return;
+    }
+    if (!isCondition(e)) {
+      // Any other boolean value, e.g. a variable or a call:
+      walk.visit(e);
+      walk.then(() -> emitCondJump(JVM.IFNE, JVM.IFEQ, trueLabel,
+          falseLabel));
+      return;
+    }
+    BinaryExpr x = (BinaryExpr) e;
+    String op = x.oAST.Lexeme;
+    if (op.equals("&&")) {
+      final int l1 = falseLabel == FALL ? frame.getNewLabel() : falseLabel;
+      walk.then(() -> genCond(x.lAST, FALL, l1));
+      walk.then(() -> genCond(x.rAST, trueLabel, falseLabel));
+      if (falseLabel == FALL) {
+        walk.then(() -> emitLabel(l1));
+      }
       return;
     }
     if (op.equals("||")) {
-      // TBD:
-      // Implement || short circuit evaluation.
-      // This is similar to &&. You may use a Java example to figure out
-      // the details.
-
+      final int l1 = trueLabel == FALL ? frame.getNewLabel() : trueLabel;
+      walk.then(() -> genCond(x.lAST, l1, FALL));
+      walk.then(() -> genCond(x.rAST, trueLabel, falseLabel));
+      if (trueLabel == FALL) {
+        walk.then(() -> emitLabel(l1));
+      }
       return;
     }
-    x.lAST.accept(this);
-    x.rAST.accept(this);
-    // TBD:
-    //
-    // Here we treat binary operators +, -, *, / >, >=, <, <=, ==, !=
-    // See the code templates in the lecture slides. Remaining cases are
-    // similar, you can check how the javac compiler does it.
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> {
+      String jump;
+      String inverse;
+      if (x.oAST.type.Tequal(StdEnvironment.floatType)) {
+        // fcmpg pushes 1 and fcmpl pushes -1 for NaN operands, so that
+        // every comparison with NaN is false, as in Java. The inverse
+        // jump on the result of the fcmp is then taken for NaN:
+        if (op.equals("<") || op.equals("<=")) {
+          emit(JVM.FCMPG);
+        } else {
+          emit(JVM.FCMPL);
+        }
+        jump = op.equals("==") ? JVM.IFEQ
+            : op.equals("!=") ? JVM.IFNE
+            : op.equals("<") ? JVM.IFLT
+            : op.equals("<=") ? JVM.IFLE
+            : op.equals(">") ? JVM.IFGT
+            : JVM.IFGE;
+        inverse = op.equals("==") ? JVM.IFNE
+            : op.equals("!=") ? JVM.IFEQ
+            : op.equals("<") ? JVM.IFGE
+            : op.equals("<=") ? JVM.IFGT
+            : op.equals(">") ? JVM.IFLE
+            : JVM.IFLT;
+      } else {
+        jump = op.equals("==") ? JVM.IF_ICMPEQ
+            : op.equals("!=") ? JVM.IF_ICMPNE
+            : op.equals("<") ? JVM.IF_ICMPLT
+            : op.equals("<=") ? JVM.IF_ICMPLE
+            : op.equals(">") ? JVM.IF_ICMPGT
+            : JVM.IF_ICMPGE;
+        inverse = op.equals("==") ? JVM.IF_ICMPNE
+            : op.equals("!=") ? JVM.IF_ICMPEQ
+            : op.equals("<") ? JVM.IF_ICMPGE
+            : op.equals("<=") ? JVM.IF_ICMPGT
+            : op.equals(">") ? JVM.IF_ICMPLE
+            : JVM.IF_ICMPLT;
+      }
+      emitCondJump(jump, inverse, trueLabel, falseLabel);
+    });
+  }
 
+  /** Method emitCondJump.
+   * Emit "jump trueLabel", or "inverse falseLabel" if the true case
+   * falls through.
+   */
+  private void emitCondJump(String jump, String inverse, int trueLabel,
+                            int falseLabel) {
+    if (trueLabel == FALL) {
+      emit(inverse + " " + getLabelString(falseLabel));
+    } else {
+      emit(jump + " " + getLabelString(trueLabel));
+    }
   }
 
   /** visit method for UnaryExpr. */
   public void visit(UnaryExpr x) {
     // emit("; UnaryExpr");
     String op = new String(x.oAST.Lexeme);
-    x.eAST.accept(this);
-    // TBD:
-    //
-    // Here we treat the following cases.
-    //   unary "-": emit JVM.INEG for integers
-    //   unary "+": do nothing
-    //   "i2f": emit JVM.I2F instruction
-    //   "!": you can use the following code template:
-    //
-    //    !E  =>    [[E]]
-    //              ifne Label1
-    //              iconst_1
-    //              goto Label2
-    //           Label1:
-    //              iconst_0
-    //           Label2:
-
+    if (op.equals("!")) {
+      emitBoolValue(x);
+      return;
+    }
+    walk.visit(x.eAST);
+    walk.then(() -> {
+      //   unary "-": INEG or FNEG
+      //   unary "+": nothing
+      //   "i2f":     I2F
+      if (op.equals("-")) {
+        if (x.oAST.type.Tequal(StdEnvironment.floatType)) {
+          emit(JVM.FNEG);
+        } else {
+          emit(JVM.INEG);
+        }
+      } else if (op.equals("i2f")) {
+        emit(JVM.I2F);
+      }
+    });
   }
 
   /** visit method for EmptyExpr. */
@@ -892,7 +1255,7 @@ public class Emitter implements Visitor {
   /** visit method for ActualParam. */
   public void visit(ActualParam x) {
     emit("; ActualParam");
-    x.pAST.accept(this);
+    walk.visit(x.pAST);
   }
 
   /** visit method for EmptyActualParam. */
@@ -903,8 +1266,8 @@ public class Emitter implements Visitor {
   /** visit method for ActualParamSequence. */
   public void visit(ActualParamSequence x) {
     // emit("; ActualParamSequence");
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
   }
 
   /** visit method for CallExpr. */
@@ -913,7 +1276,7 @@ public class Emitter implements Visitor {
     // x.idAST.accept(this);
     assert (x.idAST.declAST instanceof FunDecl);
     FunDecl f = (FunDecl) x.idAST.declAST;
-    if (!isStaticMethod(f)) {
+    if (!isStaticMethod(f) && !staticMethods) {
       emit("; \"this\"-pointer is the first ActualParam with instance methods:");
       if (isMain) {
         emit(JVM.ALOAD_1);
@@ -921,26 +1284,26 @@ public class Emitter implements Visitor {
         emit(JVM.ALOAD_0);
       }
     }
-    x.paramAST.accept(this);
-    if (isStaticMethod(f)) {
-      emit(JVM.INVOKESTATIC + " minic/lang/System/"
-          + x.idAST.Lexeme + getDescriptor(f));
-    } else {
-      // TBD:
-      // In case of an instance method, you need emit an JVM.INVOKEVIRTUAL
-      // instruction. The name of the function consists of
-      // <ClassName>/<functionname><functiondescriptor>.
-      //
-      // Relevant variables/functions: see above code for static methods.
-
-    }
+    walk.visit(x.paramAST);
+    walk.then(() -> {
+      if (isStaticMethod(f)) {
+        emit(JVM.INVOKESTATIC + " minic/lang/System/"
+            + x.idAST.Lexeme + getDescriptor(f));
+      } else if (staticMethods) {
+        emit(JVM.INVOKESTATIC + " " + className + "/"
+            + x.idAST.Lexeme + getDescriptor(f));
+      } else {
+        emit(JVM.INVOKEVIRTUAL + " " + className + "/"
+            + x.idAST.Lexeme + getDescriptor(f));
+      }
+    });
   }
 
   /** visit method for ExprSequence. */
   public void visit(ExprSequence x) {
     // emit("; ExprSequence");
-    x.lAST.accept(this);
-    x.rAST.accept(this);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
   }
 
   /** visit method for ID. */
@@ -951,36 +1314,31 @@ public class Emitter implements Visitor {
   /** visit method for Operator. */
   public void visit(Operator x) {
     // emit("; Operator: " + x.Lexeme);
-  } 
+  }
 
   /** visit method for IntLiteral. */
   public void visit(IntLiteral x) {
     // emit("; IntLiteral: " + x.Lexeme + "\n");
-    // TBD:
-    // Here you have to emit an ICONST instruction to load the integer
-    // literal onto the JVM stack. (See method emitICONST above.)
-
-  } 
+    emitICONST(x.GetValue());
+  }
 
   /** visit method for FloatLiteral. */
   public void visit(FloatLiteral x) {
     // emit("; FloatLiteral: " + x.Lexeme + "\n");
-    // TBD: same for type float
-
-  } 
+    emitFCONST(x.GetValue());
+  }
 
   /** visit method for BoolLiteral. */
   public void visit(BoolLiteral x) {
     // emit("; BoolLiteral: " + x.Lexeme + "\n");
-    // TBD: and bool...
-
-  } 
+    emitBCONST(x.GetValue());
+  }
 
   /** visit method for StringLiteral. */
   public void visit(StringLiteral x) {
     // emit("; StringLiteral: " + x.Lexeme);
     emit(JVM.LDC + " \"" + x.Lexeme + "\"");
-  } 
+  }
 
   /** visit method for IntType. */
   public void visit(IntType x) {
@@ -1,33 +1,69 @@
 package minic.codegen;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
 /** Frame class used for book-keeping information related to the method
  * frame of a MiniC function (during compilation).
+ *
+ * <p>Besides the labels and local variable slots, the frame follows the
+ * height of the operand stack through the instructions the emitters
+ * generate (see update() and label()), so that the exact maximum can be
+ * written to the .limit stack directive at the end of the method. A
+ * branch records the height at its target label; after a goto or a
+ * return, the code continues at the next label that a branch reaches,
+ * with the height recorded for it. The code in between is dead and is
+ * not accounted.
+ *
+ * <p>Local variable slots are handed out in scopes: the slots taken
+ * after openScope() are free again after the matching closeScope(), so
+ * that the variables of blocks that follow each other share slots.
  */
 public class Frame {
 
   private int labelNr;
   private int localVarNr;
+  private int maxLocalVarNr;
+  private ArrayDeque<Integer> scopes;
   private boolean isMain;
+  private int stackSize;
+  private int maxStackSize;
+  private boolean reachable;
+  private HashMap<Integer, Integer> labelStackSizes;
 
   /*
    * local variables in main (static methods):
    * 0: argv
-   * 1: mc$
+   * 1: mc$ (not with static methods for all functions)
    *
    * local variables for all other MiniC functions (instance methods)
    * 0: "this" ptr
    *
+   * With static methods, the parameters start at 0.
    */
 
-  /** Constructor of the Frame class. */
+  /** Constructor of the Frame class, for an instance method or main. */
   public Frame(boolean isMain) {
+    this(isMain, false);
+  }
+
+  /** Constructor of the Frame class: isStatic is true if the functions
+   * are static methods, and no instance of the class is needed.
+   */
+  public Frame(boolean isMain, boolean isStatic) {
     this.isMain = isMain;
     labelNr = -1;
+    stackSize = 0;
+    maxStackSize = 0;
+    reachable = true;
+    labelStackSizes = new HashMap<Integer, Integer>();
     if (this.isMain) {
-      localVarNr = 1;
+      localVarNr = isStatic ? 0 : 1;
     } else {
-      localVarNr = 0;
+      localVarNr = isStatic ? -1 : 0;
     }
+    maxLocalVarNr = localVarNr;
+    scopes = new ArrayDeque<Integer>();
   }
 
   /** Method getNewLabel: obtain the label number of the next available
@@ -43,7 +79,144 @@ public class Frame {
    */
   public int getNewLocalVarIndex() {
     localVarNr++;
+    if (localVarNr > maxLocalVarNr) {
+      maxLocalVarNr = localVarNr;
+    }
     return localVarNr;
-  } 
+  }
+
+  /** Method openScope: start a scope, e.g. of a compound statement. */
+  public void openScope() {
+    scopes.push(localVarNr);
+  }
+
+  /** Method closeScope: end the innermost scope, and free the slots
+   * taken in it for reuse.
+   */
+  public void closeScope() {
+    localVarNr = scopes.pop();
+  }
+
+  /** Method getNrOfLocalVars: the size of the local variable array of the
+   * method, i.e., the number of slots needed at the same time at most
+   * (plus "this" or argv and mc$). Unlike getNewLocalVarIndex(), no slot
+   * is taken.
+   */
+  public int getNrOfLocalVars() {
+    return maxLocalVarNr + 1;
+  }
+
+  /** Method getMaxStackSize: the maximum height of the operand stack over
+   * the instructions passed to update() so far.
+   */
+  public int getMaxStackSize() {
+    return maxStackSize;
+  }
+
+  /** Method label: the code continues at label, with the stack height of
+   * the branches to it if the label cannot be reached from the code
+   * before it. If no branch to it has been seen either, the code after
+   * the label stays dead (a label that is only reached by a branch after
+   * it is the head of a loop that cannot be entered).
+   */
+  public void label(int label) {
+    if (!reachable) {
+      Integer size = labelStackSizes.get(label);
+      if (size != null) {
+        stackSize = size;
+        reachable = true;
+      }
+    }
+  }
+
+  /** Method update: account for the instruction instr, a line of Jasmin
+   * code. Directives and comments are skipped. The stack effect is taken
+   * from the table of Opcode, or from the descriptor of the field or
+   * method for the instructions where it varies.
+   */
+  public void update(String instr) {
+    instr = instr.trim();
+    int sp = instr.indexOf(' ');
+    Opcode op = Opcode.forMnemonic(sp < 0 ? instr : instr.substring(0, sp));
+    if (op == null) {
+      assert (instr.isEmpty() || instr.startsWith(".")
+          || instr.startsWith(";")) : instr;
+      return;
+    }
+    if (!reachable) {
+      // Dead code, e.g. after a return; its branches reach no label:
+      return;
+    }
+    String arg = sp < 0 ? "" : instr.substring(sp + 1).trim();
+    switch (op.getOperand()) {
+      case FIELD:
+        // owner.name descriptor:
+        int size = getSize(arg.substring(arg.indexOf(' ') + 1).trim());
+        if (op == Opcode.GETSTATIC) {
+          push(size);
+        } else {
+          pop(size);
+        }
+        break;
+      case METHOD:
+        String descriptor = arg.substring(arg.indexOf('('));
+        pop(getArgumentsSize(descriptor)
+            + (op == Opcode.INVOKESTATIC ? 0 : 1));
+        push(getSize(descriptor.substring(descriptor.indexOf(')') + 1)));
+        break;
+      default:
+        pop(op.getPops());
+        push(op.getPushes());
+        if (op.getOperand() == Opcode.Operand.LABEL) {
+          branch(arg);
+        }
+        break;
+    }
+    if (op.isUnconditional()) {
+      reachable = false;
+    }
+  }
+
+  private void push(int n) {
+    stackSize += n;
+    if (stackSize > maxStackSize) {
+      maxStackSize = stackSize;
+    }
+  }
+
+  private void pop(int n) {
+    stackSize -= n;
+    assert (stackSize >= 0);
+  }
+
+  private void branch(String target) {
+    assert (target.startsWith("Label"));
+    labelStackSizes.put(Integer.parseInt(target.substring(5)), stackSize);
+  }
+
+  // The number of stack slots of the arguments of a method descriptor:
+  private static int getArgumentsSize(String descriptor) {
+    int size = 0;
+    int k = 1;
+    while (descriptor.charAt(k) != ')') {
+      boolean array = descriptor.charAt(k) == '[';
+      while (descriptor.charAt(k) == '[') {
+        k++;
+      }
+      char c = descriptor.charAt(k);
+      if (c == 'L') {
+        k = descriptor.indexOf(';', k);
+      }
+      size += !array && (c == 'J' || c == 'D') ? 2 : 1;
+      k++;
+    }
+    return size;
+  }
+
+  // The number of stack slots of a value of type descriptor:
+  private static int getSize(String descriptor) {
+    char c = descriptor.charAt(0);
+    return c == 'V' ? 0 : c == 'J' || c == 'D' ? 2 : 1;
+  }
 
 }
@@ -0,0 +1,845 @@
+package minic.codegen;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import minic.ErrorReporter;
+import minic.ir.*;
+import minic.ir.Module;
+
+/** IrEmitter class that generates Jasmin assembly code from the IR.
+ *
+ * <p>The class layout (fields, class initializer, constructor, methods)
+ * is the one of the Emitter. Within a method:
+ * <ul>
+ *   <li>Each phi and each SSA value that is used in more than one place
+ *       (or in another block) gets a local variable slot of its own.
+ *   <li>A value that is used once, in its own block (or by a phi that
+ *       is assigned at its end), is not stored but evaluated right where
+ *       it is used, so that the expression trees of the source program
+ *       become stack code again. Values whose evaluation must stay in
+ *       order (calls, global variable and array accesses, divisions that
+ *       may throw) are stored instead if moving them would change the
+ *       order of evaluation.
+ *   <li>The phis of a block are assigned at the end of its predecessors,
+ *       all at once (the incoming values are pushed first, then stored).
+ *       Edges from a block with two successors to a block with phis are
+ *       split first, so that there is a place for these stores. A phi
+ *       that gets its own value plus a small constant (the counter of a
+ *       loop) is updated in place with iinc instead.
+ *   <li>Blocks are laid out in reverse postorder. A jump to the next
+ *       block is left out; a branch to the next block is turned into a
+ *       branch on the inverted condition. A branch on a comparison is a
+ *       single if_icmp (or fcmp and if) instruction.
+ * </ul>
+ */
+public class IrEmitter extends JasminWriter {
+
+  private ErrorReporter reporter;
+  private boolean staticMethods;
+
+  // The function whose method is being emitted:
+  private Function fn;
+  private HashMap<Value, Integer> slots;
+  private HashSet<Instr> deferred;
+  private HashMap<Block, Integer> labels;
+
+  /** Constructor of the IrEmitter class. */
+  public IrEmitter(String infile, ErrorReporter reporter) {
+    super(infile);
+    this.reporter = reporter;
+  }
+
+  /** Generate all MiniC functions as static methods, called with
+   * invokestatic, instead of instance methods of an object that main
+   * creates.
+   */
+  public void setStaticMethods(boolean staticMethods) {
+    this.staticMethods = staticMethods;
+  }
+
+  // True if the method of f is static:
+  private boolean isStatic(Function f) {
+    return staticMethods || f.isStatic();
+  }
+
+  /** Top-level routine, called by the compiler driver. */
+  public void genCode(Module m) {
+    openOutput();
+    emit("; Jassmin assembly code");
+    emit("; MiniC v. 1.0");
+    emit(".class public " + className);
+    emit(".super java/lang/Object");
+    for (Global g : m.getGlobals()) {
+      emit(".field static " + g.name + " " + g.type.descriptor);
+    }
+    emitMethod(m.getClassInitializer());
+    emitConstructor();
+    for (Function f : m.getFunctions()) {
+      emitMethod(f);
+    }
+    closeOutput();
+  }
+
+  private void emitJump(String jump, Block target) {
+    emit(jump + " " + getLabelString(labels.get(target)));
+  }
+
+  // Load or store v, with the short forms for the slots 0..3:
+  private void emitLoad(Value v) {
+    Opcode op = v.type == IrType.FLOAT ? Opcode.FLOAD
+        : v.type.isReference() ? Opcode.ALOAD : Opcode.ILOAD;
+    emit(op.withLocal(slots.get(v)));
+  }
+
+  private void emitStore(Value v) {
+    Opcode op = v.type == IrType.FLOAT ? Opcode.FSTORE
+        : v.type.isReference() ? Opcode.ASTORE : Opcode.ISTORE;
+    emit(op.withLocal(slots.get(v)));
+  }
+
+  private void emitConstructor() {
+    emit("\n.method public <init>()V");
+    indent++;
+    emit(".limit stack 1");
+    emit(".limit locals 1");
+    emit(".var 0 is this L" + className + "; from Label0 to Label1\n");
+    emitLabel(0);
+    emit("aload_0");
+    emit("invokespecial java/lang/Object/<init>()V");
+    emitLabel(1);
+    emit("return");
+    indent--;
+    emit(".end method");
+  }
+
+  /*
+   * Methods.
+   */
+
+  private void emitMethod(Function f) {
+    fn = f;
+    if (f.isClassInitializer) {
+      emit("\n.method static <clinit>()V");
+    } else if (f.isMain) {
+      emit("\n.method public static main([Ljava/lang/String;)V");
+    } else {
+      emit("\n.method public " + (staticMethods ? "static " : "") + f.name
+          + f.getDescriptor());
+    }
+    indent++;
+    // The class initializer has no "this" either:
+    frame = new Frame(f.isMain, f.isClassInitializer || staticMethods);
+    splitCriticalEdges();
+    List<Block> layout = getLayout();
+    deferred = new HashSet<Instr>();
+    for (Block b : layout) {
+      planBlock(b);
+    }
+    allocateSlots(layout);
+    labels = new HashMap<Block, Integer>();
+    for (Block b : layout) {
+      labels.put(b, frame.getNewLabel());
+    }
+    if (f.isMain && !staticMethods) {
+      emit("new " + className);
+      emit("dup");
+      emit("invokespecial " + className + "/<init>()V");
+      emit("astore_1");
+    }
+    for (int k = 0; k < layout.size(); k++) {
+      Block next = k + 1 < layout.size() ? layout.get(k + 1) : null;
+      emitBlock(layout.get(k), next);
+    }
+    flushCode();
+    emit(".limit locals " + frame.getNrOfLocalVars());
+    emit(".limit stack " + frame.getMaxStackSize());
+    frame = null;
+    indent--;
+    emit(".end method");
+  }
+
+  // Split the edges from blocks with two successors to blocks with phis:
+  private void splitCriticalEdges() {
+    for (Block b : new ArrayList<Block>(fn.getBlocks())) {
+      Instr t = b.getTerminator();
+      if (t.op != Op.BRANCH) {
+        continue;
+      }
+      for (int k = 0; k < t.targets.length; k++) {
+        if (!t.targets[k].getPhis().isEmpty()) {
+          fn.splitEdge(b, t.targets[k]);
+        }
+      }
+    }
+  }
+
+  /* Method getLayout returns the blocks in reverse postorder of a depth
+   * first search that visits the successors of a block last to first.
+   * The first successor (the then part, the loop body) then follows its
+   * branch.
+   */
+  private List<Block> getLayout() {
+    ArrayList<Block> post = new ArrayList<Block>();
+    HashSet<Block> seen = new HashSet<Block>();
+    ArrayDeque<Block> stack = new ArrayDeque<Block>();
+    ArrayDeque<Integer> next = new ArrayDeque<Integer>();
+    seen.add(fn.getEntry());
+    stack.push(fn.getEntry());
+    next.push(fn.getEntry().getSuccs().size() - 1);
+    while (!stack.isEmpty()) {
+      Block b = stack.peek();
+      int k = next.pop();
+      if (k >= 0) {
+        next.push(k - 1);
+        Block s = b.getSuccs().get(k);
+        if (seen.add(s)) {
+          stack.push(s);
+          next.push(s.getSuccs().size() - 1);
+        }
+      } else {
+        stack.pop();
+        post.add(b);
+      }
+    }
+    Collections.reverse(post);
+    return post;
+  }
+
+  // The instructions of the tree rooted at root, in evaluation order:
+  private ArrayList<Instr> getTree(Instr root) {
+    ArrayList<Instr> order = new ArrayList<Instr>();
+    ArrayDeque<Object> work = new ArrayDeque<Object>();
+    work.push(root);
+    while (!work.isEmpty()) {
+      Object o = work.pop();
+      if (o instanceof Instr[]) {
+        order.add(((Instr[]) o)[0]);
+        continue;
+      }
+      Instr i = (Instr) o;
+      work.push(new Instr[] {i});
+      List<Value> operands = getEvaluatedOperands(i);
+      for (int k = operands.size() - 1; k >= 0; k--) {
+        Value v = operands.get(k);
+        if (deferred.contains(v)) {
+          work.push(v);
+        }
+      }
+    }
+    return order;
+  }
+
+  /* Method getEvaluatedOperands returns the values that are pushed
+   * when i is emitted: its operands, or for a JUMP, the values assigned
+   * to the phis of its target (see emitPhiCopies).
+   */
+  private List<Value> getEvaluatedOperands(Instr i) {
+    ArrayList<Value> operands = new ArrayList<Value>();
+    if (i.op == Op.JUMP) {
+      Block target = i.targets[0];
+      int k = target.getPreds().indexOf(i.getBlock());
+      for (Instr phi : target.getPhis()) {
+        if (phi.getOperand(k) != phi) {
+          operands.add(phi.getOperand(k));
+        }
+      }
+    } else {
+      for (int k = 0; k < i.getNrOfOperands(); k++) {
+        operands.add(i.getOperand(k));
+      }
+    }
+    return operands;
+  }
+
+  // True if v is assigned to phi at the end of block b:
+  private boolean isCopiedAtEndOf(Block b, Instr phi, Value v) {
+    Instr t = b.getTerminator();
+    return t.op == Op.JUMP && t.targets[0] == phi.getBlock()
+        && phi.getOperand(phi.getBlock().getPreds().indexOf(b)) == v;
+  }
+
+  // True for instructions that must be evaluated in program order:
+  private boolean isOrdered(Instr i) {
+    return i.op != Op.PHI && i.op != Op.PARAM && !i.isPure();
+  }
+
+  /* Method planBlock decides which values of b are evaluated where they
+   * are used (deferred). First, all values that are used once in b, or
+   * once as the value assigned to a phi at the end of b, are deferred. Then, as long as the
+   * ordered instructions would be evaluated in another order than they
+   * appear in b, the first one out of place (which is necessarily a
+   * deferred one, evaluated too late) is evaluated in place instead.
+   */
+  private void planBlock(Block b) {
+    for (Instr i : b.getInstrs()) {
+      if (i.op != Op.PHI && i.op != Op.PARAM && i.type != IrType.VOID
+          && i.getUsers().size() == 1) {
+        Instr u = i.getUsers().get(0);
+        if (u.op == Op.PHI ? isCopiedAtEndOf(b, u, i) : u.getBlock() == b) {
+          deferred.add(i);
+        }
+      }
+    }
+    ArrayList<Instr> inOrder = new ArrayList<Instr>();
+    for (Instr i : b.getInstrs()) {
+      if (isOrdered(i)) {
+        inOrder.add(i);
+      }
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      int k = 0;
+      for (Instr root : b.getInstrs()) {
+        if (changed || root.op == Op.PHI || deferred.contains(root)) {
+          continue;
+        }
+        for (Instr i : getTree(root)) {
+          if (isOrdered(i)) {
+            if (i != inOrder.get(k)) {
+              deferred.remove(inOrder.get(k));
+              changed = true;
+              break;
+            }
+            k++;
+          }
+        }
+      }
+    }
+  }
+
+  // True for the values that are kept in a local variable slot:
+  private boolean hasSlot(Value v) {
+    if (!(v instanceof Instr)) {
+      return false;
+    }
+    Instr i = (Instr) v;
+    return i.op == Op.PHI || i.op == Op.PARAM
+        || (i.hasUsers() && !deferred.contains(i));
+  }
+
+  /* Method allocateSlots gives the parameters, the phis and the values
+   * that are stored a local variable slot. The parameters get the slots
+   * after "this" in order. The other values, in layout order, get the
+   * lowest slot that no value they interfere with has, so that values
+   * that are never live at the same time share a slot.
+   */
+  private void allocateSlots(List<Block> layout) {
+    slots = new HashMap<Value, Integer>();
+    ArrayList<Integer> pool = new ArrayList<Integer>();
+    int nrOfParams = fn.getParamTypes().size();
+    for (int k = 0; k < nrOfParams; k++) {
+      pool.add(frame.getNewLocalVarIndex());
+    }
+    for (Instr i : fn.getEntry().getInstrs()) {
+      if (i.op == Op.PARAM) {
+        slots.put(i, pool.get(i.index));
+      }
+    }
+    HashMap<Value, HashSet<Value>> graph = getInterference(layout);
+    for (Block b : layout) {
+      for (Instr i : b.getInstrs()) {
+        if (i.op == Op.PARAM || !hasSlot(i)) {
+          continue;
+        }
+        HashSet<Integer> taken = new HashSet<Integer>();
+        for (Value v : graph.get(i)) {
+          if (slots.containsKey(v)) {
+            taken.add(slots.get(v));
+          }
+        }
+        Integer slot = null;
+        for (int s : pool) {
+          if (!taken.contains(s)) {
+            slot = s;
+            break;
+          }
+        }
+        if (slot == null) {
+          slot = frame.getNewLocalVarIndex();
+          pool.add(slot);
+        }
+        slots.put(i, slot);
+      }
+    }
+  }
+
+  /* Method getSteps returns the code of b as a list of steps, each a
+   * pair of the values with a slot that it loads and the values that it
+   * stores, in this order: the parameters at the start of the entry, each
+   * instruction that is not deferred with its tree of deferred operands,
+   * and a jump with the assignments to the phis of its target, which are
+   * all stored after all values are loaded.
+   */
+  private List<Step> getSteps(Block b) {
+    ArrayList<Step> steps = new ArrayList<Step>();
+    if (b == fn.getEntry()) {
+      ArrayList<Value> params = new ArrayList<Value>();
+      for (Instr i : b.getInstrs()) {
+        if (i.op == Op.PARAM) {
+          params.add(i);
+        }
+      }
+      steps.add(new Step(new ArrayList<Value>(), params));
+    }
+    for (Instr root : b.getInstrs()) {
+      if (root.op == Op.PHI || root.op == Op.PARAM
+          || deferred.contains(root)) {
+        continue;
+      }
+      ArrayList<Value> uses = new ArrayList<Value>();
+      for (Instr i : getTree(root)) {
+        for (Value v : getEvaluatedOperands(i)) {
+          if (hasSlot(v)) {
+            uses.add(v);
+          }
+        }
+      }
+      ArrayList<Value> defs = new ArrayList<Value>();
+      if (root.op == Op.JUMP) {
+        Block target = root.targets[0];
+        int k = target.getPreds().indexOf(b);
+        for (Instr phi : target.getPhis()) {
+          if (phi.getOperand(k) != phi) {
+            defs.add(phi);
+          }
+        }
+      } else if (hasSlot(root)) {
+        defs.add(root);
+      }
+      steps.add(new Step(uses, defs));
+    }
+    return steps;
+  }
+
+  // A step of the code of a block (see getSteps()):
+  private static final class Step {
+    final List<Value> uses;
+    final List<Value> defs;
+
+    Step(List<Value> uses, List<Value> defs) {
+      this.uses = uses;
+      this.defs = defs;
+    }
+  }
+
+  /* Method getInterference returns, for each value with a slot, the
+   * values that must not share its slot: those that are live where it is
+   * stored, and those stored in the same step (the phis assigned by one
+   * jump). The live values are found by backward dataflow over the steps
+   * of the blocks.
+   */
+  private HashMap<Value, HashSet<Value>> getInterference(
+      List<Block> layout) {
+    HashMap<Block, HashSet<Value>> liveIn =
+        new HashMap<Block, HashSet<Value>>();
+    HashMap<Block, List<Step>> steps = new HashMap<Block, List<Step>>();
+    for (Block b : layout) {
+      liveIn.put(b, new HashSet<Value>());
+      steps.put(b, getSteps(b));
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int k = layout.size() - 1; k >= 0; k--) {
+        Block b = layout.get(k);
+        HashSet<Value> live = scanSteps(b, steps.get(b), liveIn, null);
+        if (!live.equals(liveIn.get(b))) {
+          liveIn.put(b, live);
+          changed = true;
+        }
+      }
+    }
+    HashMap<Value, HashSet<Value>> graph = new HashMap<Value, HashSet<Value>>();
+    for (Block b : layout) {
+      for (Instr i : b.getInstrs()) {
+        if (hasSlot(i)) {
+          graph.put(i, new HashSet<Value>());
+        }
+      }
+    }
+    for (Block b : layout) {
+      scanSteps(b, steps.get(b), liveIn, graph);
+    }
+    return graph;
+  }
+
+  // The values live at the start of b, adding interferences to graph:
+  private HashSet<Value> scanSteps(Block b, List<Step> steps,
+                                   HashMap<Block, HashSet<Value>> liveIn,
+                                   HashMap<Value, HashSet<Value>> graph) {
+    HashSet<Value> live = new HashSet<Value>();
+    for (Block s : b.getSuccs()) {
+      live.addAll(liveIn.get(s));
+    }
+    for (int k = steps.size() - 1; k >= 0; k--) {
+      List<Value> uses = steps.get(k).uses;
+      List<Value> defs = steps.get(k).defs;
+      if (graph != null) {
+        for (Value d : defs) {
+          for (Value v : live) {
+            addInterference(graph, d, v);
+          }
+          for (Value v : defs) {
+            addInterference(graph, d, v);
+          }
+        }
+      }
+      live.removeAll(defs);
+      live.addAll(uses);
+    }
+    return live;
+  }
+
+  private static void addInterference(HashMap<Value, HashSet<Value>> graph,
+                                      Value a, Value b) {
+    if (a != b) {
+      graph.get(a).add(b);
+      graph.get(b).add(a);
+    }
+  }
+
+  /*
+   * Blocks and instructions.
+   */
+
+  private void emitBlock(Block b, Block next) {
+    if (!b.getPreds().isEmpty()) {
+      emitLabel(labels.get(b));
+    }
+    for (Instr i : b.getInstrs()) {
+      if (i.op == Op.PHI || i.op == Op.PARAM || deferred.contains(i)) {
+        continue;
+      }
+      if (i.op == Op.RET) {
+        emitReturn(i);
+      } else if (i.op == Op.JUMP) {
+        emitPhiCopies(b, i.targets[0]);
+        if (i.targets[0] != next) {
+          emitJump(JVM.GOTO, i.targets[0]);
+        }
+      } else if (i.op == Op.BRANCH) {
+        emitBranch(i, next);
+      } else {
+        emitValue(i, true);
+        if (i.type != IrType.VOID) {
+          if (i.hasUsers()) {
+            emitStore(i);
+          } else {
+            emit(JVM.POP);
+          }
+        }
+      }
+    }
+  }
+
+  private void emitReturn(Instr ret) {
+    if (ret.getNrOfOperands() == 0) {
+      emit(JVM.RETURN);
+      return;
+    }
+    Value v = ret.getOperand(0);
+    emitValue(v, false);
+    emit(v.type == IrType.FLOAT ? JVM.FRETURN : JVM.IRETURN);
+  }
+
+  // Assign the phis of target the values they get on the edge from b:
+  private void emitPhiCopies(Block b, Block target) {
+    List<Instr> phis = target.getPhis();
+    if (phis.isEmpty()) {
+      return;
+    }
+    int k = target.getPreds().indexOf(b);
+    ArrayList<Instr> assigned = new ArrayList<Instr>();
+    ArrayList<Instr> incremented = new ArrayList<Instr>();
+    for (Instr phi : phis) {
+      Value v = phi.getOperand(k);
+      if (v == phi) {
+        continue;
+      } else if (getIncrement(phi, v) != null) {
+        incremented.add(phi);
+      } else {
+        emitValue(v, false);
+        assigned.add(phi);
+      }
+    }
+    // The other values have been read, so the slots can be updated now:
+    for (Instr phi : incremented) {
+      emit(JVM.IINC + " " + slots.get(phi) + " "
+          + getIncrement(phi, phi.getOperand(k)));
+    }
+    for (int n = assigned.size() - 1; n >= 0; n--) {
+      emitStore(assigned.get(n));
+    }
+  }
+
+  /* Method getIncrement returns c if v, the value assigned to phi, is
+   * phi + c, c + phi or phi - c for a constant c that fits into the
+   * signed byte operand of iinc, and is evaluated only for the
+   * assignment. Then the assignment can be done with "iinc", which adds c
+   * to the slot of phi in place. Otherwise it returns null.
+   */
+  private Integer getIncrement(Instr phi, Value v) {
+    if (phi.type != IrType.INT || !deferred.contains(v)
+        || slots.get(phi) > 255) {
+      return null;
+    }
+    Instr i = (Instr) v;
+    if (i.op != Op.ADD && i.op != Op.SUB) {
+      return null;
+    }
+    Value a = i.getOperand(0);
+    Value c = i.getOperand(1);
+    if (i.op == Op.ADD && c == phi) {
+      c = a;
+      a = phi;
+    }
+    if (a != phi || !(c instanceof Const)) {
+      return null;
+    }
+    int n = i.op == Op.SUB ? -((Const) c).intValue : ((Const) c).intValue;
+    return n >= -128 && n <= 127 ? n : null;
+  }
+
+  private void emitBranch(Instr br, Block next) {
+    Value c = br.getOperand(0);
+    Block t = br.targets[0];
+    Block f = br.targets[1];
+    // Branch on !E is a branch on E with the targets swapped:
+    while (deferred.contains(c) && ((Instr) c).op == Op.NOT) {
+      c = ((Instr) c).getOperand(0);
+      Block b = t;
+      t = f;
+      f = b;
+    }
+    String jump;
+    String inverse;
+    if (deferred.contains(c) && ((Instr) c).op.isCompare()) {
+      Instr cmp = (Instr) c;
+      emitValue(cmp.getOperand(0), false);
+      emitValue(cmp.getOperand(1), false);
+      jump = emitCompare(cmp);
+      // For floats, negate the jump only; the fcmp instruction stays:
+      inverse = cmp.getOperand(0).type == IrType.FLOAT
+          ? getIfJump(cmp.op.negate()) : getIfIcmpJump(cmp.op.negate());
+    } else {
+      emitValue(c, false);
+      jump = JVM.IFNE;
+      inverse = JVM.IFEQ;
+    }
+    if (f == next) {
+      emitJump(jump, t);
+    } else if (t == next) {
+      emitJump(inverse, f);
+    } else {
+      emitJump(jump, t);
+      emitJump(JVM.GOTO, f);
+    }
+  }
+
+  private static String getIfJump(Op op) {
+    switch (op) {
+      case EQ:
+        return JVM.IFEQ;
+      case NE:
+        return JVM.IFNE;
+      case LT:
+        return JVM.IFLT;
+      case LE:
+        return JVM.IFLE;
+      case GT:
+        return JVM.IFGT;
+      default:
+        return JVM.IFGE;
+    }
+  }
+
+  private static String getIfIcmpJump(Op op) {
+    switch (op) {
+      case EQ:
+        return JVM.IF_ICMPEQ;
+      case NE:
+        return JVM.IF_ICMPNE;
+      case LT:
+        return JVM.IF_ICMPLT;
+      case LE:
+        return JVM.IF_ICMPLE;
+      case GT:
+        return JVM.IF_ICMPGT;
+      default:
+        return JVM.IF_ICMPGE;
+    }
+  }
+
+  /* Method emitCompare returns the conditional jump that is taken if
+   * the comparison cmp holds, for its operands on the stack. For float
+   * operands, it first emits the fcmpg (for &lt; and &lt;=) or fcmpl
+   * instruction, so that every comparison with NaN is false.
+   */
+  private String emitCompare(Instr cmp) {
+    if (cmp.getOperand(0).type == IrType.FLOAT) {
+      emit(cmp.op == Op.LT || cmp.op == Op.LE ? JVM.FCMPG : JVM.FCMPL);
+      return getIfJump(cmp.op);
+    }
+    return getIfIcmpJump(cmp.op);
+  }
+
+  /* Method emitValue pushes the value v. A deferred instruction (or the
+   * root instruction, if asRoot is set) is evaluated with its deferred
+   * operands, using a work stack instead of recursion; other values are
+   * constants or loaded from their slots.
+   */
+  private void emitValue(Value v, boolean asRoot) {
+    ArrayDeque<Object> work = new ArrayDeque<Object>();
+    if (asRoot) {
+      expand((Instr) v, work);
+    } else {
+      work.push(v);
+    }
+    while (!work.isEmpty()) {
+      Object o = work.pop();
+      if (o instanceof Runnable) {
+        ((Runnable) o).run();
+      } else if (deferred.contains(o)) {
+        expand((Instr) o, work);
+      } else if (o instanceof Const) {
+        emitConst((Const) o);
+      } else {
+        emitLoad((Value) o);
+      }
+    }
+  }
+
+  // Schedule the operands of i and then i's operation:
+  private void expand(Instr i, ArrayDeque<Object> work) {
+    work.push((Runnable) () -> emitOperation(i));
+    for (int k = i.getNrOfOperands() - 1; k >= 0; k--) {
+      work.push(i.getOperand(k));
+    }
+    if (i.op == Op.CALL && !i.isRuntimeCall() && !isStatic(i.target)) {
+      work.push((Runnable) () -> emitThis());
+    }
+  }
+
+  private void emitConst(Const c) {
+    switch (c.type) {
+      case FLOAT:
+        emitFCONST(c.floatValue);
+        break;
+      case STRING:
+        emit(JVM.LDC + " \"" + c.stringValue + "\"");
+        break;
+      default:
+        emitICONST(c.intValue);
+        break;
+    }
+  }
+
+  // The receiver of a call of a MiniC function:
+  private void emitThis() {
+    if (fn.isMain) {
+      emit(JVM.ALOAD_1);
+    } else if (fn.isClassInitializer) {
+      emit("new " + className);
+      emit("dup");
+      emit("invokespecial " + className + "/<init>()V");
+    } else {
+      emit(JVM.ALOAD_0);
+    }
+  }
+
+  // Emit the operation of i, with its operands on the stack:
+  private void emitOperation(Instr i) {
+    boolean isFloat = i.type == IrType.FLOAT;
+    switch (i.op) {
+      case ADD:
+        emit(isFloat ? JVM.FADD : JVM.IADD);
+        break;
+      case SUB:
+        emit(isFloat ? JVM.FSUB : JVM.ISUB);
+        break;
+      case MUL:
+        emit(isFloat ? JVM.FMUL : JVM.IMUL);
+        break;
+      case DIV:
+        emit(isFloat ? JVM.FDIV : JVM.IDIV);
+        break;
+      case NEG:
+        emit(isFloat ? JVM.FNEG : JVM.INEG);
+        break;
+      case I2F:
+        emit(JVM.I2F);
+        break;
+      case NOT:
+        emitICONST(1);
+        emit(JVM.IXOR);
+        break;
+      case EQ:
+      case NE:
+      case LT:
+      case LE:
+      case GT:
+      case GE:
+        //   if<op> Label1
+        //   iconst_0
+        //   goto Label2
+        // Label1:
+        //   iconst_1
+        // Label2:
+        final int l1 = frame.getNewLabel();
+        final int l2 = frame.getNewLabel();
+        emit(emitCompare(i) + " " + getLabelString(l1));
+        emitICONST(0);
+        emit(JVM.GOTO + " " + getLabelString(l2));
+        emitLabel(l1);
+        emitICONST(1);
+        emitLabel(l2);
+        break;
+      case LOADG:
+        emit(JVM.GETSTATIC + " " + className + "." + i.global.name + " "
+            + i.global.type.descriptor);
+        break;
+      case STOREG:
+        emit(JVM.PUTSTATIC + " " + className + "." + i.global.name + " "
+            + i.global.type.descriptor);
+        break;
+      case NEWARRAY:
+        emit(JVM.NEWARRAY + " " + (i.type == IrType.FLOAT_ARRAY ? "float"
+            : i.type == IrType.BOOL_ARRAY ? "boolean" : "int"));
+        break;
+      case ALOAD:
+        emit(isFloat ? JVM.FALOAD
+            : i.type == IrType.BOOL ? JVM.BALOAD : JVM.IALOAD);
+        break;
+      case ASTORE:
+        IrType t = i.getOperand(2).type;
+        emit(t == IrType.FLOAT ? JVM.FASTORE
+            : t == IrType.BOOL ? JVM.BASTORE : JVM.IASTORE);
+        break;
+      case INITARRAY:
+        emitConstantElements(i.bits, i.index,
+            i.getOperand(0).type.getElementType().descriptor);
+        emit(JVM.POP);
+        break;
+      case CALL:
+        if (i.isRuntimeCall()) {
+          emit(JVM.INVOKESTATIC + " minic/lang/System/" + i.callee
+              + i.descriptor);
+        } else if (isStatic(i.target)) {
+          emit(JVM.INVOKESTATIC + " " + className + "/" + i.callee
+              + i.descriptor);
+        } else {
+          emit(JVM.INVOKEVIRTUAL + " " + className + "/" + i.callee
+              + i.descriptor);
+        }
+        break;
+      default:
+        assert (false);
+    }
+  }
+
+}
@@ -50,11 +50,24 @@ public class JVM {
   public static final String IMUL = new String("imul");
   public static final String IDIV = new String("idiv");
   public static final String INEG = new String("ineg"); // x = -x
+  public static final String IXOR = new String("ixor");
+  public static final String IINC = new String("iinc"); // x = x + c
   public static final String FADD = new String("fadd");
   public static final String FSUB = new String("fsub");
   public static final String FMUL = new String("fmul");
   public static final String FDIV = new String("fdiv");
   public static final String FNEG = new String("fneg"); // x = -x
+  public static final String FCMPL = new String("fcmpl"); // -1 on NaN
+  public static final String FCMPG = new String("fcmpg"); // 1 on NaN
+  public static final String POP = new String("pop");
+  public static final String DUP = new String("dup");
+  public static final String NEWARRAY = new String("newarray");
+  public static final String IALOAD = new String("iaload");
+  public static final String FALOAD = new String("faload");
+  public static final String BALOAD = new String("baload"); // boolean[]
+  public static final String IASTORE = new String("iastore");
+  public static final String FASTORE = new String("fastore");
+  public static final String BASTORE = new String("bastore"); // boolean[]
   public static final String RETURN = new String("return");
   public static final String IRETURN = new String("ireturn");
   public static final String FRETURN = new String("freturn");
@@ -0,0 +1,332 @@
+package minic.codegen;
+
+import java.io.*;
+import java.util.Arrays;
+
+/** JasminWriter class that writes the Jasmin code of the emitters.
+ *
+ * <p>The Emitter and the IrEmitter both extend this class. It owns the
+ * output: the Jasmin file, or the ClassFileAssembler if one is set, the
+ * peephole optimizer that buffers the code of a method, and the Frame
+ * that follows the stack height and the locals of that code. It also
+ * emits the stores of the constants of array initializers, which both
+ * emitters share.
+ */
+public abstract class JasminWriter {
+
+  // The least number of constants in a row of an array initializer that
+  // are encoded in a string (see emitConstantElements()):
+  protected static final int BULK_INIT_MIN = 8;
+  // The most elements per string, so that 2 characters of 3 bytes each
+  // per element stay below the 65535 bytes of a string constant:
+  private static final int BULK_INIT_CHUNK = 8192;
+
+  private FileWriter fstream;
+  private BufferedWriter out;
+  private String outFileName;
+  private final int indentPerLevel = 3; // amount of indentation per level
+  private Peephole peephole;
+  private ClassFileAssembler assembler;
+  protected String className;
+  protected int indent;
+  protected int labelIndent;
+  // The frame of the method being emitted, null outside of methods:
+  protected Frame frame;
+
+  /** Constructor of the JasminWriter class. The class and the Jasmin
+   * file are named after the source file infile.
+   */
+  protected JasminWriter(String infile) {
+    labelIndent = 1;
+    String namepart = new File(infile).getName(); // strip directory part
+    int l = namepart.length();
+    if (namepart.endsWith(".mc")) {
+      className = namepart.substring(0, l - 3);
+      outFileName = namepart.substring(0, l - 2) + "j";
+    } else {
+      className = namepart;
+      outFileName = namepart + ".j";
+    }
+    indent = 0;
+  }
+
+  /** The name of the generated class. */
+  public String getClassName() {
+    return className;
+  }
+
+  /** Pass the generated code to assembler, which writes the class file,
+   * instead of writing the Jasmin file.
+   */
+  public void setAssembler(ClassFileAssembler assembler) {
+    this.assembler = assembler;
+  }
+
+  /** Enable the peephole optimizer: the code of each method is buffered
+   * in peephole and rewritten before it is written.
+   */
+  public void setPeephole(Peephole peephole) {
+    this.peephole = peephole;
+  }
+
+  /** Method openOutput: create the Jasmin file, unless the code goes to
+   * the assembler.
+   */
+  protected void openOutput() {
+    if (assembler != null) {
+      return;
+    }
+    try {
+      // Create output file:
+      fstream = new FileWriter(outFileName);
+      out = new BufferedWriter(fstream);
+    } catch (Exception e) {
+      // Catch exception if any:
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /** Method closeOutput: close the Jasmin file, if there is one. */
+  protected void closeOutput() {
+    if (assembler != null) {
+      return;
+    }
+    try {
+      out.close();
+    } catch (Exception e) {
+      // Catch exception if any
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /*
+   * emit* routines output Jasmin assembly code of various sorts.
+   */
+
+  /** Method emitNoIndent(String s).
+   * Emit a single string, but do not indent.
+   */
+  protected void emitNoIndent(String s) {
+    if (assembler != null) {
+      assembler.add(s);
+      return;
+    }
+    try {
+      out.write(s + "\n");
+    } catch (Exception e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /** Method emit(String s).
+   * Emit single string using indentation.
+   */
+  protected void emit(String s) {
+    if (peephole != null && frame != null && !s.trim().startsWith(".")) {
+      peephole.add(s);
+    } else {
+      flushCode();
+      output(s);
+    }
+  }
+
+  /** Method output(String s).
+   * Write single string using indentation, bypassing the peephole buffer.
+   */
+  private void output(String s) {
+    if (assembler != null) {
+      assembler.add(s);
+    } else {
+      try {
+        for (int i = 1; i <= indent * indentPerLevel; i++) {
+          out.write(" ");
+        }
+        out.write(s);
+        out.write('\n');
+      } catch (Exception e) {
+        System.err.println("Error: " + e.getMessage());
+        System.exit(1);
+      }
+    }
+    if (frame != null) {
+      frame.update(s);
+    }
+  }
+
+  /** Method getLabelString.
+   * For a given label nr, return the string representation
+   * of that label.
+   */
+  protected String getLabelString(int label) {
+    return "Label" + label;
+  }
+
+  /** Method emitLabel.
+   * Emit the defining occurrence of a label.
+   */
+  protected void emitLabel(int label) {
+    assert (label >= 0);
+    if (peephole != null && frame != null) {
+      peephole.add(getLabelString(label) + ":");
+    } else {
+      outputLabel(label);
+    }
+  }
+
+  /** Method outputLabel.
+   * Write the defining occurrence of a label, bypassing the peephole buffer.
+   */
+  private void outputLabel(int label) {
+    String ind = " ";
+    for (int i = 1; i <= labelIndent; i++) {
+      ind = ind.concat(" ");
+    }
+    emitNoIndent(ind + "Label" + label + ":");
+    if (frame != null) {
+      frame.label(label);
+    }
+  }
+
+  /** Method flushCode.
+   * Write the code buffered in the peephole optimizer, after rewriting it.
+   */
+  protected void flushCode() {
+    if (peephole == null || peephole.isEmpty()) {
+      return;
+    }
+    for (String line : peephole.flush(frame)) {
+      if (line.startsWith("Label") && line.endsWith(":")) {
+        outputLabel(Integer.parseInt(line.substring(5, line.length() - 1)));
+      } else {
+        output(line);
+      }
+    }
+  }
+
+  /** Method emitICONST.
+   * Emit an integer constant, in the shortest form (see Opcode).
+   */
+  protected void emitICONST(int value) {
+    emit(Opcode.pushInt(value));
+  }
+
+  /** Method emitFCONST.
+   * Emit a floating point constant, in the shortest form (see Opcode).
+   */
+  protected void emitFCONST(float value) {
+    emit(Opcode.pushFloat(value));
+  }
+
+  /** Method emitConstantElements.
+   * Emit the stores of the constant elements bits, given as the bits of
+   * the JVM (0 or 1 for bools, the raw int bits for floats), from element
+   * from on, into the new array on top of the stack, which stays there.
+   * elem is the type descriptor of the elements. Zeros are skipped,
+   * newarray has stored them already. Runs of at least BULK_INIT_MIN
+   * constants are not stored one by one, with up to 9 bytes of code per
+   * element, but encoded in a string constant (see encodeConstants())
+   * that a loop in the runtime decodes:
+   *
+   *    dup
+   *    bipush 16
+   *    ldc "..."
+   *    invokestatic minic/lang/System/initIntArray([IILjava/lang/String;)V
+   *
+   * This keeps large tables far below the 64 KB limit of the code of a
+   * method, and their initialization fast.
+   */
+  protected void emitConstantElements(int[] bits, int from, String elem) {
+    if (bits.length >= BULK_INIT_MIN) {
+      // newarray has stored the zeros at the end of the run:
+      int last = bits.length;
+      while (last > 0 && bits[last - 1] == 0) {
+        last--;
+      }
+      for (int k = 0; k < last; k += BULK_INIT_CHUNK) {
+        emitBulkInitializer(bits, k, Math.min(k + BULK_INIT_CHUNK, last),
+            from, elem);
+      }
+      return;
+    }
+    for (int k = 0; k < bits.length; k++) {
+      if (bits[k] == 0) {
+        continue;
+      }
+      emit(JVM.DUP);
+      emitICONST(from + k);
+      if (elem.equals("F")) {
+        emitFCONST(Float.intBitsToFloat(bits[k]));
+        emit(JVM.FASTORE);
+      } else {
+        emitICONST(bits[k]);
+        emit(elem.equals("Z") ? JVM.BASTORE : JVM.IASTORE);
+      }
+    }
+  }
+
+  /** Method emitBulkInitializer.
+   * Emit the call of the runtime that stores bits[k] .. bits[to - 1]
+   * into the elements from + k .. from + to - 1 of the array on top of
+   * the stack.
+   */
+  private void emitBulkInitializer(int[] bits, int k, int to, int from,
+                                   String elem) {
+    int[] chunk = Arrays.copyOfRange(bits, k, to);
+    boolean wide = false;
+    for (int b : chunk) {
+      wide |= b != (short) b;
+    }
+    String method;
+    if (elem.equals("F")) {
+      method = "initFloatArray([F";
+      wide = true;
+    } else if (elem.equals("Z")) {
+      method = "initBoolArray([Z";
+    } else if (wide) {
+      method = "initWideIntArray([I";
+    } else {
+      method = "initIntArray([I";
+    }
+    emit(JVM.DUP);
+    emitICONST(from + k);
+    emit(JVM.LDC + " \"" + encodeConstants(chunk, wide, elem.equals("Z"))
+        + "\"");
+    emit(JVM.INVOKESTATIC + " minic/lang/System/" + method
+        + "ILjava/lang/String;)V");
+  }
+
+  /** Method encodeConstants.
+   * Return the Jasmin text of the string that encodes the values bits:
+   * one character per value, '0' or '1' for bools and the 16 bit value
+   * otherwise, or two characters per value (high and low 16 bits) if
+   * wide. Characters other than printable ASCII are written as unicode
+   * escapes. In the modified UTF-8 of the class file, characters 1 to 127
+   * take 1 byte, so that small positive values cost 1 byte each.
+   */
+  private String encodeConstants(int[] bits, boolean wide, boolean isBool) {
+    StringBuilder s = new StringBuilder();
+    for (int value : bits) {
+      if (isBool) {
+        s.append(value != 0 ? '1' : '0');
+      } else if (wide) {
+        appendChar(s, (char) (value >>> 16));
+        appendChar(s, (char) value);
+      } else {
+        appendChar(s, (char) value);
+      }
+    }
+    return s.toString();
+  }
+
+  // Append c to the Jasmin text of a string, escaped if needed:
+  private static void appendChar(StringBuilder s, char c) {
+    if (c >= ' ' && c <= '~' && c != '"' && c != '\\') {
+      s.append(c);
+    } else {
+      s.append(String.format("\\u%04x", (int) c));
+    }
+  }
+}
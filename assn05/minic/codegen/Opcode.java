@@ -0,0 +1,251 @@
+package minic.codegen;
+
+import java.util.HashMap;
+
+/** Opcode enum: the JVM instructions the emitters generate, with the kind
+ * of their operand and their effect on the operand stack. It is shared by
+ * the emitters, which select the shortest form of constants and local
+ * variable accesses with pushInt(), pushFloat() and withLocal(), by Frame,
+ * which follows the stack height with getPops() and getPushes(), and by
+ * the ClassFileAssembler, which decodes the Jasmin code with
+ * forMnemonic().
+ *
+ * <p>The selectors return the Jasmin text of the instruction. The texts
+ * of the short forms, of bipush and of the accesses to slots below 256
+ * are built once, in tables, so that emitting them allocates nothing.
+ */
+public enum Opcode {
+
+  ICONST_M1("iconst_m1", Operand.NONE, 0, 1),
+  ICONST_0("iconst_0", Operand.NONE, 0, 1),
+  ICONST_1("iconst_1", Operand.NONE, 0, 1),
+  ICONST_2("iconst_2", Operand.NONE, 0, 1),
+  ICONST_3("iconst_3", Operand.NONE, 0, 1),
+  ICONST_4("iconst_4", Operand.NONE, 0, 1),
+  ICONST_5("iconst_5", Operand.NONE, 0, 1),
+  FCONST_0("fconst_0", Operand.NONE, 0, 1),
+  FCONST_1("fconst_1", Operand.NONE, 0, 1),
+  FCONST_2("fconst_2", Operand.NONE, 0, 1),
+  BIPUSH("bipush", Operand.BYTE, 0, 1),
+  SIPUSH("sipush", Operand.SHORT, 0, 1),
+  LDC("ldc", Operand.CONSTANT, 0, 1),
+  ILOAD("iload", Operand.LOCAL, 0, 1),
+  ILOAD_0("iload_0", Operand.NONE, 0, 1),
+  ILOAD_1("iload_1", Operand.NONE, 0, 1),
+  ILOAD_2("iload_2", Operand.NONE, 0, 1),
+  ILOAD_3("iload_3", Operand.NONE, 0, 1),
+  FLOAD("fload", Operand.LOCAL, 0, 1),
+  FLOAD_0("fload_0", Operand.NONE, 0, 1),
+  FLOAD_1("fload_1", Operand.NONE, 0, 1),
+  FLOAD_2("fload_2", Operand.NONE, 0, 1),
+  FLOAD_3("fload_3", Operand.NONE, 0, 1),
+  ALOAD("aload", Operand.LOCAL, 0, 1),
+  ALOAD_0("aload_0", Operand.NONE, 0, 1),
+  ALOAD_1("aload_1", Operand.NONE, 0, 1),
+  ALOAD_2("aload_2", Operand.NONE, 0, 1),
+  ALOAD_3("aload_3", Operand.NONE, 0, 1),
+  ISTORE("istore", Operand.LOCAL, 1, 0),
+  ISTORE_0("istore_0", Operand.NONE, 1, 0),
+  ISTORE_1("istore_1", Operand.NONE, 1, 0),
+  ISTORE_2("istore_2", Operand.NONE, 1, 0),
+  ISTORE_3("istore_3", Operand.NONE, 1, 0),
+  FSTORE("fstore", Operand.LOCAL, 1, 0),
+  FSTORE_0("fstore_0", Operand.NONE, 1, 0),
+  FSTORE_1("fstore_1", Operand.NONE, 1, 0),
+  FSTORE_2("fstore_2", Operand.NONE, 1, 0),
+  FSTORE_3("fstore_3", Operand.NONE, 1, 0),
+  ASTORE("astore", Operand.LOCAL, 1, 0),
+  ASTORE_0("astore_0", Operand.NONE, 1, 0),
+  ASTORE_1("astore_1", Operand.NONE, 1, 0),
+  ASTORE_2("astore_2", Operand.NONE, 1, 0),
+  ASTORE_3("astore_3", Operand.NONE, 1, 0),
+  IINC("iinc", Operand.IINC, 0, 0),
+  IADD("iadd", Operand.NONE, 2, 1),
+  ISUB("isub", Operand.NONE, 2, 1),
+  IMUL("imul", Operand.NONE, 2, 1),
+  IDIV("idiv", Operand.NONE, 2, 1),
+  INEG("ineg", Operand.NONE, 1, 1),
+  IXOR("ixor", Operand.NONE, 2, 1),
+  FADD("fadd", Operand.NONE, 2, 1),
+  FSUB("fsub", Operand.NONE, 2, 1),
+  FMUL("fmul", Operand.NONE, 2, 1),
+  FDIV("fdiv", Operand.NONE, 2, 1),
+  FNEG("fneg", Operand.NONE, 1, 1),
+  FCMPL("fcmpl", Operand.NONE, 2, 1),
+  FCMPG("fcmpg", Operand.NONE, 2, 1),
+  I2F("i2f", Operand.NONE, 1, 1),
+  NEWARRAY("newarray", Operand.ATYPE, 1, 1),
+  IALOAD("iaload", Operand.NONE, 2, 1),
+  FALOAD("faload", Operand.NONE, 2, 1),
+  BALOAD("baload", Operand.NONE, 2, 1),
+  IASTORE("iastore", Operand.NONE, 3, 0),
+  FASTORE("fastore", Operand.NONE, 3, 0),
+  BASTORE("bastore", Operand.NONE, 3, 0),
+  POP("pop", Operand.NONE, 1, 0),
+  DUP("dup", Operand.NONE, 1, 2),
+  NEW("new", Operand.CLASS, 0, 1),
+  GETSTATIC("getstatic", Operand.FIELD, 0, Opcode.VARIES),
+  PUTSTATIC("putstatic", Operand.FIELD, Opcode.VARIES, 0),
+  INVOKESTATIC("invokestatic", Operand.METHOD, Opcode.VARIES, Opcode.VARIES),
+  INVOKEVIRTUAL("invokevirtual", Operand.METHOD, Opcode.VARIES, Opcode.VARIES),
+  INVOKESPECIAL("invokespecial", Operand.METHOD, Opcode.VARIES, Opcode.VARIES),
+  GOTO("goto", Operand.LABEL, 0, 0),
+  IFEQ("ifeq", Operand.LABEL, 1, 0),
+  IFNE("ifne", Operand.LABEL, 1, 0),
+  IFLT("iflt", Operand.LABEL, 1, 0),
+  IFGE("ifge", Operand.LABEL, 1, 0),
+  IFGT("ifgt", Operand.LABEL, 1, 0),
+  IFLE("ifle", Operand.LABEL, 1, 0),
+  IF_ICMPEQ("if_icmpeq", Operand.LABEL, 2, 0),
+  IF_ICMPNE("if_icmpne", Operand.LABEL, 2, 0),
+  IF_ICMPLT("if_icmplt", Operand.LABEL, 2, 0),
+  IF_ICMPGE("if_icmpge", Operand.LABEL, 2, 0),
+  IF_ICMPGT("if_icmpgt", Operand.LABEL, 2, 0),
+  IF_ICMPLE("if_icmple", Operand.LABEL, 2, 0),
+  RETURN("return", Operand.NONE, 0, 0),
+  IRETURN("ireturn", Operand.NONE, 1, 0),
+  FRETURN("freturn", Operand.NONE, 1, 0);
+
+  /** Operand enum: the kinds of operands of the instructions. */
+  public enum Operand {
+    NONE, BYTE, SHORT, CONSTANT, LOCAL, IINC, ATYPE, CLASS, FIELD, METHOD,
+    LABEL
+  }
+
+  /** The stack effect of the instructions whose operand is a field or a
+   * method: it depends on the descriptor.
+   */
+  public static final int VARIES = -1;
+
+  private static final HashMap<String, Opcode> BY_MNEMONIC =
+      new HashMap<String, Opcode>();
+  // The texts of iconst_m1 .. iconst_5 and bipush, indexed by value + 128:
+  private static final String[] INT_CONSTANTS = new String[256];
+  // The number of slots with a precomputed load or store text:
+  private static final int NR_OF_LOCAL_TEXTS = 256;
+
+  private final String mnemonic;
+  private final Operand operand;
+  private final int pops;
+  private final int pushes;
+  // For iload, istore etc.: the texts of the accesses to slots 0..255:
+  private String[] localTexts;
+  // For the short forms iload_0 etc.: the long form and the slot:
+  private Opcode longForm;
+  private int slot;
+
+  static {
+    for (Opcode op : values()) {
+      BY_MNEMONIC.put(op.mnemonic, op);
+      if (op.operand == Operand.LOCAL) {
+        op.localTexts = new String[NR_OF_LOCAL_TEXTS];
+        for (int n = 0; n < NR_OF_LOCAL_TEXTS; n++) {
+          op.localTexts[n] = n <= 3 ? op.mnemonic + "_" + n
+              : op.mnemonic + " " + n;
+        }
+      } else if (op.mnemonic.matches("[ifa](load|store)_[0-3]")) {
+        int n = op.mnemonic.length();
+        op.longForm = BY_MNEMONIC.get(op.mnemonic.substring(0, n - 2));
+        op.slot = op.mnemonic.charAt(n - 1) - '0';
+      }
+    }
+    Opcode[] iconsts = {ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3,
+        ICONST_4, ICONST_5};
+    for (int value = -128; value <= 127; value++) {
+      INT_CONSTANTS[value + 128] = value >= -1 && value <= 5
+          ? iconsts[value + 1].mnemonic : BIPUSH.mnemonic + " " + value;
+    }
+  }
+
+  Opcode(String mnemonic, Operand operand, int pops, int pushes) {
+    this.mnemonic = mnemonic;
+    this.operand = operand;
+    this.pops = pops;
+    this.pushes = pushes;
+  }
+
+  /** The instruction with the given mnemonic, or null. */
+  public static Opcode forMnemonic(String mnemonic) {
+    return BY_MNEMONIC.get(mnemonic);
+  }
+
+  public String getMnemonic() {
+    return mnemonic;
+  }
+
+  public Operand getOperand() {
+    return operand;
+  }
+
+  /** The number of values the instruction pops, or VARIES. */
+  public int getPops() {
+    return pops;
+  }
+
+  /** The number of values the instruction pushes, or VARIES. */
+  public int getPushes() {
+    return pushes;
+  }
+
+  /** True if the code does not continue after the instruction. */
+  public boolean isUnconditional() {
+    return this == GOTO || this == RETURN || this == IRETURN
+        || this == FRETURN;
+  }
+
+  /** For a short form such as iload_2, the long form (iload), and null
+   * for the other instructions.
+   */
+  public Opcode getLongForm() {
+    return longForm;
+  }
+
+  /** For a short form such as iload_2, the slot (2). */
+  public int getSlot() {
+    return slot;
+  }
+
+  /** Method withLocal: the text of this load or store instruction for the
+   * given slot, in the short form for the slots 0 to 3.
+   */
+  public String withLocal(int slot) {
+    assert (operand == Operand.LOCAL && slot >= 0);
+    return slot < NR_OF_LOCAL_TEXTS ? localTexts[slot]
+        : mnemonic + " " + slot;
+  }
+
+  /** Method pushInt: the text of the shortest instruction that pushes
+   * value: iconst_m1 .. iconst_5, bipush, sipush or ldc.
+   */
+  public static String pushInt(int value) {
+    if (value >= -128 && value <= 127) {
+      return INT_CONSTANTS[value + 128];
+    } else if (value >= -32768 && value <= 32767) {
+      return SIPUSH.mnemonic + " " + value;
+    } else {
+      return LDC.mnemonic + " " + value;
+    }
+  }
+
+  /** Method pushFloat: the text of the shortest instruction that pushes
+   * value: fconst_0 .. fconst_2 or ldc.
+   */
+  public static String pushFloat(float value) {
+    // Compare the bits, so that -0.0 is not taken for 0.0:
+    if (Float.floatToRawIntBits(value) == Float.floatToRawIntBits(0.0f)) {
+      return FCONST_0.mnemonic;
+    } else if (value == 1.0f) {
+      return FCONST_1.mnemonic;
+    } else if (value == 2.0f) {
+      return FCONST_2.mnemonic;
+    } else {
+      return LDC.mnemonic + " " + value;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return mnemonic;
+  }
+
+}
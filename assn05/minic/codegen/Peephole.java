@@ -0,0 +1,454 @@
+package minic.codegen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Peephole class: a buffer for the code of one method, as emitted, which
+ * is rewritten with local rules before it is written out:
+ * <ul>
+ *   <li>a branch on a constant (iconst_1 ifeq), also where the constant
+ *       reaches the ifeq or ifne through a goto or a label, as for the
+ *       value of a comparison, becomes a goto or nothing,
+ *   <li>a branch to a goto branches to the target of the goto,
+ *   <li>a goto to the next label is removed (the goto over an empty else
+ *       branch, among others),
+ *   <li>a conditional branch over a goto becomes the inverse branch to
+ *       the target of the goto,
+ *   <li>istore n iload n becomes dup istore n (the same for floats),
+ *   <li>an int constant followed by i2f becomes a float constant,
+ *   <li>the code after a goto or a return up to the next label that is
+ *       branched to is removed.
+ * </ul>
+ * The rules are applied until none applies. Labels that no branch refers
+ * to are removed, so that the rules see the labels that matter only. The
+ * lines are Jasmin code: instructions, comments, and labels "LabelN:".
+ */
+public class Peephole {
+
+  private ArrayList<String> code;
+  // The number of branches to each label in code:
+  private HashMap<String, Integer> refs;
+  private LinkedHashMap<String, Integer> stats;
+
+  /** Constructor of the Peephole class. */
+  public Peephole() {
+    code = new ArrayList<String>();
+    refs = new HashMap<String, Integer>();
+    stats = new LinkedHashMap<String, Integer>();
+    stats.put("constant branches folded", 0);
+    stats.put("branches to gotos shortened", 0);
+    stats.put("gotos to the next label removed", 0);
+    stats.put("branches over gotos inverted", 0);
+    stats.put("store/load pairs replaced by dup", 0);
+    stats.put("int to float conversions of constants folded", 0);
+    stats.put("unreachable instructions removed", 0);
+  }
+
+  /** Method add: append a line of code to the buffer. */
+  public void add(String line) {
+    insert(code.size(), line.trim());
+  }
+
+  /** Method isEmpty: true if no code is buffered. */
+  public boolean isEmpty() {
+    return code.isEmpty();
+  }
+
+  /** Method flush: rewrite the buffered code and return it, emptying the
+   * buffer. New labels are taken from frame.
+   */
+  public List<String> flush(Frame frame) {
+    boolean changed = true;
+    while (changed) {
+      changed = removeUnusedLabels();
+      changed |= removeUnreachable();
+      changed |= foldConstantBranches(frame);
+      changed |= shortenBranches();
+      changed |= removeGotosToNext();
+      changed |= invertBranches();
+      changed |= replaceStoreLoads();
+      changed |= foldConversions();
+    }
+    List<String> result = code;
+    code = new ArrayList<String>();
+    refs.clear();
+    return result;
+  }
+
+  /** Statistics of the rules, over all methods so far. */
+  public String getStatistics() {
+    StringBuilder s = new StringBuilder();
+    for (Map.Entry<String, Integer> e : stats.entrySet()) {
+      s.append("; peephole: ").append(e.getValue()).append(' ')
+          .append(e.getKey()).append('\n');
+    }
+    return s.toString();
+  }
+
+  private void count(String rule) {
+    stats.put(rule, stats.get(rule) + 1);
+  }
+
+  /*
+   * Editing the code, keeping refs up to date.
+   */
+
+  private void insert(int k, String line) {
+    code.add(k, line);
+    reference(line, 1);
+  }
+
+  private void remove(int k) {
+    reference(code.remove(k), -1);
+  }
+
+  private void replace(int k, String line) {
+    reference(code.set(k, line), -1);
+    reference(line, 1);
+  }
+
+  private void reference(String line, int n) {
+    if (isBranch(line)) {
+      String label = getArg(line);
+      refs.put(label, refs.getOrDefault(label, 0) + n);
+    }
+  }
+
+  /*
+   * Looking at the code.
+   */
+
+  private static boolean isLabel(String line) {
+    return line.startsWith("Label") && line.endsWith(":");
+  }
+
+  private static boolean isComment(String line) {
+    return line.isEmpty() || line.startsWith(";");
+  }
+
+  private static boolean isInstr(String line) {
+    return !isLabel(line) && !isComment(line);
+  }
+
+  private static String getOp(String line) {
+    int sp = line.indexOf(' ');
+    return sp < 0 ? line : line.substring(0, sp);
+  }
+
+  private static String getArg(String line) {
+    int sp = line.indexOf(' ');
+    return sp < 0 ? "" : line.substring(sp + 1).trim();
+  }
+
+  private static String getLabelName(String line) {
+    return line.substring(0, line.length() - 1);
+  }
+
+  private static boolean isBranch(String line) {
+    String op = getOp(line);
+    return isInstr(line) && (op.startsWith("if") || op.equals(JVM.GOTO));
+  }
+
+  private static boolean isConditionalBranch(String line) {
+    return isBranch(line) && !getOp(line).equals(JVM.GOTO);
+  }
+
+  // True if the code does not continue after line:
+  private static boolean isUnconditional(String line) {
+    String op = getOp(line);
+    return isInstr(line) && (op.equals(JVM.GOTO) || op.endsWith("return")
+        || op.equals("athrow"));
+  }
+
+  // The value of an int constant instruction, or null:
+  private static Integer getIntConstant(String line) {
+    String op = getOp(line);
+    String arg = getArg(line);
+    if (op.equals("iconst_m1")) {
+      return -1;
+    } else if (op.matches("iconst_[0-5]")) {
+      return op.charAt(7) - '0';
+    } else if ((op.equals("bipush") || op.equals("sipush")
+        || op.startsWith("ldc")) && arg.matches("-?[0-9]+")) {
+      return Integer.valueOf(arg);
+    }
+    return null;
+  }
+
+  // Local variable instructions: the type prefix and slot, or null:
+  private static String[] getLocalAccess(String line, String kind) {
+    String op = getOp(line);
+    if (op.matches("[if]" + kind + "_[0-3]")) {
+      return new String[] {op.substring(0, 1), op.substring(op.length() - 1)};
+    } else if (op.matches("[if]" + kind)) {
+      return new String[] {op.substring(0, 1), getArg(line)};
+    }
+    return null;
+  }
+
+  // The index of the first line after k that is not a comment:
+  private int next(int k) {
+    int j = k + 1;
+    while (j < code.size() && isComment(code.get(j))) {
+      j++;
+    }
+    return j;
+  }
+
+  // The index of the first instruction after k:
+  private int nextInstr(int k) {
+    int j = k + 1;
+    while (j < code.size() && !isInstr(code.get(j))) {
+      j++;
+    }
+    return j;
+  }
+
+  // True if label directly follows line k, with labels and comments only
+  // in between:
+  private boolean isNextLabel(int k, String label) {
+    for (int j = k + 1; j < code.size() && !isInstr(code.get(j)); j++) {
+      if (code.get(j).equals(label + ":")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // The index of the instruction at label, or code.size() if none:
+  private int getInstrIndexAt(String label) {
+    int k = code.indexOf(label + ":");
+    return k < 0 ? code.size() : nextInstr(k);
+  }
+
+  // The line of the instruction at label, or "" if there is none:
+  private String getInstrAt(String label) {
+    int k = getInstrIndexAt(label);
+    return k < code.size() ? code.get(k) : "";
+  }
+
+  private static String invert(String op) {
+    switch (op) {
+      case "ifeq": return "ifne";
+      case "ifne": return "ifeq";
+      case "iflt": return "ifge";
+      case "ifge": return "iflt";
+      case "ifgt": return "ifle";
+      case "ifle": return "ifgt";
+      case "if_icmpeq": return "if_icmpne";
+      case "if_icmpne": return "if_icmpeq";
+      case "if_icmplt": return "if_icmpge";
+      case "if_icmpge": return "if_icmplt";
+      case "if_icmpgt": return "if_icmple";
+      case "if_icmple": return "if_icmpgt";
+      default:
+        throw new IllegalArgumentException("no inverse of " + op);
+    }
+  }
+
+  /*
+   * The rules. Each returns true if it changed the code.
+   */
+
+  private boolean removeUnusedLabels() {
+    boolean changed = false;
+    for (int k = code.size() - 1; k >= 0; k--) {
+      String line = code.get(k);
+      if (isLabel(line) && refs.getOrDefault(getLabelName(line), 0) == 0) {
+        remove(k);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private boolean removeUnreachable() {
+    boolean changed = false;
+    for (int k = 0; k < code.size(); k++) {
+      if (!isUnconditional(code.get(k))) {
+        continue;
+      }
+      int j = k + 1;
+      while (j < code.size() && !isLabel(code.get(j))) {
+        if (isInstr(code.get(j))) {
+          remove(j);
+          count("unreachable instructions removed");
+          changed = true;
+        } else {
+          j++;
+        }
+      }
+    }
+    return changed;
+  }
+
+  /* Method foldConstantBranches replaces an int constant that is tested
+   * by an ifeq or ifne with a goto to where the test goes: directly, or
+   * when the constant is followed by a goto or labels that lead to the
+   * test. In the latter case, the test itself stays for the other paths
+   * to it; if the test falls through, a label is added after it.
+   */
+  private boolean foldConstantBranches(Frame frame) {
+    boolean changed = false;
+    for (int k = 0; k < code.size(); k++) {
+      Integer c = getIntConstant(code.get(k));
+      int j = next(k);
+      if (c == null || j == code.size()) {
+        continue;
+      }
+      String line = code.get(j);
+      String op = getOp(line);
+      if (op.equals(JVM.IFEQ) || op.equals(JVM.IFNE)) {
+        boolean taken = (c == 0) == op.equals(JVM.IFEQ);
+        remove(j);
+        if (taken) {
+          replace(k, JVM.GOTO + " " + getArg(line));
+        } else {
+          remove(k);
+        }
+      } else if (isLabel(line) || op.equals(JVM.GOTO)) {
+        int t = isLabel(line) ? nextInstr(k) : getInstrIndexAt(getArg(line));
+        if (t == code.size()) {
+          continue;
+        }
+        String test = getOp(code.get(t));
+        if (!test.equals(JVM.IFEQ) && !test.equals(JVM.IFNE)) {
+          continue;
+        }
+        String target = null;
+        boolean newLabel = false;
+        if ((c == 0) == test.equals(JVM.IFEQ)) {
+          target = getArg(code.get(t));
+        } else {
+          int after = next(t);
+          if (after < code.size() && isLabel(code.get(after))) {
+            target = getLabelName(code.get(after));
+          } else {
+            target = "Label" + frame.getNewLabel();
+            newLabel = true;
+          }
+        }
+        replace(k, JVM.GOTO + " " + target);
+        if (op.equals(JVM.GOTO)) {
+          remove(j);
+          if (t > j) {
+            t--;
+          }
+        }
+        if (newLabel) {
+          insert(t + 1, target + ":");
+        }
+      } else {
+        continue;
+      }
+      count("constant branches folded");
+      changed = true;
+    }
+    return changed;
+  }
+
+  // Retarget branches to a goto, unless the gotos form a cycle:
+  private boolean shortenBranches() {
+    boolean changed = false;
+    for (int k = 0; k < code.size(); k++) {
+      String line = code.get(k);
+      if (!isBranch(line)) {
+        continue;
+      }
+      String label = getArg(line);
+      ArrayList<String> chain = new ArrayList<String>();
+      chain.add(label);
+      String instr = getInstrAt(label);
+      while (getOp(instr).equals(JVM.GOTO)
+          && !chain.contains(getArg(instr))) {
+        chain.add(getArg(instr));
+        instr = getInstrAt(getArg(instr));
+      }
+      if (chain.size() > 1 && !getOp(instr).equals(JVM.GOTO)) {
+        replace(k, getOp(line) + " " + chain.get(chain.size() - 1));
+        count("branches to gotos shortened");
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private boolean removeGotosToNext() {
+    boolean changed = false;
+    for (int k = code.size() - 1; k >= 0; k--) {
+      String line = code.get(k);
+      if (getOp(line).equals(JVM.GOTO) && isInstr(line)
+          && isNextLabel(k, getArg(line))) {
+        remove(k);
+        count("gotos to the next label removed");
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  // if<cond> L1 goto L2 L1: becomes if<not cond> L2 L1:
+  private boolean invertBranches() {
+    boolean changed = false;
+    for (int k = 0; k < code.size(); k++) {
+      String line = code.get(k);
+      int j = next(k);
+      if (!isConditionalBranch(line) || j == code.size()
+          || !getOp(code.get(j)).equals(JVM.GOTO)
+          || !isNextLabel(j, getArg(line))) {
+        continue;
+      }
+      String target = getArg(code.get(j));
+      remove(j);
+      replace(k, invert(getOp(line)) + " " + target);
+      count("branches over gotos inverted");
+      changed = true;
+    }
+    return changed;
+  }
+
+  private boolean replaceStoreLoads() {
+    boolean changed = false;
+    for (int k = 0; k < code.size(); k++) {
+      String[] store = getLocalAccess(code.get(k), "store");
+      int j = next(k);
+      if (store == null || j == code.size()) {
+        continue;
+      }
+      String[] load = getLocalAccess(code.get(j), "load");
+      if (load != null && load[0].equals(store[0])
+          && load[1].equals(store[1])) {
+        remove(j);
+        insert(k, JVM.DUP);
+        count("store/load pairs replaced by dup");
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private boolean foldConversions() {
+    boolean changed = false;
+    for (int k = 0; k < code.size(); k++) {
+      Integer c = getIntConstant(code.get(k));
+      int j = next(k);
+      if (c == null || j == code.size()
+          || !getOp(code.get(j)).equals(JVM.I2F)) {
+        continue;
+      }
+      remove(j);
+      if (c >= 0 && c <= 2) {
+        replace(k, "fconst_" + c);
+      } else {
+        replace(k, JVM.LDC + " " + (float) c);
+      }
+      count("int to float conversions of constants folded");
+      changed = true;
+    }
+    return changed;
+  }
+
+}
@@ -0,0 +1,224 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** A basic block: phi instructions first, then the body, then one
+ * terminator (JUMP, BRANCH or RET) once the block is complete.
+ *
+ * <p>The operands of each phi correspond, in order, to the predecessors
+ * in preds. A block is listed once per edge, so a BRANCH with two equal
+ * targets makes its block appear twice in the target's preds.
+ */
+public final class Block {
+
+  public final int id;
+  final Function function;
+  final ArrayList<Instr> instrs;
+  final ArrayList<Block> preds;
+
+  Block(Function function, int id) {
+    this.function = function;
+    this.id = id;
+    this.instrs = new ArrayList<Instr>();
+    this.preds = new ArrayList<Block>();
+  }
+
+  public Function getFunction() {
+    return function;
+  }
+
+  public List<Instr> getInstrs() {
+    return Collections.unmodifiableList(instrs);
+  }
+
+  public List<Block> getPreds() {
+    return Collections.unmodifiableList(preds);
+  }
+
+  /** The terminator of the block, or null if it has none yet. */
+  public Instr getTerminator() {
+    if (instrs.isEmpty()) {
+      return null;
+    }
+    Instr t = instrs.get(instrs.size() - 1);
+    return t.isTerminator() ? t : null;
+  }
+
+  /** The successors, in the order of the terminator's targets. */
+  public List<Block> getSuccs() {
+    Instr t = getTerminator();
+    ArrayList<Block> succs = new ArrayList<Block>(2);
+    if (t != null) {
+      for (Block b : t.targets) {
+        succs.add(b);
+      }
+    }
+    return succs;
+  }
+
+  /** The phi instructions at the start of the block. */
+  public List<Instr> getPhis() {
+    int n = 0;
+    while (n < instrs.size() && instrs.get(n).op == Op.PHI) {
+      n++;
+    }
+    return Collections.unmodifiableList(instrs.subList(0, n));
+  }
+
+  /** Method append: add i at the end of the block. A terminator also
+   * makes this block a predecessor of its targets; their phis must get
+   * operands for the new edge from the caller.
+   */
+  public Instr append(Instr i) {
+    assert (getTerminator() == null);
+    add(instrs.size(), i);
+    for (Block b : i.targets) {
+      b.preds.add(this);
+    }
+    return i;
+  }
+
+  // Append without adding edges, see Function.splitEdge:
+  void appendNoEdges(Instr i) {
+    add(instrs.size(), i);
+  }
+
+  /** Method insertBeforeTerminator: add i just before the terminator. */
+  public Instr insertBeforeTerminator(Instr i) {
+    int pos = instrs.size();
+    if (getTerminator() != null) {
+      pos--;
+    }
+    add(pos, i);
+    return i;
+  }
+
+  /** Method insertBefore: add i just before the instruction before. */
+  public Instr insertBefore(Instr i, Instr before) {
+    add(instrs.indexOf(before), i);
+    return i;
+  }
+
+  /** Method addPhi: add phi after the phis already in the block. */
+  public Instr addPhi(Instr phi) {
+    assert (phi.op == Op.PHI);
+    add(getPhis().size(), phi);
+    return phi;
+  }
+
+  private void add(int pos, Instr i) {
+    assert (i.block == null);
+    i.block = this;
+    i.id = function.nextInstrId++;
+    instrs.add(pos, i);
+  }
+
+  /** Method remove: delete instruction i, which must not have users.
+   * Removing the terminator also removes this block's edges.
+   */
+  public void remove(Instr i) {
+    assert (i.block == this && !i.hasUsers());
+    if (i.isTerminator()) {
+      for (Block b : i.targets) {
+        b.removePred(this);
+      }
+    }
+    instrs.remove(i);
+    i.dropOperands();
+    i.block = null;
+  }
+
+  /** Method moveBefore: move instruction i of another (or the same) block
+   * to this block, just before the instruction before (or before the
+   * terminator if before is null).
+   */
+  public void moveBefore(Instr i, Instr before) {
+    assert (!i.isTerminator() && i.op != Op.PHI);
+    i.block.instrs.remove(i);
+    int pos = before == null ? instrs.size() : instrs.indexOf(before);
+    if (before == null && getTerminator() != null) {
+      pos--;
+    }
+    i.block = this;
+    instrs.add(pos, i);
+  }
+
+  /** Method replaceBranch: replace the BRANCH at the end of the block by
+   * a JUMP to its target number k, and remove the edge to the other one.
+   */
+  public void replaceBranch(int k) {
+    Instr br = getTerminator();
+    assert (br.op == Op.BRANCH);
+    Instr j = new Instr(Op.JUMP, IrType.VOID);
+    j.targets[0] = br.targets[k];
+    br.targets[1 - k].removePred(this);
+    br.dropOperands();
+    br.block = null;
+    instrs.remove(instrs.size() - 1);
+    add(instrs.size(), j);
+  }
+
+  /** Method removePred: remove one edge from p, together with the
+   * corresponding phi operands.
+   */
+  public void removePred(Block p) {
+    int k = preds.indexOf(p);
+    assert (k >= 0);
+    preds.remove(k);
+    for (Instr phi : getPhis()) {
+      phi.removeOperand(k);
+    }
+  }
+
+  /** Method replacePred: let the edge from old come from p instead
+   * (after splitting an edge or retargeting a jump).
+   */
+  void replacePred(Block old, Block p) {
+    preds.set(preds.indexOf(old), p);
+  }
+
+  /** Method retarget: make the terminator of this block go to nb where
+   * it went to old, for one edge. The edge keeps its place in the preds
+   * of old if keepPred is set (nb then has to jump to old, see
+   * Function.splitEdge), otherwise it is removed there and nb gets it.
+   */
+  void retarget(Block old, Block nb, boolean keepPred) {
+    Instr t = getTerminator();
+    for (int k = 0; k < t.targets.length; k++) {
+      if (t.targets[k] == old) {
+        t.targets[k] = nb;
+        if (keepPred) {
+          old.replacePred(this, nb);
+        } else {
+          old.removePred(this);
+        }
+        nb.preds.add(this);
+        return;
+      }
+    }
+    assert (false);
+  }
+
+  public String getName() {
+    return "B" + id;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder(getName()).append(':');
+    if (!preds.isEmpty()) {
+      s.append("  ; preds");
+      for (Block p : preds) {
+        s.append(' ').append(p.getName());
+      }
+    }
+    s.append('\n');
+    for (Instr i : instrs) {
+      s.append("    ").append(i).append('\n');
+    }
+    return s.toString();
+  }
+
+}
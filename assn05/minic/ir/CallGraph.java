@@ -0,0 +1,315 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** CallGraph class: the calls between the functions of a module, with a
+ * summary of the effects of a call of each function, including the
+ * effects of the functions it calls:
+ * <ul>
+ *   <li>the globals it may modify (store to) and reference (load),
+ *   <li>whether it may store into and load from arrays (any array: an
+ *       array parameter or global may be the same array as another one),
+ *   <li>whether it may perform I/O, i.e. call a function of the runtime
+ *       class minic.lang.System (which does not access the globals),
+ *   <li>whether it may throw (an int division by a value that is not a
+ *       non-zero constant, an access of an array element),
+ *   <li>whether it may not terminate (it contains a loop or is
+ *       recursive).
+ * </ul>
+ * A function without any of these effects but the reading of globals and
+ * arrays has no side effects: a call of it whose value is not used can
+ * be removed. A function that does not read globals or arrays either is
+ * pure: its value depends on its arguments only.
+ *
+ * <p>The recursive functions are found as the strongly connected
+ * components of the graph (Tarjan's algorithm). The graph is a snapshot
+ * of the module: after calls have been added, e.g. by inlining, it has to
+ * be computed again; removing calls only makes it conservative.
+ */
+public final class CallGraph {
+
+  private final List<Function> functions;
+  private final HashMap<Function, LinkedHashSet<Function>> callees;
+  // The functions, callees first, and the number of their component:
+  private final ArrayList<Function> calleesFirst;
+  private final HashMap<Function, Integer> components;
+  private final HashSet<Function> recursive;
+  private final HashMap<Function, HashSet<Global>> mod;
+  private final HashMap<Function, HashSet<Global>> ref;
+  private final HashSet<Function> arrayStores;
+  private final HashSet<Function> arrayLoads;
+  private final HashSet<Function> io;
+  private final HashSet<Function> mayThrow;
+  private final HashSet<Function> mayLoop;
+
+  /** Constructor of the CallGraph class: compute the graph of m. */
+  public CallGraph(Module m) {
+    functions = m.getAllFunctions();
+    callees = new HashMap<Function, LinkedHashSet<Function>>();
+    calleesFirst = new ArrayList<Function>();
+    components = new HashMap<Function, Integer>();
+    recursive = new HashSet<Function>();
+    mod = new HashMap<Function, HashSet<Global>>();
+    ref = new HashMap<Function, HashSet<Global>>();
+    arrayStores = new HashSet<Function>();
+    arrayLoads = new HashSet<Function>();
+    io = new HashSet<Function>();
+    mayThrow = new HashSet<Function>();
+    mayLoop = new HashSet<Function>();
+    for (Function f : functions) {
+      summarize(f);
+    }
+    findComponents();
+    // Add the effects of the callees until nothing changes:
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Function f : calleesFirst) {
+        for (Function g : callees.get(f)) {
+          changed |= mod.get(f).addAll(mod.get(g));
+          changed |= ref.get(f).addAll(ref.get(g));
+          changed |= propagate(arrayStores, g, f);
+          changed |= propagate(arrayLoads, g, f);
+          changed |= propagate(io, g, f);
+          changed |= propagate(mayThrow, g, f);
+          changed |= propagate(mayLoop, g, f);
+        }
+      }
+    }
+  }
+
+  private static boolean propagate(HashSet<Function> s, Function g,
+                                   Function f) {
+    return s.contains(g) && s.add(f);
+  }
+
+  // The direct calls and effects of f:
+  private void summarize(Function f) {
+    LinkedHashSet<Function> fcallees = new LinkedHashSet<Function>();
+    HashSet<Global> fmod = new HashSet<Global>();
+    HashSet<Global> fref = new HashSet<Global>();
+    for (Block b : f.blocks) {
+      for (Instr i : b.instrs) {
+        if (i.op == Op.STOREG) {
+          fmod.add(i.global);
+        } else if (i.op == Op.LOADG) {
+          fref.add(i.global);
+        } else if (i.op == Op.CALL && i.target != null) {
+          fcallees.add(i.target);
+        } else if (i.op == Op.CALL) {
+          io.add(f);
+        } else if (i.op == Op.DIV && !i.isPure()) {
+          mayThrow.add(f);
+        }
+        if (i.op.isArrayStore()) {
+          arrayStores.add(f);
+        } else if (i.op == Op.ALOAD) {
+          arrayLoads.add(f);
+        }
+        if (i.op == Op.ALOAD || i.op == Op.ASTORE) {
+          mayThrow.add(f);
+        }
+      }
+    }
+    // A retreating edge in reverse postorder closes a loop:
+    List<Block> rpo = f.reversePostorder();
+    HashMap<Block, Integer> number = new HashMap<Block, Integer>();
+    for (Block b : rpo) {
+      number.put(b, number.size());
+      for (Block s : b.getSuccs()) {
+        if (number.containsKey(s)) {
+          mayLoop.add(f);
+        }
+      }
+    }
+    callees.put(f, fcallees);
+    mod.put(f, fmod);
+    ref.put(f, fref);
+  }
+
+  /* Method findComponents numbers the strongly connected components with
+   * Tarjan's algorithm, which finds them callees first, and marks the
+   * functions of components with a cycle as recursive.
+   */
+  private void findComponents() {
+    HashMap<Function, Integer> index = new HashMap<Function, Integer>();
+    HashMap<Function, Integer> low = new HashMap<Function, Integer>();
+    ArrayDeque<Function> stack = new ArrayDeque<Function>();
+    for (Function root : functions) {
+      if (index.containsKey(root)) {
+        continue;
+      }
+      // Stack of (function, iterator over its callees):
+      ArrayDeque<Object[]> dfs = new ArrayDeque<Object[]>();
+      index.put(root, index.size());
+      low.put(root, index.get(root));
+      stack.push(root);
+      dfs.push(new Object[] {root, callees.get(root).iterator()});
+      while (!dfs.isEmpty()) {
+        Object[] top = dfs.peek();
+        Function f = (Function) top[0];
+        @SuppressWarnings("unchecked")
+        Iterator<Function> it = (Iterator<Function>) top[1];
+        if (it.hasNext()) {
+          Function g = it.next();
+          if (!index.containsKey(g)) {
+            index.put(g, index.size());
+            low.put(g, index.get(g));
+            stack.push(g);
+            dfs.push(new Object[] {g, callees.get(g).iterator()});
+          } else if (stack.contains(g)) {
+            low.put(f, Math.min(low.get(f), index.get(g)));
+          }
+          continue;
+        }
+        dfs.pop();
+        if (!dfs.isEmpty()) {
+          Function caller = (Function) dfs.peek()[0];
+          low.put(caller, Math.min(low.get(caller), low.get(f)));
+        }
+        if (low.get(f).equals(index.get(f))) {
+          int n = components.isEmpty() ? 0
+              : components.get(calleesFirst.get(calleesFirst.size() - 1)) + 1;
+          Function g;
+          do {
+            g = stack.pop();
+            components.put(g, n);
+            calleesFirst.add(g);
+          } while (g != f);
+        }
+      }
+    }
+    for (Function f : functions) {
+      for (Function g : callees.get(f)) {
+        if (components.get(g).equals(components.get(f))) {
+          recursive.add(f);
+          mayLoop.add(f);
+        }
+      }
+    }
+  }
+
+  /** The functions, each one after the functions it calls, except for
+   * calls within a recursive component.
+   */
+  public List<Function> getCalleesFirst() {
+    return Collections.unmodifiableList(calleesFirst);
+  }
+
+  /** The functions that f calls directly. */
+  public Set<Function> getCallees(Function f) {
+    return Collections.unmodifiableSet(callees.get(f));
+  }
+
+  /** True if a call of f can lead to another call of f. */
+  public boolean isRecursive(Function f) {
+    return recursive.contains(f);
+  }
+
+  /** True if a call of f may store to g. */
+  public boolean mayModify(Function f, Global g) {
+    return mod.get(f).contains(g);
+  }
+
+  /** True if a call of f may load g. */
+  public boolean mayReference(Function f, Global g) {
+    return ref.get(f).contains(g);
+  }
+
+  /** True if a call of f may store into an array. */
+  public boolean mayStoreArrays(Function f) {
+    return arrayStores.contains(f);
+  }
+
+  /** True if call, a CALL instruction, may access g. */
+  public boolean mayAccess(Instr call, Global g) {
+    return call.target != null
+        && (mayModify(call.target, g) || mayReference(call.target, g));
+  }
+
+  /** True if a call of f may call a function of minic.lang.System. */
+  public boolean performsIo(Function f) {
+    return io.contains(f);
+  }
+
+  /** True if a call of f may do more than compute its value from its
+   * arguments, the globals and the arrays.
+   */
+  public boolean hasSideEffects(Function f) {
+    return !mod.get(f).isEmpty() || arrayStores.contains(f)
+        || io.contains(f) || mayThrow.contains(f) || mayLoop.contains(f);
+  }
+
+  /** True if the value of a call of f depends on its arguments only, and
+   * the call has no side effects.
+   */
+  public boolean isPure(Function f) {
+    return !hasSideEffects(f) && ref.get(f).isEmpty()
+        && !arrayLoads.contains(f);
+  }
+
+  /** True if call, a CALL instruction, can be removed if its value is not
+   * used.
+   */
+  public boolean isRemovable(Instr call) {
+    return call.target != null && !hasSideEffects(call.target);
+  }
+
+  /** True if call, a CALL instruction, can be evaluated anywhere, any
+   * number of times.
+   */
+  public boolean isPureCall(Instr call) {
+    return call.target != null && isPure(call.target);
+  }
+
+  private static String getNames(Set<Global> globals) {
+    ArrayList<String> names = new ArrayList<String>();
+    for (Global g : globals) {
+      names.add(g.name);
+    }
+    Collections.sort(names);
+    return names.isEmpty() ? "-" : String.join(" ", names);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("; call graph, callees first\n");
+    for (Function f : calleesFirst) {
+      s.append("function ").append(f.name).append(f.getDescriptor())
+          .append('\n');
+      s.append("  component ").append(components.get(f));
+      if (recursive.contains(f)) {
+        s.append(", recursive");
+      }
+      s.append('\n');
+      s.append("  calls");
+      if (callees.get(f).isEmpty()) {
+        s.append(" -");
+      }
+      for (Function g : callees.get(f)) {
+        s.append(' ').append(g.name);
+      }
+      s.append('\n');
+      s.append("  modifies ").append(getNames(mod.get(f))).append('\n');
+      s.append("  references ").append(getNames(ref.get(f))).append('\n');
+      StringBuilder e = new StringBuilder();
+      e.append(isPure(f) ? " pure" : !hasSideEffects(f) ? " read-only" : "");
+      e.append(arrayStores.contains(f) ? " array-stores" : "");
+      e.append(arrayLoads.contains(f) ? " array-loads" : "");
+      e.append(io.contains(f) ? " io" : "");
+      e.append(mayThrow.contains(f) ? " may-throw" : "");
+      e.append(mayLoop.contains(f) ? " may-loop" : "");
+      s.append("  effects").append(e.length() == 0 ? " -" : e).append('\n');
+    }
+    return s.toString();
+  }
+
+}
@@ -0,0 +1,131 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/** CfgSimplifier class: cleans up the control-flow graph of a function
+ * after branches have been folded, with the rules
+ * <ul>
+ *   <li>a branch with two equal targets becomes a jump (if the phis of
+ *       the target get the same values on both edges),
+ *   <li>a block that consists of a jump only is bypassed: its
+ *       predecessors go to its target directly,
+ *   <li>a block that is the only successor of its only predecessor is
+ *       merged into the predecessor,
+ * </ul>
+ * until none of them applies any more.
+ */
+public class CfgSimplifier {
+
+  private int nrOfRemovedBlocks;
+
+  /** Constructor of the CfgSimplifier class. */
+  public CfgSimplifier() {
+    nrOfRemovedBlocks = 0;
+  }
+
+  /** Number of blocks removed by bypassing or merging. */
+  public int getNrOfRemovedBlocks() {
+    return nrOfRemovedBlocks;
+  }
+
+  /** Method run: simplify the CFG of f. Returns true if f changed. */
+  public boolean run(Function f) {
+    boolean changed = false;
+    boolean again = true;
+    HashSet<Block> removed = new HashSet<Block>();
+    while (again) {
+      again = false;
+      for (Block b : new ArrayList<Block>(f.blocks)) {
+        if (removed.contains(b)) {
+          continue;
+        }
+        Instr t = b.getTerminator();
+        if (t.op == Op.BRANCH && t.targets[0] == t.targets[1]
+            && sameValuesOnEdges(b, t.targets[0])) {
+          b.replaceBranch(0);
+          again = true;
+        } else if (t.op == Op.JUMP && b != f.entry && b.instrs.size() == 1
+            && t.targets[0] != b && bypass(b)) {
+          removed.add(b);
+          again = true;
+        } else if (t.op == Op.JUMP && t.targets[0] != b
+            && t.targets[0] != f.entry && t.targets[0].preds.size() == 1) {
+          removed.add(t.targets[0]);
+          merge(b, t.targets[0]);
+          again = true;
+        }
+      }
+      changed |= again;
+    }
+    f.blocks.removeAll(removed);
+    nrOfRemovedBlocks += removed.size();
+    return changed;
+  }
+
+  // True if the phis of c get the same values on all edges from b:
+  private boolean sameValuesOnEdges(Block b, Block c) {
+    for (Instr phi : c.getPhis()) {
+      Value v = null;
+      for (int k = 0; k < c.preds.size(); k++) {
+        if (c.preds.get(k) != b) {
+          continue;
+        }
+        Value o = phi.getOperand(k);
+        if (v != null && v != o
+            && !(v instanceof Const && ((Const) v).sameAs(o))) {
+          return false;
+        }
+        v = o;
+      }
+    }
+    return true;
+  }
+
+  /* Method bypass lets the predecessors of b, which consists of a jump to
+   * c only, go to c directly. The phis of c get the values they got on
+   * the edge from b. A predecessor that is a predecessor of c already
+   * keeps its edge to b if c has phis. Returns true if b has no
+   * predecessors left, and has been taken out of the graph.
+   */
+  private boolean bypass(Block b) {
+    Block c = b.getTerminator().targets[0];
+    int k = c.preds.indexOf(b);
+    for (Block p : new ArrayList<Block>(b.preds)) {
+      if (c.preds.contains(p) && !c.getPhis().isEmpty()) {
+        continue;
+      }
+      p.retarget(b, c, false);
+      for (Instr phi : c.getPhis()) {
+        phi.addOperand(phi.getOperand(k));
+      }
+    }
+    if (!b.preds.isEmpty()) {
+      return false;
+    }
+    b.remove(b.getTerminator());
+    return true;
+  }
+
+  // Append c to b, which jumps to c, its only predecessor:
+  private void merge(Block b, Block c) {
+    for (Instr phi : new ArrayList<Instr>(c.getPhis())) {
+      phi.replaceAllUsesWith(phi.getOperand(0));
+      c.remove(phi);
+    }
+    Instr j = b.getTerminator();
+    b.instrs.remove(j);
+    j.block = null;
+    for (Instr i : c.instrs) {
+      i.block = b;
+      b.instrs.add(i);
+    }
+    Instr t = c.getTerminator();
+    for (Block s : t.targets) {
+      s.replacePred(c, b);
+    }
+    c.instrs.clear();
+    c.preds.clear();
+  }
+
+}
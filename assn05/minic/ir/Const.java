@@ -0,0 +1,94 @@
+package minic.ir;
+
+/** A constant of type INT, FLOAT, BOOL or STRING. Bool constants are kept
+ * as the ints 0 and 1. The only constant of an array type is null, the
+ * value of an array variable in unreachable code.
+ */
+public final class Const extends Value {
+
+  public final int intValue;
+  public final float floatValue;
+  public final String stringValue;
+
+  private Const(IrType type, int i, float f, String s) {
+    super(type);
+    this.intValue = i;
+    this.floatValue = f;
+    this.stringValue = s;
+  }
+
+  public static Const ofInt(int value) {
+    return new Const(IrType.INT, value, 0.0f, null);
+  }
+
+  public static Const ofFloat(float value) {
+    return new Const(IrType.FLOAT, 0, value, null);
+  }
+
+  public static Const ofBool(boolean value) {
+    return new Const(IrType.BOOL, value ? 1 : 0, 0.0f, null);
+  }
+
+  public static Const ofString(String value) {
+    return new Const(IrType.STRING, 0, 0.0f, value);
+  }
+
+  /** The zero value of a type: 0, 0.0, false, the empty string or null
+   * for arrays.
+   */
+  public static Const zero(IrType type) {
+    if (type.isArray()) {
+      return new Const(type, 0, 0.0f, null);
+    }
+    switch (type) {
+      case FLOAT:
+        return ofFloat(0.0f);
+      case BOOL:
+        return ofBool(false);
+      case STRING:
+        return ofString("");
+      default:
+        return ofInt(0);
+    }
+  }
+
+  public boolean boolValue() {
+    return intValue != 0;
+  }
+
+  /** True if c is a constant of the same type and value (bitwise for
+   * floats, so that 0.0 and -0.0 differ and NaN equals NaN).
+   */
+  public boolean sameAs(Value v) {
+    if (!(v instanceof Const) || v.type != type) {
+      return false;
+    }
+    Const c = (Const) v;
+    switch (type) {
+      case FLOAT:
+        return Float.floatToRawIntBits(c.floatValue) == Float.floatToRawIntBits(floatValue);
+      case STRING:
+        return c.stringValue.equals(stringValue);
+      default:
+        return c.intValue == intValue;
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (type.isArray()) {
+      return "null";
+    }
+    switch (type) {
+      case FLOAT:
+        return Float.toString(floatValue);
+      case BOOL:
+        return boolValue() ? "true" : "false";
+      case STRING:
+        return "\"" + stringValue + "\"";
+      default:
+        return Integer.toString(intValue);
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/** DeadCodeEliminator class: removes the instructions whose values are not
+ * needed.
+ *
+ * <p>In the SSA form, an assignment to a local variable is the definition
+ * of a new value, and a local variable is just the set of its values. A
+ * store to a local that is never read again, and a local that is never
+ * used at all, are therefore values without (live) users. The pass marks
+ * the instructions that must stay, namely
+ * <ul>
+ *   <li>calls, which may have side effects, also if their value is unused,
+ *       unless the call graph tells that the called function has none,
+ *   <li>stores to globals, which are static fields of the generated class
+ *       and can be observed by other functions and by the runtime,
+ *   <li>stores into arrays, which may be shared with other functions,
+ *   <li>integer divisions and loads of array elements, which may throw,
+ *   <li>the parameters and the terminators,
+ * </ul>
+ * and then the operands of live instructions. Everything else, including
+ * phis that only feed each other around a loop, is removed.
+ */
+public class DeadCodeEliminator {
+
+  private int nrOfRemovedInstrs;
+
+  /** Constructor of the DeadCodeEliminator class. */
+  public DeadCodeEliminator() {
+    nrOfRemovedInstrs = 0;
+  }
+
+  /** Number of instructions removed. */
+  public int getNrOfRemovedInstrs() {
+    return nrOfRemovedInstrs;
+  }
+
+  // True for instructions that can be removed if their value is unused:
+  private static boolean isRemovable(Instr i, CallGraph cg) {
+    return i.op == Op.PHI || i.op == Op.LOADG || i.op == Op.NEWARRAY
+        || i.isPure()
+        || (i.op == Op.CALL && cg.isRemovable(i));
+  }
+
+  /** Method run: remove the dead instructions of f, with the call graph
+   * cg. Returns true if f changed.
+   */
+  public boolean run(Function f, CallGraph cg) {
+    HashSet<Instr> live = new HashSet<Instr>();
+    ArrayDeque<Instr> work = new ArrayDeque<Instr>();
+    for (Block b : f.blocks) {
+      for (Instr i : b.instrs) {
+        if (!isRemovable(i, cg) && live.add(i)) {
+          work.push(i);
+        }
+      }
+    }
+    while (!work.isEmpty()) {
+      Instr i = work.pop();
+      for (int k = 0; k < i.getNrOfOperands(); k++) {
+        Value v = i.getOperand(k);
+        if (v instanceof Instr && live.add((Instr) v)) {
+          work.push((Instr) v);
+        }
+      }
+    }
+    // Dead instructions may use each other, so cut all their uses first:
+    ArrayList<Instr> dead = new ArrayList<Instr>();
+    for (Block b : f.blocks) {
+      for (Instr i : b.instrs) {
+        if (!live.contains(i)) {
+          i.dropOperands();
+          dead.add(i);
+        }
+      }
+    }
+    for (Instr i : dead) {
+      i.block.remove(i);
+    }
+    nrOfRemovedInstrs += dead.size();
+    return !dead.isEmpty();
+  }
+
+}
@@ -0,0 +1,87 @@
+package minic.ir;
+
+import java.util.HashMap;
+import java.util.List;
+
+/** Dominators class: the dominator tree of a function, computed with the
+ * iterative algorithm of Cooper, Harvey and Kennedy, "A Simple, Fast
+ * Dominance Algorithm". A block d dominates b if every path from the
+ * entry to b goes through d.
+ *
+ * <p>The tree is a snapshot: it has to be computed again after the CFG
+ * of the function changes.
+ */
+public final class Dominators {
+
+  private final List<Block> rpo;
+  private final HashMap<Block, Integer> number;
+  private final HashMap<Block, Block> idom;
+
+  /** Constructor of the Dominators class: compute the dominators of f. */
+  public Dominators(Function f) {
+    rpo = f.reversePostorder();
+    number = new HashMap<Block, Integer>();
+    idom = new HashMap<Block, Block>();
+    for (int k = 0; k < rpo.size(); k++) {
+      number.put(rpo.get(k), k);
+    }
+    Block entry = f.getEntry();
+    idom.put(entry, entry);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block b : rpo) {
+        if (b == entry) {
+          continue;
+        }
+        Block d = null;
+        for (Block p : b.preds) {
+          if (idom.containsKey(p)) {
+            d = d == null ? p : intersect(p, d);
+          }
+        }
+        if (idom.get(b) != d) {
+          idom.put(b, d);
+          changed = true;
+        }
+      }
+    }
+  }
+
+  // The nearest common dominator of a and b:
+  private Block intersect(Block a, Block b) {
+    while (a != b) {
+      while (number.get(a) > number.get(b)) {
+        a = idom.get(a);
+      }
+      while (number.get(b) > number.get(a)) {
+        b = idom.get(b);
+      }
+    }
+    return a;
+  }
+
+  /** The blocks reachable from the entry, in reverse postorder. */
+  public List<Block> getReversePostorder() {
+    return rpo;
+  }
+
+  /** The immediate dominator of b, or null for the entry. */
+  public Block getIdom(Block b) {
+    Block d = idom.get(b);
+    return d == b ? null : d;
+  }
+
+  /** True if a dominates b (every block dominates itself). */
+  public boolean dominates(Block a, Block b) {
+    if (!number.containsKey(a) || !number.containsKey(b)) {
+      return false;
+    }
+    // The idom of a block comes before it in reverse postorder:
+    while (number.get(b) > number.get(a)) {
+      b = idom.get(b);
+    }
+    return a == b;
+  }
+
+}
@@ -0,0 +1,279 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** A function of the IR: a control-flow graph of basic blocks in SSA
+ * form. The entry block has no predecessors and starts with one PARAM
+ * instruction per formal parameter.
+ *
+ * <p>MiniC functions become instance methods of the generated class,
+ * except main, which becomes the static main(String[]) method, and the
+ * class initializer, which initializes the global variables.
+ */
+public final class Function {
+
+  public final String name;
+  public final IrType retType;
+  final ArrayList<IrType> paramTypes;
+  public final boolean isMain;
+  public final boolean isClassInitializer;
+  final ArrayList<Block> blocks;
+  Block entry;
+  int nextBlockId;
+  int nextInstrId;
+
+  Function(String name, IrType retType, List<IrType> paramTypes,
+           boolean isMain, boolean isClassInitializer) {
+    this.name = name;
+    this.retType = retType;
+    this.paramTypes = new ArrayList<IrType>(paramTypes);
+    this.isMain = isMain;
+    this.isClassInitializer = isClassInitializer;
+    this.blocks = new ArrayList<Block>();
+    this.nextBlockId = 0;
+    this.nextInstrId = 0;
+  }
+
+  public List<IrType> getParamTypes() {
+    return Collections.unmodifiableList(paramTypes);
+  }
+
+  public Block getEntry() {
+    return entry;
+  }
+
+  /** The blocks of the function, entry first. */
+  public List<Block> getBlocks() {
+    return Collections.unmodifiableList(blocks);
+  }
+
+  /** True for the methods that are static in the generated class. */
+  public boolean isStatic() {
+    return isMain || isClassInitializer;
+  }
+
+  /** The JVM method descriptor. */
+  public String getDescriptor() {
+    if (isMain) {
+      return "([Ljava/lang/String;)V";
+    }
+    StringBuilder s = new StringBuilder("(");
+    for (IrType t : paramTypes) {
+      s.append(t.descriptor);
+    }
+    return s.append(')').append(retType.descriptor).toString();
+  }
+
+  /** Method newBlock: create an empty block at the end of the function. */
+  public Block newBlock() {
+    Block b = new Block(this, nextBlockId++);
+    if (entry == null) {
+      entry = b;
+    }
+    blocks.add(b);
+    return b;
+  }
+
+  /** Method splitEdge: put a new, empty block on the edge from p to b.
+   * The new block takes the place of p in the preds of b.
+   */
+  public Block splitEdge(Block p, Block b) {
+    Block nb = newBlock();
+    p.retarget(b, nb, true);
+    Instr j = new Instr(Op.JUMP, IrType.VOID);
+    j.targets[0] = b;
+    nb.appendNoEdges(j);
+    return nb;
+  }
+
+  /** Method splitBlock: move the instructions of b after i (all of them
+   * if i is null), including the terminator, to a new block, which takes
+   * the place of b in the preds of its successors. b is left without a
+   * terminator.
+   */
+  public Block splitBlock(Block b, Instr i) {
+    Block nb = newBlock();
+    int pos = i == null ? 0 : b.instrs.indexOf(i) + 1;
+    List<Instr> rest = b.instrs.subList(pos, b.instrs.size());
+    for (Instr j : rest) {
+      j.block = nb;
+      nb.instrs.add(j);
+    }
+    rest.clear();
+    for (Block s : nb.getSuccs()) {
+      s.replacePred(b, nb);
+    }
+    return nb;
+  }
+
+  /** Method insertPreheader: make all edges into the loop header h from
+   * blocks outside the loop go through one block, and return it. That is
+   * the single outside predecessor itself if it only jumps to h, or else a
+   * new block with phis for the values on the outside edges.
+   */
+  public Block insertPreheader(Block h, Set<Block> loop) {
+    ArrayList<Integer> outside = new ArrayList<Integer>();
+    for (int k = 0; k < h.preds.size(); k++) {
+      if (!loop.contains(h.preds.get(k))) {
+        outside.add(k);
+      }
+    }
+    if (outside.size() == 1) {
+      Block p = h.preds.get(outside.get(0));
+      if (p.getTerminator().op == Op.JUMP) {
+        return p;
+      }
+    }
+    Block ph = newBlock();
+    blocks.remove(ph);
+    blocks.add(blocks.indexOf(h), ph);
+    // The values of the phis of h on the outside edges, now in ph:
+    ArrayList<Value> values = new ArrayList<Value>();
+    for (Instr phi : h.getPhis()) {
+      if (outside.size() == 1) {
+        values.add(phi.getOperand(outside.get(0)));
+        continue;
+      }
+      Instr nphi = ph.addPhi(new Instr(Op.PHI, phi.type));
+      for (int k : outside) {
+        nphi.addOperand(phi.getOperand(k));
+      }
+      values.add(nphi);
+    }
+    ArrayList<Block> preds = new ArrayList<Block>();
+    for (int k : outside) {
+      preds.add(h.preds.get(k));
+    }
+    for (Block p : preds) {
+      p.retarget(h, ph, false);
+    }
+    Instr j = new Instr(Op.JUMP, IrType.VOID);
+    j.targets[0] = h;
+    ph.append(j);
+    List<Instr> phis = h.getPhis();
+    for (int k = 0; k < phis.size(); k++) {
+      phis.get(k).addOperand(values.get(k));
+    }
+    return ph;
+  }
+
+  /** Method reversePostorder: the blocks reachable from the entry, in
+   * reverse postorder of a depth-first search (successors in order).
+   */
+  public List<Block> reversePostorder() {
+    ArrayList<Block> post = new ArrayList<Block>();
+    HashSet<Block> seen = new HashSet<Block>();
+    // Stack of (block, index of next successor):
+    ArrayDeque<Object[]> stack = new ArrayDeque<Object[]>();
+    seen.add(entry);
+    stack.push(new Object[] {entry, entry.getSuccs(), 0});
+    while (!stack.isEmpty()) {
+      Object[] top = stack.peek();
+      @SuppressWarnings("unchecked")
+      List<Block> succs = (List<Block>) top[1];
+      int k = (Integer) top[2];
+      if (k < succs.size()) {
+        top[2] = k + 1;
+        Block s = succs.get(k);
+        if (seen.add(s)) {
+          stack.push(new Object[] {s, s.getSuccs(), 0});
+        }
+      } else {
+        stack.pop();
+        post.add((Block) top[0]);
+      }
+    }
+    Collections.reverse(post);
+    return post;
+  }
+
+  /** Method removeUnreachableBlocks: delete the blocks that cannot be
+   * reached from the entry. Returns true if there were any.
+   */
+  public boolean removeUnreachableBlocks() {
+    HashSet<Block> live = new HashSet<Block>(reversePostorder());
+    if (live.size() == blocks.size()) {
+      return false;
+    }
+    ArrayList<Block> dead = new ArrayList<Block>();
+    for (Block b : blocks) {
+      if (!live.contains(b)) {
+        dead.add(b);
+      }
+    }
+    for (Block b : dead) {
+      for (Block s : b.getSuccs()) {
+        if (live.contains(s)) {
+          s.removePred(b);
+        }
+      }
+    }
+    // Values of dead blocks are used in dead blocks only:
+    for (Block b : dead) {
+      for (Instr i : b.instrs) {
+        i.dropOperands();
+        i.block = null;
+      }
+      b.instrs.clear();
+      b.preds.clear();
+    }
+    blocks.removeAll(dead);
+    return true;
+  }
+
+  /** Method removeTrivialPhis: replace each phi whose operands are all
+   * the same value v (or the phi itself) by v, until there are no more.
+   */
+  public void removeTrivialPhis() {
+    ArrayDeque<Instr> work = new ArrayDeque<Instr>();
+    for (Block b : blocks) {
+      work.addAll(b.getPhis());
+    }
+    while (!work.isEmpty()) {
+      Instr phi = work.pop();
+      if (phi.block == null) {
+        continue; // removed already
+      }
+      Value same = null;
+      boolean trivial = true;
+      for (int k = 0; k < phi.getNrOfOperands() && trivial; k++) {
+        Value v = phi.getOperand(k);
+        if (v == phi || v == same
+            || (same instanceof Const && ((Const) same).sameAs(v))) {
+          continue;
+        }
+        if (same != null) {
+          trivial = false;
+        }
+        same = v;
+      }
+      if (!trivial || same == null) {
+        continue;
+      }
+      ArrayList<Instr> users = new ArrayList<Instr>(phi.users);
+      phi.replaceAllUsesWith(same);
+      phi.block.remove(phi);
+      for (Instr u : users) {
+        if (u != phi && u.op == Op.PHI) {
+          work.push(u);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("function ").append(name)
+        .append(getDescriptor()).append(" {\n");
+    for (Block b : blocks) {
+      s.append(b);
+    }
+    return s.append("}\n").toString();
+  }
+
+}
@@ -0,0 +1,19 @@
+package minic.ir;
+
+/** A global MiniC variable, i.e., a static field of the generated class. */
+public final class Global {
+
+  public final String name;
+  public final IrType type;
+
+  Global(String name, IrType type) {
+    this.name = name;
+    this.type = type;
+  }
+
+  @Override
+  public String toString() {
+    return "global @" + name + " " + type.name().toLowerCase();
+  }
+
+}
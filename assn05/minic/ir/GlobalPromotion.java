@@ -0,0 +1,255 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/** GlobalPromotion class: keeps the values of global variables in SSA
+ * values (local variable slots) instead of accessing the static field
+ * each time.
+ *
+ * <p>A global g that a function accesses more than once is treated like
+ * a local variable of the function: a store to g defines a new value of
+ * it, and a load of g is replaced by the current value, with phis where
+ * control flow joins (as in IrBuilder). The field itself is only loaded
+ * where the value is not known: at the start of the function, and after
+ * each call of a function that may store to g. The current value is
+ * written back to the field before each call of a function that may
+ * access g, and before each return, if the function may have stored to
+ * g since the field was last written or loaded. Which calls may access g
+ * is taken from the call graph (CallGraph); the runtime functions never
+ * do.
+ *
+ * <p>Loads of g at the start of the function or after calls that are not
+ * needed are left to the dead code elimination.
+ */
+public class GlobalPromotion {
+
+  private int nrOfPromoted;
+
+  // The state of the promotion of one global in one function:
+  private Function fn;
+  private Global global;
+  private HashMap<Block, Value> startDefs;
+  private HashMap<Block, Value> endDefs;
+  private ArrayDeque<Instr> pendingPhis;
+  private Instr entryLoad;
+
+  /** Constructor of the GlobalPromotion class. */
+  public GlobalPromotion() {
+    nrOfPromoted = 0;
+  }
+
+  /** Number of globals promoted, counted once per function. */
+  public int getNrOfPromoted() {
+    return nrOfPromoted;
+  }
+
+  /** Method run: promote the globals that f accesses more than once,
+   * with the call graph cg. Returns true if f changed.
+   */
+  public boolean run(Function f, CallGraph cg) {
+    LinkedHashMap<Global, Integer> accesses =
+        new LinkedHashMap<Global, Integer>();
+    for (Block b : f.blocks) {
+      for (Instr i : b.instrs) {
+        if (i.op == Op.LOADG || i.op == Op.STOREG) {
+          Integer n = accesses.get(i.global);
+          accesses.put(i.global, n == null ? 1 : n + 1);
+        }
+      }
+    }
+    boolean changed = false;
+    for (Global g : accesses.keySet()) {
+      if (accesses.get(g) > 1) {
+        promote(f, g, cg);
+        nrOfPromoted++;
+        changed = true;
+      }
+    }
+    if (changed) {
+      f.removeTrivialPhis();
+    }
+    return changed;
+  }
+
+  private boolean isAccess(Instr i, Op op) {
+    return i.op == op && i.global == global;
+  }
+
+  private void promote(Function f, Global g, CallGraph cg) {
+    fn = f;
+    global = g;
+    startDefs = new HashMap<Block, Value>();
+    endDefs = new HashMap<Block, Value>();
+    pendingPhis = new ArrayDeque<Instr>();
+    entryLoad = null;
+    // The value at the end of the blocks that define g, with a load of
+    // the field after each call that may store to it:
+    for (Block b : f.blocks) {
+      for (Instr i : b.getInstrs().toArray(new Instr[0])) {
+        if (isAccess(i, Op.STOREG)) {
+          endDefs.put(b, i.getOperand(0));
+        } else if (i.op == Op.CALL && i.target != null
+            && cg.mayModify(i.target, g)) {
+          Instr ld = new Instr(Op.LOADG, g.type);
+          ld.global = g;
+          b.insertBefore(ld, b.instrs.get(b.instrs.indexOf(i) + 1));
+          endDefs.put(b, ld);
+        }
+      }
+    }
+    HashMap<Block, Boolean> dirtyIn = getDirtyIn(f, cg);
+    HashMap<Instr, Value> loads = new HashMap<Instr, Value>();
+    ArrayList<Instr> stores = new ArrayList<Instr>();
+    for (Block b : f.blocks) {
+      Value cur = null;
+      boolean dirty = dirtyIn.get(b);
+      for (Instr i : b.getInstrs().toArray(new Instr[0])) {
+        if (isAccess(i, Op.LOADG) && !loads.containsKey(i)
+            && i != entryLoad) {
+          if (cur == null) {
+            cur = read(b);
+          }
+          loads.put(i, cur);
+        } else if (isAccess(i, Op.STOREG)) {
+          cur = i.getOperand(0);
+          stores.add(i);
+          dirty = true;
+        } else if ((i.op == Op.CALL && cg.mayAccess(i, g))
+            || i.op == Op.RET) {
+          if (dirty) {
+            Instr st = new Instr(Op.STOREG, IrType.VOID,
+                cur == null ? read(b) : cur);
+            st.global = g;
+            b.insertBefore(st, i);
+            dirty = false;
+          }
+          if (i.op == Op.CALL && cg.mayModify(i.target, g)) {
+            // The load of the field inserted after the call:
+            Instr ld = b.instrs.get(b.instrs.indexOf(i) + 1);
+            loads.put(ld, ld);
+            cur = ld;
+          }
+        }
+      }
+    }
+    for (Instr i : stores) {
+      i.block.remove(i);
+    }
+    for (Instr ld : loads.keySet()) {
+      Value v = ld;
+      while (loads.containsKey(v) && loads.get(v) != v) {
+        v = loads.get(v);
+      }
+      if (v != ld) {
+        ld.replaceAllUsesWith(v);
+        ld.block.remove(ld);
+      }
+    }
+  }
+
+  /* Method getDirtyIn returns, for each block, whether g may have been
+   * stored to at its start without being written back to the field yet.
+   */
+  private HashMap<Block, Boolean> getDirtyIn(Function f, CallGraph cg) {
+    HashMap<Block, Boolean> in = new HashMap<Block, Boolean>();
+    HashMap<Block, Boolean> out = new HashMap<Block, Boolean>();
+    for (Block b : f.blocks) {
+      in.put(b, false);
+      out.put(b, false);
+    }
+    List<Block> rpo = f.reversePostorder();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block b : rpo) {
+        boolean dirty = false;
+        for (Block p : b.preds) {
+          dirty |= out.get(p);
+        }
+        in.put(b, dirty);
+        for (Instr i : b.instrs) {
+          if (isAccess(i, Op.STOREG)) {
+            dirty = true;
+          } else if (i.op == Op.CALL && cg.mayAccess(i, global)) {
+            dirty = false;
+          }
+        }
+        if (out.get(b) != dirty) {
+          out.put(b, dirty);
+          changed = true;
+        }
+      }
+    }
+    return in;
+  }
+
+  // The value of the global at the start of b:
+  private Value read(Block b) {
+    Value v = lookup(b, false);
+    while (!pendingPhis.isEmpty()) {
+      Instr phi = pendingPhis.pop();
+      for (Block p : phi.block.preds) {
+        phi.addOperand(lookup(p, true));
+      }
+    }
+    return v;
+  }
+
+  /* Method lookup returns the value of the global at the end (atEnd) or
+   * the start of b. It follows chains of blocks with a single predecessor
+   * and creates a phi, whose operands are added by read(), where the
+   * chain ends at a join point, or the load of the field where it ends at
+   * the entry.
+   */
+  private Value lookup(Block b, boolean atEnd) {
+    ArrayList<Block> chain = new ArrayList<Block>();
+    Value v;
+    while (true) {
+      v = atEnd ? endDefs.get(b) : null;
+      if (v == null) {
+        v = startDefs.get(b);
+      }
+      if (v != null) {
+        break;
+      }
+      if (b.preds.size() == 1) {
+        chain.add(b);
+        b = b.preds.get(0);
+        atEnd = true;
+        continue;
+      } else if (b.preds.isEmpty()) {
+        v = getEntryLoad();
+      } else {
+        Instr phi = b.addPhi(new Instr(Op.PHI, global.type));
+        pendingPhis.push(phi);
+        v = phi;
+      }
+      startDefs.put(b, v);
+      break;
+    }
+    for (Block c : chain) {
+      startDefs.put(c, v);
+    }
+    return v;
+  }
+
+  private Instr getEntryLoad() {
+    if (entryLoad == null) {
+      Block entry = fn.entry;
+      int pos = 0;
+      while (entry.instrs.get(pos).op == Op.PARAM) {
+        pos++;
+      }
+      entryLoad = new Instr(Op.LOADG, global.type);
+      entryLoad.global = global;
+      entry.insertBefore(entryLoad, entry.instrs.get(pos));
+    }
+    return entryLoad;
+  }
+
+}
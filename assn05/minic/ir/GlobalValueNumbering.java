@@ -0,0 +1,219 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** GlobalValueNumbering class: common subexpression elimination over the
+ * dominator tree.
+ *
+ * <p>Two pure instructions with the same operation and the same operands
+ * compute the same value. The blocks are visited in a preorder walk of
+ * the dominator tree, with a table of the expressions computed in the
+ * blocks that dominate the current one. An expression that is in the
+ * table already is replaced by the earlier instruction, which is then
+ * kept in its slot by the backend instead of being evaluated again. The
+ * operands of commutative operations are ordered, and a comparison
+ * a > b is entered as b < a. Phis of a block with the same operands are
+ * merged, too, and so are calls of a pure function (see CallGraph) with
+ * the same arguments.
+ *
+ * <p>On the way, the pass simplifies x + 0, x - 0 and x * 1 (for ints,
+ * and x * 1.0 for floats) to x. Within a block, a load of a global after
+ * a load of, or a store to, the same global gets the value loaded or
+ * stored then, unless a call in between may store to it. The same holds
+ * for the loads of an array element with the same array and index
+ * values, as in the a[i] of "a[i] = a[i] + 1", unless there is a store
+ * into any array (which may be the same one) or a call of a function
+ * that may store into one in between.
+ */
+public class GlobalValueNumbering {
+
+  private int nrOfReplaced;
+
+  /** Constructor of the GlobalValueNumbering class. */
+  public GlobalValueNumbering() {
+    nrOfReplaced = 0;
+  }
+
+  /** Number of instructions replaced by an equal value. */
+  public int getNrOfReplaced() {
+    return nrOfReplaced;
+  }
+
+  /** Method run: number the values of f, with the call graph cg. Returns
+   * true if f changed.
+   */
+  public boolean run(Function f, CallGraph cg) {
+    Dominators dom = new Dominators(f);
+    HashMap<Block, ArrayList<Block>> children =
+        new HashMap<Block, ArrayList<Block>>();
+    for (Block b : dom.getReversePostorder()) {
+      children.put(b, new ArrayList<Block>());
+      Block d = dom.getIdom(b);
+      if (d != null) {
+        children.get(d).add(b);
+      }
+    }
+    int before = nrOfReplaced;
+    HashMap<String, Instr> table = new HashMap<String, Instr>();
+    // Preorder walk; a block on the stack a second time leaves its scope:
+    ArrayDeque<Object[]> work = new ArrayDeque<Object[]>();
+    work.push(new Object[] {f.entry, null});
+    while (!work.isEmpty()) {
+      Object[] top = work.pop();
+      @SuppressWarnings("unchecked")
+      List<String> added = (List<String>) top[1];
+      if (added != null) {
+        for (String key : added) {
+          table.remove(key);
+        }
+        continue;
+      }
+      Block b = (Block) top[0];
+      added = numberBlock(b, table, cg);
+      forwardLoads(b, cg);
+      work.push(new Object[] {b, added});
+      List<Block> kids = children.get(b);
+      for (int k = kids.size() - 1; k >= 0; k--) {
+        work.push(new Object[] {kids.get(k), null});
+      }
+    }
+    return nrOfReplaced > before;
+  }
+
+  // Number the instructions of b, and return the keys added to the table:
+  private List<String> numberBlock(Block b, HashMap<String, Instr> table,
+                                   CallGraph cg) {
+    ArrayList<String> added = new ArrayList<String>();
+    for (Instr i : b.getInstrs().toArray(new Instr[0])) {
+      if (i.op != Op.PHI && !i.isPure() && !cg.isPureCall(i)) {
+        continue;
+      }
+      Value same = simplify(i);
+      if (same == null) {
+        String key = getKey(i);
+        same = table.get(key);
+        if (same == null) {
+          table.put(key, i);
+          added.add(key);
+          continue;
+        }
+      }
+      i.replaceAllUsesWith(same);
+      b.remove(i);
+      nrOfReplaced++;
+    }
+    return added;
+  }
+
+  // The value that i computes if it is an identity, or null:
+  private static Value simplify(Instr i) {
+    if (i.op != Op.ADD && i.op != Op.SUB && i.op != Op.MUL) {
+      return null;
+    }
+    Value a = i.getOperand(0);
+    Value b = i.getOperand(1);
+    Const one = i.type == IrType.FLOAT ? Const.ofFloat(1.0f) : Const.ofInt(1);
+    if (i.op == Op.MUL) {
+      return one.sameAs(b) ? a : one.sameAs(a) ? b : null;
+    } else if (i.type != IrType.INT) {
+      return null; // -0.0 + 0.0 is 0.0
+    } else if (Const.ofInt(0).sameAs(b)) {
+      return a;
+    } else if (i.op == Op.ADD && Const.ofInt(0).sameAs(a)) {
+      return b;
+    }
+    return null;
+  }
+
+  private static String getKey(Instr i) {
+    Op op = i.op;
+    ArrayList<String> operands = new ArrayList<String>();
+    for (int k = 0; k < i.getNrOfOperands(); k++) {
+      operands.add(getKey(i.getOperand(k)));
+    }
+    if (op == Op.GT || op == Op.GE) {
+      op = op.swap();
+      operands.add(operands.remove(0));
+    } else if ((op == Op.ADD || op == Op.MUL || op == Op.EQ || op == Op.NE)
+        && operands.get(0).compareTo(operands.get(1)) > 0) {
+      operands.add(operands.remove(0));
+    }
+    StringBuilder s = new StringBuilder(op.name()).append(' ').append(i.type);
+    if (op == Op.PHI) {
+      s.append(" B").append(i.block.id);
+    } else if (op == Op.CALL) {
+      s.append(' ').append(i.target.name);
+    }
+    for (String o : operands) {
+      s.append(' ').append(o);
+    }
+    return s.toString();
+  }
+
+  private static String getElementKey(Instr i) {
+    return getKey(i.getOperand(0)) + " " + getKey(i.getOperand(1));
+  }
+
+  private static String getKey(Value v) {
+    if (v instanceof Instr) {
+      return ((Instr) v).getName();
+    }
+    Const c = (Const) v;
+    if (c.type == IrType.FLOAT) {
+      return "f" + Float.floatToIntBits(c.floatValue);
+    } else if (c.type == IrType.STRING) {
+      return "s" + c.stringValue;
+    }
+    return c.type.toString() + c.intValue;
+  }
+
+  // Replace the loads of globals and array elements in b whose value is
+  // known:
+  private void forwardLoads(Block b, CallGraph cg) {
+    HashMap<Global, Value> known = new HashMap<Global, Value>();
+    // The elements, by the keys of the array and the index:
+    HashMap<String, Value> elements = new HashMap<String, Value>();
+    for (Instr i : b.getInstrs().toArray(new Instr[0])) {
+      if (i.op == Op.ALOAD) {
+        String key = getElementKey(i);
+        Value v = elements.get(key);
+        if (v == null) {
+          elements.put(key, i);
+        } else {
+          i.replaceAllUsesWith(v);
+          b.remove(i);
+          nrOfReplaced++;
+        }
+      } else if (i.op.isArrayStore()) {
+        elements.clear();
+        if (i.op == Op.ASTORE) {
+          elements.put(getElementKey(i), i.getOperand(2));
+        }
+      } else if (i.op == Op.LOADG) {
+        Value v = known.get(i.global);
+        if (v == null) {
+          known.put(i.global, i);
+        } else {
+          i.replaceAllUsesWith(v);
+          b.remove(i);
+          nrOfReplaced++;
+        }
+      } else if (i.op == Op.STOREG) {
+        known.put(i.global, i.getOperand(0));
+      } else if (i.op == Op.CALL && i.target != null) {
+        if (cg.mayStoreArrays(i.target)) {
+          elements.clear();
+        }
+        for (Global g : new ArrayList<Global>(known.keySet())) {
+          if (cg.mayModify(i.target, g)) {
+            known.remove(g);
+          }
+        }
+      }
+    }
+  }
+
+}
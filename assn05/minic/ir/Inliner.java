@@ -0,0 +1,161 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** Inliner class: replaces calls of small MiniC functions by a copy of
+ * the body of the called function.
+ *
+ * <p>A call is inlined if the called function has at most INLINE_LIMIT
+ * instructions and is not recursive (it cannot reach itself through
+ * calls, see CallGraph), and if the calling function is not grown beyond
+ * CALLER_LIMIT instructions. The functions are handled callees first, so
+ * that a function is inlined with the calls in its own body inlined
+ * already.
+ *
+ * <p>The copy works on the SSA form, where the usual problems of inlining
+ * at the source level disappear: the arguments of the call take the
+ * place of the PARAM instructions of the callee, its local variables are
+ * new values of the caller, and each return becomes a jump to the code
+ * after the call, with a phi for the returned value if there are several
+ * returns.
+ */
+public class Inliner {
+
+  /** Maximum number of instructions of a function that is inlined. */
+  public static final int INLINE_LIMIT = 24;
+  /** Maximum number of instructions of a function that calls are inlined
+   * into, to keep the generated methods small enough for the JIT.
+   */
+  public static final int CALLER_LIMIT = 2000;
+
+  private int nrOfInlined;
+
+  /** Constructor of the Inliner class. */
+  public Inliner() {
+    nrOfInlined = 0;
+  }
+
+  /** Number of calls inlined. */
+  public int getNrOfInlined() {
+    return nrOfInlined;
+  }
+
+  /** Method run: inline the calls of small functions in m. Returns true if
+   * m changed.
+   */
+  public boolean run(Module m) {
+    // Inlining a non-recursive function adds no cycles to the graph:
+    CallGraph cg = new CallGraph(m);
+    boolean changed = false;
+    for (Function f : cg.getCalleesFirst()) {
+      for (Block b : new ArrayList<Block>(f.blocks)) {
+        // The calls of b, and then of the rest of b split off after one:
+        for (int k = 0; k < b.instrs.size(); k++) {
+          Instr i = b.instrs.get(k);
+          if (i.op == Op.CALL && i.target != null
+              && !cg.isRecursive(i.target)
+              && size(i.target) <= INLINE_LIMIT
+              && size(f) + size(i.target) <= CALLER_LIMIT) {
+            b = inline(f, i);
+            k = -1;
+            changed = true;
+          }
+        }
+      }
+    }
+    return changed;
+  }
+
+  private static int size(Function f) {
+    int n = 0;
+    for (Block b : f.blocks) {
+      n += b.instrs.size();
+    }
+    return n;
+  }
+
+  /* Method inline replaces call, in function f, by a copy of the body of
+   * the called function, and returns the block with the code after the
+   * call.
+   */
+  private Block inline(Function f, Instr call) {
+    Function g = call.target;
+    Block b = call.block;
+    Block cont = f.splitBlock(b, call);
+    HashMap<Block, Block> blocks = new HashMap<Block, Block>();
+    HashMap<Value, Value> values = new HashMap<Value, Value>();
+    for (Block gb : g.blocks) {
+      blocks.put(gb, f.newBlock());
+    }
+    // First the instructions, then their operands, which may be defined
+    // later (phis):
+    ArrayList<Instr[]> copies = new ArrayList<Instr[]>();
+    ArrayList<Value> returned = new ArrayList<Value>();
+    for (Block gb : g.blocks) {
+      Block nb = blocks.get(gb);
+      for (Block p : gb.preds) {
+        nb.preds.add(blocks.get(p));
+      }
+      for (Instr i : gb.instrs) {
+        if (i.op == Op.PARAM) {
+          values.put(i, call.getOperand(i.index));
+          continue;
+        }
+        Instr c;
+        if (i.op == Op.RET) {
+          c = new Instr(Op.JUMP, IrType.VOID);
+          c.targets[0] = cont;
+          cont.preds.add(nb);
+          if (i.getNrOfOperands() > 0) {
+            returned.add(i.getOperand(0));
+          }
+        } else {
+          c = new Instr(i.op, i.type);
+          for (int k = 0; k < i.targets.length; k++) {
+            c.targets[k] = blocks.get(i.targets[k]);
+          }
+          c.global = i.global;
+          c.target = i.target;
+          c.callee = i.callee;
+          c.descriptor = i.descriptor;
+          c.index = i.index;
+          c.bits = i.bits;
+          copies.add(new Instr[] {i, c});
+        }
+        nb.appendNoEdges(c);
+        values.put(i, c);
+      }
+    }
+    for (Instr[] ic : copies) {
+      for (int k = 0; k < ic[0].getNrOfOperands(); k++) {
+        ic[1].addOperand(copyOf(values, ic[0].getOperand(k)));
+      }
+    }
+    Instr j = new Instr(Op.JUMP, IrType.VOID);
+    j.targets[0] = blocks.get(g.entry);
+    b.append(j);
+    if (call.type != IrType.VOID) {
+      Value result;
+      if (returned.size() == 1) {
+        result = copyOf(values, returned.get(0));
+      } else {
+        Instr phi = cont.addPhi(new Instr(Op.PHI, call.type));
+        for (Value v : returned) {
+          phi.addOperand(copyOf(values, v));
+        }
+        result = phi;
+      }
+      call.replaceAllUsesWith(result);
+    }
+    b.remove(call);
+    nrOfInlined++;
+    return cont;
+  }
+
+  // The value of the copy for value v of the callee (constants are shared):
+  private static Value copyOf(HashMap<Value, Value> values, Value v) {
+    return v instanceof Const ? v : values.get(v);
+  }
+
+}
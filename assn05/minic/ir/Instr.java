@@ -0,0 +1,154 @@
+package minic.ir;
+
+import java.util.ArrayList;
+
+/** An IR instruction. Its result (if any) is the instruction itself.
+ *
+ * <p>Besides its operands, an instruction may refer to
+ * <ul>
+ *   <li>the target blocks of a JUMP (one) or BRANCH (true, false target),
+ *   <li>the global variable of a LOADG or STOREG,
+ *   <li>the called function of a CALL: a Function of the module, or a
+ *       method of minic.lang.System given by name and descriptor,
+ *   <li>the number of the formal parameter of a PARAM (from 0),
+ *   <li>the constant elements of an INITARRAY, as the bits of the JVM
+ *       (0 or 1 for bools, the raw int bits for floats), and the index
+ *       of the first one.
+ * </ul>
+ */
+public final class Instr extends Value {
+
+  public final Op op;
+  Block block;
+  int id;
+  private final ArrayList<Value> operands;
+
+  public final Block[] targets;
+  public Global global;
+  public Function target;
+  public String callee;
+  public String descriptor;
+  public int index;
+  public int[] bits;
+
+  Instr(Op op, IrType type, Value... ops) {
+    super(type);
+    this.op = op;
+    this.operands = new ArrayList<Value>(ops.length);
+    this.targets = op == Op.JUMP ? new Block[1]
+        : op == Op.BRANCH ? new Block[2] : new Block[0];
+    for (Value v : ops) {
+      addOperand(v);
+    }
+  }
+
+  public Block getBlock() {
+    return block;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public int getNrOfOperands() {
+    return operands.size();
+  }
+
+  public Value getOperand(int i) {
+    return operands.get(i);
+  }
+
+  /** Method setOperand: replace operand i, updating the use lists. */
+  public void setOperand(int i, Value v) {
+    Value old = operands.get(i);
+    old.users.remove(this);
+    operands.set(i, v);
+    v.users.add(this);
+  }
+
+  void addOperand(Value v) {
+    operands.add(v);
+    v.users.add(this);
+  }
+
+  void removeOperand(int i) {
+    Value old = operands.remove(i);
+    old.users.remove(this);
+  }
+
+  /** Method dropOperands: remove all operands, e.g. before the instruction
+   * is deleted, so that it no longer counts as a user.
+   */
+  void dropOperands() {
+    while (!operands.isEmpty()) {
+      removeOperand(operands.size() - 1);
+    }
+  }
+
+  public boolean isTerminator() {
+    return op.isTerminator();
+  }
+
+  /** True for a CALL of a method of minic.lang.System. */
+  public boolean isRuntimeCall() {
+    return op == Op.CALL && target == null;
+  }
+
+  /** True if this instruction can be removed when its value is unused,
+   * and be evaluated earlier or later than written, as long as its
+   * operands are available.
+   */
+  public boolean isPure() {
+    if (op == Op.DIV) {
+      if (type == IrType.FLOAT) {
+        return true;
+      }
+      Value d = getOperand(1);
+      return d instanceof Const && ((Const) d).intValue != 0;
+    }
+    return op.isPure();
+  }
+
+  /** The name of the value in IR dumps. */
+  public String getName() {
+    return "%" + id;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    if (type != IrType.VOID) {
+      s.append(getName()).append(" = ");
+    }
+    s.append(op.name().toLowerCase());
+    if (type != IrType.VOID) {
+      s.append(' ').append(type.name().toLowerCase());
+    }
+    if (op == Op.PARAM) {
+      s.append(' ').append(index);
+    }
+    if (op == Op.INITARRAY) {
+      s.append(" [").append(index).append("..")
+          .append(index + bits.length - 1).append(']');
+    }
+    if (global != null) {
+      s.append(' ').append('@').append(global.name);
+    }
+    if (op == Op.CALL) {
+      s.append(' ').append(target != null ? target.name : "System." + callee);
+    }
+    for (int i = 0; i < operands.size(); i++) {
+      s.append(i == 0 ? " " : ", ");
+      Value v = operands.get(i);
+      s.append(v instanceof Instr ? ((Instr) v).getName() : v.toString());
+      if (op == Op.PHI && block != null && i < block.preds.size()) {
+        s.append(" [B").append(block.preds.get(i).id).append(']');
+      }
+    }
+    for (Block b : targets) {
+      s.append(" -> B").append(b == null ? "?" : Integer.toString(b.id));
+    }
+    return s.toString();
+  }
+
+}
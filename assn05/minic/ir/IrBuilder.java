@@ -0,0 +1,845 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import minic.ErrorReporter;
+import minic.astgen.*;
+
+/** IrBuilder visitor class.
+ *
+ * <p>Lowers a checked MiniC AST to the IR. The value of each expression is
+ * pushed on a stack of values when its visit is done; statements pop the
+ * values they consume.
+ *
+ * <p>Local variables and parameters are not stored anywhere: the builder
+ * keeps track of the value each of them has at the end of each block, and
+ * constructs SSA form on the fly as described by Braun et al., "Simple and
+ * Efficient Construction of Static Single Assignment Form" (CC 2013). A
+ * block is sealed once all its predecessors are known; reading a variable
+ * in an unsealed block creates a phi whose operands are added when the
+ * block is sealed. Reads are resolved with loops and a work list rather
+ * than by recursion. Trivial phis are removed when a function is done.
+ *
+ * <p>Global variables are read and written with LOADG and STOREG. An
+ * array is a reference value, created by NEWARRAY where it is declared,
+ * with an INITARRAY for each run of constants in its initializer list and
+ * an ASTORE for each other element; its elements are read and written
+ * with ALOAD and ASTORE.
+ */
+public class IrBuilder implements Visitor {
+
+  private ErrorReporter reporter;
+  private Walker walk;
+  private Module module;
+  private HashMap<FunDecl, Function> functions;
+  private HashMap<Decl, Global> globals;
+
+  // The function being lowered, and the block that receives new
+  // instructions (null after a terminator, see cur()):
+  private Function fn;
+  private Block block;
+  private ArrayDeque<Value> values;
+
+  // SSA construction:
+  private HashMap<Block, HashMap<Decl, Value>> defs;
+  private HashMap<Block, LinkedHashMap<Decl, Instr>> incompletePhis;
+  private HashSet<Block> sealed;
+  private HashMap<Decl, IrType> varTypes;
+  private HashMap<Instr, Decl> phiVars;
+  private ArrayDeque<Instr> pendingPhis;
+
+  /** Constructor of the IrBuilder visitor class. */
+  public IrBuilder(ErrorReporter reporter) {
+    this.reporter = reporter;
+  }
+
+  /** Method build: lower the given program to the IR of a class with
+   * the given name.
+   */
+  public Module build(Program progAst, String className) {
+    walk = new Walker(this);
+    module = new Module(className);
+    functions = new HashMap<FunDecl, Function>();
+    globals = new HashMap<Decl, Global>();
+    values = new ArrayDeque<Value>();
+    ArrayList<Decl> decls = getTopLevelDecls(progAst.D);
+    ArrayList<VarDecl> globalVars = new ArrayList<VarDecl>();
+    // Declare all globals and functions first, for calls to functions
+    // that come later in the program (recursion):
+    for (Decl d : decls) {
+      if (d instanceof VarDecl) {
+        VarDecl vd = (VarDecl) d;
+        vd.setGlobal();
+        Global g = new Global(vd.idAST.Lexeme, typeOfDecl(vd));
+        module.globals.add(g);
+        globals.put(vd, g);
+        globalVars.add(vd);
+      } else if (d instanceof FunDecl) {
+        FunDecl fd = (FunDecl) d;
+        String name = fd.idAST.Lexeme;
+        Function f = new Function(name, IrType.of(fd.tAST),
+            getParamTypes(fd), name.equals("main"), false);
+        module.functions.add(f);
+        functions.put(fd, f);
+      }
+    }
+    module.classInitializer = new Function("<clinit>", IrType.VOID,
+        new ArrayList<IrType>(), false, true);
+    beginFunction(module.classInitializer);
+    for (VarDecl vd : globalVars) {
+      Global g = globals.get(vd);
+      Value v;
+      if (vd.tAST instanceof ArrayType) {
+        walk.walk(vd.eAST);
+        v = newArray(g.type, ((ArrayType) vd.tAST).GetRange(),
+            popElements(vd.eAST));
+      } else if (vd.eAST instanceof EmptyExpr) {
+        v = Const.zero(g.type);
+      } else {
+        walk.walk(vd.eAST);
+        v = values.pop();
+      }
+      Instr st = emit(new Instr(Op.STOREG, IrType.VOID, v));
+      st.global = g;
+    }
+    endFunction();
+    for (Decl d : decls) {
+      if (d instanceof FunDecl) {
+        FunDecl fd = (FunDecl) d;
+        beginFunction(functions.get(fd));
+        List<FormalParamDecl> params = getFormalParams(fd);
+        for (int k = 0; k < params.size(); k++) {
+          FormalParamDecl pd = params.get(k);
+          Instr p = emit(new Instr(Op.PARAM, typeOfDecl(pd)));
+          p.index = k;
+          varTypes.put(pd, p.type);
+          writeVariable(pd, block, p);
+        }
+        walk.walk(fd.stmtAST);
+        endFunction();
+      }
+    }
+    return module;
+  }
+
+  /*
+   * Lowering of declarations.
+   */
+
+  // The declarations of the outermost scope, in program order:
+  private ArrayList<Decl> getTopLevelDecls(Decl d) {
+    ArrayList<Decl> decls = new ArrayList<Decl>();
+    ArrayDeque<Decl> stack = new ArrayDeque<Decl>();
+    stack.push(d);
+    while (!stack.isEmpty()) {
+      d = stack.pop();
+      if (d instanceof DeclSequence) {
+        DeclSequence sd = (DeclSequence) d;
+        stack.push(sd.D2);
+        stack.push(sd.D1);
+      } else {
+        decls.add(d);
+      }
+    }
+    return decls;
+  }
+
+  private List<FormalParamDecl> getFormalParams(FunDecl f) {
+    ArrayList<FormalParamDecl> params = new ArrayList<FormalParamDecl>();
+    Decl d = f.paramsAST;
+    while (d instanceof FormalParamDeclSequence) {
+      FormalParamDeclSequence s = (FormalParamDeclSequence) d;
+      params.add((FormalParamDecl) s.lAST);
+      d = s.rAST;
+    }
+    return params;
+  }
+
+  private List<IrType> getParamTypes(FunDecl f) {
+    ArrayList<IrType> types = new ArrayList<IrType>();
+    for (FormalParamDecl pd : getFormalParams(f)) {
+      types.add(typeOfDecl(pd));
+    }
+    return types;
+  }
+
+  // The IR type of a variable or parameter:
+  private IrType typeOfDecl(Decl d) {
+    return IrType.of(d instanceof VarDecl ? ((VarDecl) d).tAST
+        : ((FormalParamDecl) d).astType);
+  }
+
+  private void beginFunction(Function f) {
+    fn = f;
+    defs = new HashMap<Block, HashMap<Decl, Value>>();
+    incompletePhis = new HashMap<Block, LinkedHashMap<Decl, Instr>>();
+    sealed = new HashSet<Block>();
+    varTypes = new HashMap<Decl, IrType>();
+    phiVars = new HashMap<Instr, Decl>();
+    pendingPhis = new ArrayDeque<Instr>();
+    block = fn.newBlock();
+    seal(block);
+  }
+
+  // Return at the end of the function body if control can get there:
+  private void endFunction() {
+    if (block != null) {
+      if (fn.retType == IrType.VOID || fn.isMain) {
+        emit(new Instr(Op.RET, IrType.VOID));
+      } else {
+        emit(new Instr(Op.RET, IrType.VOID, Const.zero(fn.retType)));
+      }
+      block = null;
+    }
+    fn.removeUnreachableBlocks();
+    fn.removeTrivialPhis();
+    fn = null;
+  }
+
+  /*
+   * Construction of blocks and instructions.
+   */
+
+  // The current block. After a terminator, code is unreachable until
+  // the next block with predecessors starts; it goes to a new block
+  // without predecessors, which is removed in the end.
+  private Block cur() {
+    if (block == null) {
+      block = fn.newBlock();
+      seal(block);
+    }
+    return block;
+  }
+
+  private Instr emit(Instr i) {
+    return cur().append(i);
+  }
+
+  private void jump(Block target) {
+    if (block != null) {
+      Instr j = new Instr(Op.JUMP, IrType.VOID);
+      j.targets[0] = target;
+      block.append(j);
+      block = null;
+    }
+  }
+
+  private void branch(Value cond, Block t, Block f) {
+    Instr br = new Instr(Op.BRANCH, IrType.VOID, cond);
+    br.targets[0] = t;
+    br.targets[1] = f;
+    cur().append(br);
+    block = null;
+  }
+
+  /*
+   * SSA construction (Braun et al.).
+   */
+
+  private void writeVariable(Decl d, Block b, Value v) {
+    HashMap<Decl, Value> m = defs.get(b);
+    if (m == null) {
+      m = new HashMap<Decl, Value>();
+      defs.put(b, m);
+    }
+    m.put(d, v);
+  }
+
+  private Value readVariable(Decl d, Block b) {
+    Value v = lookup(d, b);
+    fillPendingPhis();
+    return v;
+  }
+
+  /* Method lookup returns the value of d at the end of b. It follows
+   * chains of blocks with a single predecessor, and creates a phi where
+   * the chain ends at a join point or an unsealed block. The operands of
+   * a phi in a sealed block are added by fillPendingPhis(), those of a
+   * phi in an unsealed block when the block is sealed.
+   */
+  private Value lookup(Decl d, Block b) {
+    ArrayList<Block> chain = new ArrayList<Block>();
+    Value v;
+    while (true) {
+      HashMap<Decl, Value> m = defs.get(b);
+      v = m == null ? null : m.get(d);
+      if (v != null) {
+        break;
+      }
+      if (!sealed.contains(b)) {
+        Instr phi = newPhi(d, b);
+        LinkedHashMap<Decl, Instr> inc = incompletePhis.get(b);
+        if (inc == null) {
+          inc = new LinkedHashMap<Decl, Instr>();
+          incompletePhis.put(b, inc);
+        }
+        inc.put(d, phi);
+        v = phi;
+      } else if (b.preds.size() == 1) {
+        chain.add(b);
+        b = b.preds.get(0);
+        continue;
+      } else if (b.preds.isEmpty()) {
+        // Unreachable code:
+        v = Const.zero(varTypes.get(d));
+      } else {
+        Instr phi = newPhi(d, b);
+        pendingPhis.push(phi);
+        v = phi;
+      }
+      writeVariable(d, b, v);
+      break;
+    }
+    for (Block c : chain) {
+      writeVariable(d, c, v);
+    }
+    return v;
+  }
+
+  private Instr newPhi(Decl d, Block b) {
+    Instr phi = b.addPhi(new Instr(Op.PHI, varTypes.get(d)));
+    phiVars.put(phi, d);
+    return phi;
+  }
+
+  private void fillPendingPhis() {
+    while (!pendingPhis.isEmpty()) {
+      Instr phi = pendingPhis.pop();
+      Decl d = phiVars.get(phi);
+      for (Block p : phi.block.preds) {
+        phi.addOperand(lookup(d, p));
+      }
+    }
+  }
+
+  // All predecessors of b are known:
+  private void seal(Block b) {
+    LinkedHashMap<Decl, Instr> inc = incompletePhis.remove(b);
+    if (inc != null) {
+      pendingPhis.addAll(inc.values());
+      fillPendingPhis();
+    }
+    sealed.add(b);
+  }
+
+  /*
+   * Lowering of expressions.
+   */
+
+  private Value read(VarExpr x) {
+    Decl d = (Decl) x.Ident.declAST;
+    if (d.isGlobal()) {
+      Global g = globals.get(d);
+      Instr ld = emit(new Instr(Op.LOADG, g.type));
+      ld.global = g;
+      return ld;
+    }
+    return readVariable(d, cur());
+  }
+
+  private void assign(Expr lhs, Value v) {
+    Decl d = (Decl) ((VarExpr) lhs).Ident.declAST;
+    if (d.isGlobal()) {
+      Instr st = emit(new Instr(Op.STOREG, IrType.VOID, v));
+      st.global = globals.get(d);
+    } else {
+      writeVariable(d, cur(), v);
+    }
+  }
+
+  // The values of the elements of the initializer list init, which are on
+  // the stack:
+  private List<Value> popElements(Expr init) {
+    int n = 0;
+    while (init instanceof ExprSequence) {
+      n++;
+      init = ((ExprSequence) init).rAST;
+    }
+    Value[] elems = new Value[n];
+    for (int k = n - 1; k >= 0; k--) {
+      elems[k] = values.pop();
+    }
+    return Arrays.asList(elems);
+  }
+
+  /* Method newArray returns a new array of type t with the given length
+   * and the initial elements elems. Each run of constant elements with a
+   * non-zero one is stored by an INITARRAY (which the backend stores in
+   * bulk, or one by one without the zeros), each other element by an
+   * ASTORE.
+   */
+  private Instr newArray(IrType t, int length, List<Value> elems) {
+    Instr a = emit(new Instr(Op.NEWARRAY, t, Const.ofInt(length)));
+    int k = 0;
+    while (k < elems.size()) {
+      int end = k;
+      boolean zeros = true;
+      while (end < elems.size() && elems.get(end) instanceof Const) {
+        zeros &= getBits((Const) elems.get(end)) == 0;
+        end++;
+      }
+      if (end == k) {
+        emit(new Instr(Op.ASTORE, IrType.VOID, a, Const.ofInt(k),
+            elems.get(k)));
+        k++;
+        continue;
+      }
+      if (!zeros) {
+        Instr init = emit(new Instr(Op.INITARRAY, IrType.VOID, a));
+        init.index = k;
+        init.bits = new int[end - k];
+        for (int n = k; n < end; n++) {
+          init.bits[n - k] = getBits((Const) elems.get(n));
+        }
+      }
+      k = end;
+    }
+    return a;
+  }
+
+  // The value of c as the bits of the JVM:
+  private static int getBits(Const c) {
+    return c.type == IrType.FLOAT ? Float.floatToRawIntBits(c.floatValue)
+        : c.intValue;
+  }
+
+  // Discard the value of an expression evaluated as a statement:
+  private void discard(Expr e) {
+    if (!(e instanceof EmptyExpr)) {
+      values.pop();
+    }
+  }
+
+  private static Op binaryOp(String op) {
+    switch (op) {
+      case "+":
+        return Op.ADD;
+      case "-":
+        return Op.SUB;
+      case "*":
+        return Op.MUL;
+      case "/":
+        return Op.DIV;
+      case "==":
+        return Op.EQ;
+      case "!=":
+        return Op.NE;
+      case "<":
+        return Op.LT;
+      case "<=":
+        return Op.LE;
+      case ">":
+        return Op.GT;
+      default:
+        return Op.GE;
+    }
+  }
+
+  /*
+   *
+   * Visitor methods.
+   *
+   */
+
+  public void visit(Program x) {
+    assert (false); // see build()
+  }
+
+  public void visit(EmptyDecl x) {
+  }
+
+  public void visit(FunDecl x) {
+    assert (false); // functions are not nested
+  }
+
+  public void visit(VarDecl x) {
+    IrType t = typeOfDecl(x);
+    varTypes.put(x, t);
+    if (x.tAST instanceof ArrayType) {
+      // An array is allocated at its declaration, with or without an
+      // initializer list:
+      walk.visit(x.eAST);
+      walk.then(() -> writeVariable(x, cur(), newArray(t,
+          ((ArrayType) x.tAST).GetRange(), popElements(x.eAST))));
+      return;
+    }
+    if (x.eAST instanceof EmptyExpr) {
+      writeVariable(x, cur(), Const.zero(t));
+      return;
+    }
+    walk.visit(x.eAST);
+    walk.then(() -> writeVariable(x, cur(), values.pop()));
+  }
+
+  public void visit(TypeDecl x) {
+  }
+
+  public void visit(FormalParamDecl x) {
+  }
+
+  public void visit(FormalParamDeclSequence x) {
+  }
+
+  public void visit(EmptyFormalParamDecl x) {
+  }
+
+  public void visit(DeclSequence x) {
+    walk.visit(x.D1);
+    walk.visit(x.D2);
+  }
+
+  public void visit(AssignStmt x) {
+    if (x.lAST instanceof ArrayExpr) {
+      visitElementStore((ArrayExpr) x.lAST, x.rAST, false);
+      return;
+    }
+    walk.visit(x.rAST);
+    walk.then(() -> assign(x.lAST, values.pop()));
+  }
+
+  public void visit(IfStmt x) {
+    //   if (E) S1 else S2  =>   [[E]]
+    //                           branch Then, Else
+    //                        Then:
+    //                           [[S1]]
+    //                           jump Join
+    //                        Else:
+    //                           [[S2]]
+    //                           jump Join
+    //                        Join:
+    walk.visit(x.eAST);
+    walk.then(() -> {
+      Block thenBlock = fn.newBlock();
+      Block elseBlock = fn.newBlock();
+      Block join = fn.newBlock();
+      branch(values.pop(), thenBlock, elseBlock);
+      seal(thenBlock);
+      seal(elseBlock);
+      block = thenBlock;
+      walk.visit(x.thenAST);
+      walk.then(() -> {
+        jump(join);
+        block = elseBlock;
+      });
+      walk.visit(x.elseAST);
+      walk.then(() -> {
+        jump(join);
+        seal(join);
+        block = join;
+      });
+    });
+  }
+
+  public void visit(WhileStmt x) {
+    //   while (E) S  =>   jump Header
+    //                  Header:          (sealed after the back edge)
+    //                     [[E]]
+    //                     branch Body, Exit
+    //                  Body:
+    //                     [[S]]
+    //                     jump Header
+    //                  Exit:
+    Block header = fn.newBlock();
+    jump(header);
+    block = header;
+    walk.visit(x.eAST);
+    walk.then(() -> {
+      Block body = fn.newBlock();
+      Block exit = fn.newBlock();
+      branch(values.pop(), body, exit);
+      seal(body);
+      seal(exit);
+      block = body;
+      walk.visit(x.stmtAST);
+      walk.then(() -> {
+        jump(header);
+        seal(header);
+        block = exit;
+      });
+    });
+  }
+
+  public void visit(ForStmt x) {
+    // As a while loop, with E3 at the end of the body. Without a
+    // condition, the header jumps to the body and the exit is unreachable.
+    walk.visit(x.e1AST);
+    walk.then(() -> {
+      discard(x.e1AST);
+      Block header = fn.newBlock();
+      Block body = fn.newBlock();
+      Block exit = fn.newBlock();
+      jump(header);
+      block = header;
+      walk.visit(x.e2AST);
+      walk.then(() -> {
+        if (x.e2AST instanceof EmptyExpr) {
+          jump(body);
+        } else {
+          branch(values.pop(), body, exit);
+        }
+        seal(body);
+        seal(exit);
+        block = body;
+      });
+      walk.visit(x.stmtAST);
+      walk.visit(x.e3AST);
+      walk.then(() -> {
+        discard(x.e3AST);
+        jump(header);
+        seal(header);
+        block = exit;
+      });
+    });
+  }
+
+  public void visit(ReturnStmt x) {
+    walk.visit(x.eAST); // also in "main", for possible side-effects
+    walk.then(() -> {
+      if (x.eAST instanceof EmptyExpr) {
+        emit(new Instr(Op.RET, IrType.VOID));
+      } else if (fn.isMain) {
+        values.pop();
+        emit(new Instr(Op.RET, IrType.VOID));
+      } else {
+        emit(new Instr(Op.RET, IrType.VOID, values.pop()));
+      }
+      block = null;
+    });
+  }
+
+  public void visit(CompoundStmt x) {
+    walk.visit(x.astDecl);
+    walk.visit(x.astStmt);
+  }
+
+  public void visit(EmptyCompoundStmt x) {
+  }
+
+  public void visit(EmptyStmt x) {
+  }
+
+  public void visit(StmtSequence x) {
+    walk.visit(x.s1AST);
+    walk.visit(x.s2AST);
+  }
+
+  public void visit(CallStmt x) {
+    walk.visit(x.eAST);
+    walk.then(() -> values.pop());
+  }
+
+  public void visit(VarExpr x) {
+    values.push(read(x));
+  }
+
+  /* Method visitElementStore lowers the assignment of rhs to the array
+   * element lhs: the array and the index are evaluated before rhs, as in
+   * the Emitter. If isExpr is set, the value of rhs stays on the stack.
+   */
+  private void visitElementStore(ArrayExpr lhs, Expr rhs, boolean isExpr) {
+    walk.visit(lhs.idAST);
+    walk.visit(lhs.indexAST);
+    walk.visit(rhs);
+    walk.then(() -> {
+      Value v = values.pop();
+      Value index = values.pop();
+      Value a = values.pop();
+      emit(new Instr(Op.ASTORE, IrType.VOID, a, index, v));
+      if (isExpr) {
+        values.push(v);
+      }
+    });
+  }
+
+  public void visit(AssignExpr x) {
+    if (x.lAST instanceof ArrayExpr) {
+      visitElementStore((ArrayExpr) x.lAST, x.rAST, true);
+      return;
+    }
+    walk.visit(x.rAST);
+    walk.then(() -> {
+      Value v = values.peek();
+      assign(x.lAST, v);
+    });
+  }
+
+  public void visit(IntExpr x) {
+    values.push(Const.ofInt(x.astIL.GetValue()));
+  }
+
+  public void visit(FloatExpr x) {
+    values.push(Const.ofFloat(x.astFL.GetValue()));
+  }
+
+  public void visit(BoolExpr x) {
+    values.push(Const.ofBool(x.astBL.GetValue()));
+  }
+
+  public void visit(StringExpr x) {
+    values.push(Const.ofString(x.astSL.Lexeme));
+  }
+
+  public void visit(ArrayExpr x) {
+    // A read access; the element stores are done by visitElementStore():
+    walk.visit(x.idAST);
+    walk.visit(x.indexAST);
+    walk.then(() -> {
+      Value index = values.pop();
+      Value a = values.pop();
+      values.push(emit(new Instr(Op.ALOAD, IrType.of(x.type), a, index)));
+    });
+  }
+
+  public void visit(BinaryExpr x) {
+    String op = x.oAST.Lexeme;
+    if (op.equals("&&") || op.equals("||")) {
+      //   E1 && E2  =>   [[E1]]             (E1 || E2: branch Join, Right)
+      //                  branch Right, Join
+      //               Right:
+      //                  [[E2]]
+      //                  jump Join
+      //               Join:
+      //                  phi false, E2
+      final boolean isAnd = op.equals("&&");
+      walk.visit(x.lAST);
+      walk.then(() -> {
+        Block right = fn.newBlock();
+        Block join = fn.newBlock();
+        if (isAnd) {
+          branch(values.pop(), right, join);
+        } else {
+          branch(values.pop(), join, right);
+        }
+        seal(right);
+        block = right;
+        walk.visit(x.rAST);
+        walk.then(() -> {
+          Value r = values.pop();
+          jump(join);
+          seal(join);
+          block = join;
+          // The edge from E1 comes first in the preds of join:
+          Instr phi = join.addPhi(new Instr(Op.PHI, IrType.BOOL,
+              Const.ofBool(!isAnd), r));
+          values.push(phi);
+        });
+      });
+      return;
+    }
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> {
+      Value r = values.pop();
+      Value l = values.pop();
+      values.push(emit(new Instr(binaryOp(op), IrType.of(x.type), l, r)));
+    });
+  }
+
+  public void visit(UnaryExpr x) {
+    String op = x.oAST.Lexeme;
+    walk.visit(x.eAST);
+    walk.then(() -> {
+      if (op.equals("+")) {
+        return; // the operand's value is the result
+      }
+      Value e = values.pop();
+      Op o = op.equals("-") ? Op.NEG : op.equals("i2f") ? Op.I2F : Op.NOT;
+      // Fold constants right away, e.g. the -1 of an initializer list:
+      Const c = e instanceof Const ? Sccp.fold(o, (Const) e) : null;
+      values.push(c != null ? c : emit(new Instr(o, IrType.of(x.type), e)));
+    });
+  }
+
+  public void visit(EmptyExpr x) {
+  }
+
+  public void visit(ActualParam x) {
+    walk.visit(x.pAST);
+  }
+
+  public void visit(EmptyActualParam x) {
+  }
+
+  public void visit(ActualParamSequence x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(CallExpr x) {
+    FunDecl f = (FunDecl) x.idAST.declAST;
+    walk.visit(x.paramAST);
+    walk.then(() -> {
+      List<IrType> paramTypes = getParamTypes(f);
+      Value[] args = new Value[paramTypes.size()];
+      for (int k = args.length - 1; k >= 0; k--) {
+        args[k] = values.pop();
+      }
+      Instr call = emit(new Instr(Op.CALL, IrType.of(f.tAST), args));
+      call.target = functions.get(f);
+      if (call.target == null) {
+        // A function of the StdEnvironment, in minic.lang.System:
+        call.callee = f.idAST.Lexeme;
+        StringBuilder s = new StringBuilder("(");
+        for (IrType t : paramTypes) {
+          s.append(t.descriptor);
+        }
+        call.descriptor = s.append(')').append(call.type.descriptor).toString();
+      } else {
+        call.callee = call.target.name;
+        call.descriptor = call.target.getDescriptor();
+      }
+      values.push(call);
+    });
+  }
+
+  public void visit(ExprSequence x) {
+    // The elements of an initializer list, see popElements():
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(ID x) {
+  }
+
+  public void visit(Operator x) {
+  }
+
+  public void visit(IntLiteral x) {
+  }
+
+  public void visit(FloatLiteral x) {
+  }
+
+  public void visit(BoolLiteral x) {
+  }
+
+  public void visit(StringLiteral x) {
+  }
+
+  public void visit(IntType x) {
+  }
+
+  public void visit(FloatType x) {
+  }
+
+  public void visit(BoolType x) {
+  }
+
+  public void visit(VoidType x) {
+  }
+
+  public void visit(StringType x) {
+  }
+
+  public void visit(ArrayType x) {
+  }
+
+  public void visit(ErrorType x) {
+  }
+
+}
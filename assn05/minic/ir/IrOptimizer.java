@@ -0,0 +1,78 @@
+package minic.ir;
+
+/** IrOptimizer class: runs the optimization passes over a module. First,
+ * tail recursion is turned into loops (TailRecursionEliminator), which
+ * may make functions non-recursive, and calls of small functions are
+ * inlined (Inliner). Then the call graph of the module is computed, with
+ * the side effects of each function (CallGraph), and the functions are
+ * optimized one by one, in this order:
+ * <ol>
+ *   <li>promotion of globals to SSA values (GlobalPromotion),
+ *   <li>sparse conditional constant propagation (Sccp),
+ *   <li>common subexpression elimination (GlobalValueNumbering),
+ *   <li>loop-invariant code motion (LoopInvariantCodeMotion),
+ *   <li>induction-variable optimization (StrengthReduction),
+ *   <li>removal of dead stores and unused values (DeadCodeEliminator),
+ *   <li>clean-up of the control-flow graph (CfgSimplifier).
+ * </ol>
+ */
+public class IrOptimizer {
+
+  private TailRecursionEliminator tre;
+  private Inliner inliner;
+  private GlobalPromotion promotion;
+  private Sccp sccp;
+  private GlobalValueNumbering gvn;
+  private LoopInvariantCodeMotion licm;
+  private StrengthReduction sr;
+  private DeadCodeEliminator dce;
+  private CfgSimplifier cfg;
+
+  /** Constructor of the IrOptimizer class. */
+  public IrOptimizer() {
+    tre = new TailRecursionEliminator();
+    inliner = new Inliner();
+    promotion = new GlobalPromotion();
+    sccp = new Sccp();
+    gvn = new GlobalValueNumbering();
+    licm = new LoopInvariantCodeMotion();
+    sr = new StrengthReduction();
+    dce = new DeadCodeEliminator();
+    cfg = new CfgSimplifier();
+  }
+
+  /** Method optimize: optimize all functions of m. */
+  public void optimize(Module m) {
+    for (Function f : m.getAllFunctions()) {
+      tre.run(f);
+    }
+    inliner.run(m);
+    CallGraph cg = new CallGraph(m);
+    for (Function f : m.getAllFunctions()) {
+      promotion.run(f, cg);
+      sccp.run(f);
+      gvn.run(f, cg);
+      licm.run(f, cg);
+      sr.run(f);
+      dce.run(f, cg);
+      cfg.run(f);
+    }
+  }
+
+  /** Statistics of the passes, for the -irdump output. */
+  public String getStatistics() {
+    return "; tre: " + tre.getNrOfCalls() + " tail calls eliminated\n"
+        + "; inliner: " + inliner.getNrOfInlined() + " calls inlined\n"
+        + "; promotion: " + promotion.getNrOfPromoted()
+        + " globals promoted\n"
+        + "; sccp: " + sccp.getNrOfConstants() + " constants, "
+        + sccp.getNrOfBranches() + " branches folded\n"
+        + "; gvn: " + gvn.getNrOfReplaced() + " values replaced\n"
+        + "; licm: " + licm.getNrOfHoisted() + " instructions hoisted\n"
+        + "; sr: " + sr.getNrOfReduced() + " multiplications reduced, "
+        + sr.getNrOfMerged() + " induction variables merged\n"
+        + "; dce: " + dce.getNrOfRemovedInstrs() + " instructions removed\n"
+        + "; cfg: " + cfg.getNrOfRemovedBlocks() + " blocks removed\n";
+  }
+
+}
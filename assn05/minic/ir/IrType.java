@@ -0,0 +1,85 @@
+package minic.ir;
+
+import minic.StdEnvironment;
+import minic.astgen.ArrayType;
+import minic.astgen.Type;
+
+/** Types of IR values. On the JVM, bool values are ints, and arrays are
+ * references to int[], float[] and boolean[] objects.
+ */
+public enum IrType {
+  INT("I"),
+  FLOAT("F"),
+  BOOL("Z"),
+  STRING("Ljava/lang/String;"),
+  INT_ARRAY("[I"),
+  FLOAT_ARRAY("[F"),
+  BOOL_ARRAY("[Z"),
+  VOID("V");
+
+  // JVM type descriptor:
+  public final String descriptor;
+
+  IrType(String descriptor) {
+    this.descriptor = descriptor;
+  }
+
+  /** Method of: the IR type of a (checked) MiniC type. */
+  public static IrType of(Type t) {
+    if (t instanceof ArrayType) {
+      return of(((ArrayType) t).astType).getArrayType();
+    } else if (t.Tequal(StdEnvironment.intType)) {
+      return INT;
+    } else if (t.Tequal(StdEnvironment.floatType)) {
+      return FLOAT;
+    } else if (t.Tequal(StdEnvironment.boolType)) {
+      return BOOL;
+    } else if (t.Tequal(StdEnvironment.stringType)) {
+      return STRING;
+    }
+    return VOID;
+  }
+
+  /** True for types that live in an int slot on the JVM. */
+  public boolean isIntLike() {
+    return this == INT || this == BOOL;
+  }
+
+  /** True for the array types. */
+  public boolean isArray() {
+    return this == INT_ARRAY || this == FLOAT_ARRAY || this == BOOL_ARRAY;
+  }
+
+  /** True for types that live in a reference slot on the JVM. */
+  public boolean isReference() {
+    return this == STRING || isArray();
+  }
+
+  /** The type of the elements of an array type. */
+  public IrType getElementType() {
+    switch (this) {
+      case INT_ARRAY:
+        return INT;
+      case FLOAT_ARRAY:
+        return FLOAT;
+      case BOOL_ARRAY:
+        return BOOL;
+      default:
+        throw new IllegalStateException("not an array type: " + this);
+    }
+  }
+
+  /** The type of the arrays with elements of this type. */
+  public IrType getArrayType() {
+    switch (this) {
+      case INT:
+        return INT_ARRAY;
+      case FLOAT:
+        return FLOAT_ARRAY;
+      case BOOL:
+        return BOOL_ARRAY;
+      default:
+        throw new IllegalStateException("no arrays of " + this);
+    }
+  }
+}
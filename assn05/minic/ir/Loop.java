@@ -0,0 +1,99 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** A natural loop: a header block that dominates the blocks of the body,
+ * and the back edges from the body to the header. The loops of a while
+ * or a for statement have their condition block as header. Loops with
+ * the same header are treated as one loop.
+ */
+public final class Loop {
+
+  public final Block header;
+  final LinkedHashSet<Block> blocks;
+  Block preheader;
+
+  private Loop(Block header) {
+    this.header = header;
+    this.blocks = new LinkedHashSet<Block>();
+    this.blocks.add(header);
+  }
+
+  /** The blocks of the loop, header first. */
+  public Set<Block> getBlocks() {
+    return Collections.unmodifiableSet(blocks);
+  }
+
+  public boolean contains(Block b) {
+    return blocks.contains(b);
+  }
+
+  /** The pre-header, see Loop.insertPreheaders, or null. */
+  public Block getPreheader() {
+    return preheader;
+  }
+
+  /** Method findLoops: the natural loops of f, inner loops before the
+   * loops that contain them.
+   */
+  public static List<Loop> findLoops(Function f, Dominators dom) {
+    LinkedHashMap<Block, Loop> loops = new LinkedHashMap<Block, Loop>();
+    for (Block b : dom.getReversePostorder()) {
+      for (Block h : b.getSuccs()) {
+        if (!dom.dominates(h, b)) {
+          continue;
+        }
+        // Back edge b -> h: the body are the blocks that reach b
+        // without going through h.
+        Loop l = loops.get(h);
+        if (l == null) {
+          l = new Loop(h);
+          loops.put(h, l);
+        }
+        ArrayDeque<Block> work = new ArrayDeque<Block>();
+        if (l.blocks.add(b)) {
+          work.push(b);
+        }
+        while (!work.isEmpty()) {
+          for (Block p : work.pop().preds) {
+            if (l.blocks.add(p)) {
+              work.push(p);
+            }
+          }
+        }
+      }
+    }
+    ArrayList<Loop> result = new ArrayList<Loop>(loops.values());
+    // An inner loop has fewer blocks than the loops around it:
+    Collections.sort(result, new Comparator<Loop>() {
+      public int compare(Loop a, Loop b) {
+        return Integer.compare(a.blocks.size(), b.blocks.size());
+      }
+    });
+    return result;
+  }
+
+  /** Method insertPreheaders: give each loop a pre-header, a block
+   * outside the loop that jumps to the header and through which all
+   * edges from outside the loop go. The pre-header of a loop is part of
+   * the loops around it.
+   */
+  public static void insertPreheaders(Function f, List<Loop> loops) {
+    for (Loop l : loops) {
+      l.preheader = f.insertPreheader(l.header, l.blocks);
+      for (Loop outer : loops) {
+        if (outer != l && outer.blocks.contains(l.header)) {
+          outer.blocks.add(l.preheader);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+package minic.ir;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** LoopInvariantCodeMotion class: moves the computations of a loop whose
+ * value is the same in every iteration to the pre-header of the loop, so
+ * that they are evaluated once.
+ *
+ * <p>An instruction in the loop is invariant if all its operands are
+ * constants, values defined outside the loop, or invariant themselves,
+ * and if it is
+ * <ul>
+ *   <li>pure (arithmetic, comparisons, conversions and divisions that
+ *       cannot throw),
+ *   <li>a call of a pure function (see CallGraph), or
+ *   <li>a load of a global that no instruction in the loop stores to,
+ *       and that no function called in the loop may store to (the runtime
+ *       functions do not touch the globals).
+ * </ul>
+ * Such instructions cannot throw and have no side effects, so they may be
+ * evaluated in the pre-header also if the loop body is never executed.
+ * Loops are handled from the inside out, so that an invariant of an inner
+ * loop can move on out of the loops around it.
+ */
+public class LoopInvariantCodeMotion {
+
+  private int nrOfHoisted;
+
+  /** Constructor of the LoopInvariantCodeMotion class. */
+  public LoopInvariantCodeMotion() {
+    nrOfHoisted = 0;
+  }
+
+  /** Number of instructions moved out of a loop. */
+  public int getNrOfHoisted() {
+    return nrOfHoisted;
+  }
+
+  /** Method run: hoist the loop invariants of f, with the call graph cg.
+   * Returns true if f changed.
+   */
+  public boolean run(Function f, CallGraph cg) {
+    List<Loop> loops = Loop.findLoops(f, new Dominators(f));
+    if (loops.isEmpty()) {
+      return false;
+    }
+    Loop.insertPreheaders(f, loops);
+    // Definitions come before their uses outside phis in reverse postorder:
+    List<Block> rpo = f.reversePostorder();
+    boolean changed = false;
+    for (Loop l : loops) {
+      HashSet<Global> stored = new HashSet<Global>();
+      HashSet<Function> called = new HashSet<Function>();
+      for (Block b : l.blocks) {
+        for (Instr i : b.instrs) {
+          if (i.op == Op.STOREG) {
+            stored.add(i.global);
+          } else if (i.op == Op.CALL && !i.isRuntimeCall()) {
+            called.add(i.target);
+          }
+        }
+      }
+      for (Block b : rpo) {
+        if (!l.blocks.contains(b)) {
+          continue;
+        }
+        for (Instr i : b.getInstrs().toArray(new Instr[0])) {
+          boolean candidate = i.isPure() || cg.isPureCall(i)
+              || (i.op == Op.LOADG && !stored.contains(i.global)
+                  && !mayModify(cg, called, i.global));
+          if (candidate && isInvariant(i, l)) {
+            l.preheader.moveBefore(i, null);
+            nrOfHoisted++;
+            changed = true;
+          }
+        }
+      }
+    }
+    return changed;
+  }
+
+  private static boolean mayModify(CallGraph cg, Set<Function> called,
+                                   Global g) {
+    for (Function h : called) {
+      if (cg.mayModify(h, g)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isInvariant(Instr i, Loop l) {
+    for (int k = 0; k < i.getNrOfOperands(); k++) {
+      Value v = i.getOperand(k);
+      if (v instanceof Instr && l.blocks.contains(((Instr) v).block)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,58 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The IR of a MiniC program: the global variables and the functions of
+ * the generated class, and its class initializer, which stores the
+ * initial values of the globals.
+ */
+public final class Module {
+
+  public final String className;
+  final ArrayList<Global> globals;
+  final ArrayList<Function> functions;
+  Function classInitializer;
+
+  Module(String className) {
+    this.className = className;
+    this.globals = new ArrayList<Global>();
+    this.functions = new ArrayList<Function>();
+  }
+
+  public List<Global> getGlobals() {
+    return Collections.unmodifiableList(globals);
+  }
+
+  /** The MiniC functions, in program order. */
+  public List<Function> getFunctions() {
+    return Collections.unmodifiableList(functions);
+  }
+
+  public Function getClassInitializer() {
+    return classInitializer;
+  }
+
+  /** All functions including the class initializer. */
+  public List<Function> getAllFunctions() {
+    ArrayList<Function> all = new ArrayList<Function>();
+    all.add(classInitializer);
+    all.addAll(functions);
+    return all;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("; IR of class ")
+        .append(className).append('\n');
+    for (Global g : globals) {
+      s.append(g).append('\n');
+    }
+    for (Function f : getAllFunctions()) {
+      s.append('\n').append(f);
+    }
+    return s.toString();
+  }
+
+}
@@ -0,0 +1,111 @@
+package minic.ir;
+
+/** Operations of IR instructions. */
+public enum Op {
+  // Incoming value of formal parameter number Instr.index:
+  PARAM,
+  // SSA phi function, one operand per predecessor of the block:
+  PHI,
+  // Arithmetic, on INT or FLOAT operands:
+  ADD,
+  SUB,
+  MUL,
+  DIV,
+  NEG,
+  I2F,
+  // Comparisons, with a BOOL result:
+  EQ,
+  NE,
+  LT,
+  LE,
+  GT,
+  GE,
+  NOT,
+  // Read and write of a global variable (static field) Instr.global:
+  LOADG,
+  STOREG,
+  // New array of the length operand 0, filled with zeros:
+  NEWARRAY,
+  // Read and write of element operand 1 of the array operand 0; the value
+  // written is operand 2:
+  ALOAD,
+  ASTORE,
+  // Store of the constants Instr.bits into the array operand 0, from
+  // element Instr.index on:
+  INITARRAY,
+  // Call of Instr.callee, the operands are the actual parameters:
+  CALL,
+  // Terminators:
+  JUMP,
+  BRANCH,
+  RET;
+
+  /** True for the last instruction of a block. */
+  public boolean isTerminator() {
+    return this == JUMP || this == BRANCH || this == RET;
+  }
+
+  /** True for comparisons. */
+  public boolean isCompare() {
+    return this == EQ || this == NE || this == LT
+        || this == LE || this == GT || this == GE;
+  }
+
+  /** True for operations that change the state of the program
+   * (or may do so), apart from producing their value.
+   */
+  public boolean hasSideEffects() {
+    return this == STOREG || this == ASTORE || this == INITARRAY
+        || this == CALL || isTerminator();
+  }
+
+  /** True for operations that store into an array. */
+  public boolean isArrayStore() {
+    return this == ASTORE || this == INITARRAY;
+  }
+
+  /** True for operations whose value depends only on their operands and
+   * that can be evaluated at any time. An int DIV may throw and is pure
+   * only if its divisor is a non-zero constant, see Instr.isPure().
+   */
+  public boolean isPure() {
+    return this == ADD || this == SUB || this == MUL || this == NEG
+        || this == I2F || this == NOT || isCompare();
+  }
+
+  /** The comparison that is true iff this one is false, for int operands. */
+  public Op negate() {
+    switch (this) {
+      case EQ:
+        return NE;
+      case NE:
+        return EQ;
+      case LT:
+        return GE;
+      case LE:
+        return GT;
+      case GT:
+        return LE;
+      case GE:
+        return LT;
+      default:
+        throw new IllegalStateException("not a comparison: " + this);
+    }
+  }
+
+  /** The comparison with swapped operands (a op b == b swap(op) a). */
+  public Op swap() {
+    switch (this) {
+      case LT:
+        return GT;
+      case LE:
+        return GE;
+      case GT:
+        return LT;
+      case GE:
+        return LE;
+      default:
+        return this;
+    }
+  }
+}
@@ -0,0 +1,286 @@
+package minic.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** Sccp class: sparse conditional constant propagation.
+ *
+ * <p>The algorithm of Wegman and Zadeck, "Constant Propagation with
+ * Conditional Branches" (TOPLAS 1991). Every SSA value starts out as
+ * undefined (top) and is lowered to a constant, or to "not constant"
+ * (bottom), as the blocks that define it and the edges into phis turn
+ * out to be executable. A branch whose condition is a constant makes one
+ * edge executable only, so that the values along the other edge do not
+ * count.
+ *
+ * <p>Afterwards, values that are constant are replaced by their constant,
+ * branches on constants become jumps, and the blocks that can no longer
+ * be reached are removed.
+ */
+public class Sccp {
+
+  // Lattice value "not constant"; "undefined" is not in the map:
+  private static final Object BOTTOM = new Object();
+
+  private HashMap<Instr, Object> lattice;
+  private HashSet<Block> executable;
+  // The executable edges, by target block:
+  private HashMap<Block, HashSet<Block>> executablePreds;
+  private ArrayDeque<Block[]> flowWork;
+  private ArrayDeque<Instr> ssaWork;
+  private int nrOfConstants;
+  private int nrOfBranches;
+
+  /** Constructor of the Sccp class. */
+  public Sccp() {
+    nrOfConstants = 0;
+    nrOfBranches = 0;
+  }
+
+  /** Number of values replaced by constants. */
+  public int getNrOfConstants() {
+    return nrOfConstants;
+  }
+
+  /** Number of branches replaced by jumps. */
+  public int getNrOfBranches() {
+    return nrOfBranches;
+  }
+
+  /** Method run: propagate the constants of f. Returns true if f changed. */
+  public boolean run(Function f) {
+    lattice = new HashMap<Instr, Object>();
+    executable = new HashSet<Block>();
+    executablePreds = new HashMap<Block, HashSet<Block>>();
+    flowWork = new ArrayDeque<Block[]>();
+    ssaWork = new ArrayDeque<Instr>();
+    flowWork.push(new Block[] {null, f.entry});
+    while (!flowWork.isEmpty() || !ssaWork.isEmpty()) {
+      while (!flowWork.isEmpty()) {
+        Block[] edge = flowWork.pop();
+        visitEdge(edge[0], edge[1]);
+      }
+      while (!ssaWork.isEmpty()) {
+        Instr i = ssaWork.pop();
+        if (i.block != null && executable.contains(i.block)) {
+          visit(i);
+        }
+      }
+    }
+    return rewrite(f);
+  }
+
+  private void visitEdge(Block p, Block b) {
+    HashSet<Block> preds = executablePreds.get(b);
+    if (preds == null) {
+      preds = new HashSet<Block>();
+      executablePreds.put(b, preds);
+    }
+    if (!preds.add(p)) {
+      return;
+    }
+    if (executable.add(b)) {
+      for (Instr i : b.instrs) {
+        visit(i);
+      }
+    } else {
+      for (Instr phi : b.getPhis()) {
+        visit(phi);
+      }
+    }
+  }
+
+  private void visit(Instr i) {
+    if (i.op == Op.BRANCH) {
+      Object c = valueOf(i.getOperand(0));
+      if (c instanceof Const) {
+        flowWork.push(new Block[] {i.block,
+            i.targets[((Const) c).boolValue() ? 0 : 1]});
+      } else if (c == BOTTOM) {
+        flowWork.push(new Block[] {i.block, i.targets[0]});
+        flowWork.push(new Block[] {i.block, i.targets[1]});
+      }
+      return;
+    }
+    if (i.op == Op.JUMP) {
+      flowWork.push(new Block[] {i.block, i.targets[0]});
+      return;
+    }
+    if (i.type == IrType.VOID) {
+      return;
+    }
+    Object old = lattice.get(i);
+    if (old == BOTTOM) {
+      return;
+    }
+    Object v = evaluate(i);
+    if (v == null || (old != null && sameValue(old, v))) {
+      return;
+    }
+    // Values only go down; two different constants give bottom:
+    lattice.put(i, old == null ? v : BOTTOM);
+    for (Instr u : i.users) {
+      ssaWork.push(u);
+    }
+  }
+
+  private static boolean sameValue(Object a, Object b) {
+    return a == b || (a instanceof Const && b instanceof Const
+        && ((Const) a).sameAs((Const) b));
+  }
+
+  // The lattice value of v: a Const, BOTTOM, or null for undefined:
+  private Object valueOf(Value v) {
+    return v instanceof Const ? v : lattice.get((Instr) v);
+  }
+
+  private Object evaluate(Instr i) {
+    if (i.op == Op.PHI) {
+      Object v = null;
+      HashSet<Block> preds = executablePreds.get(i.block);
+      for (int k = 0; k < i.getNrOfOperands(); k++) {
+        if (!preds.contains(i.block.preds.get(k))) {
+          continue;
+        }
+        Object o = valueOf(i.getOperand(k));
+        if (o == BOTTOM) {
+          return BOTTOM;
+        } else if (o != null) {
+          if (v != null && !sameValue(v, o)) {
+            return BOTTOM;
+          }
+          v = o;
+        }
+      }
+      return v;
+    }
+    if (!i.op.isPure() && i.op != Op.DIV) {
+      return BOTTOM; // PARAM, LOADG, CALL
+    }
+    Const[] ops = new Const[i.getNrOfOperands()];
+    for (int k = 0; k < ops.length; k++) {
+      Object o = valueOf(i.getOperand(k));
+      if (o == BOTTOM) {
+        return BOTTOM;
+      } else if (o == null) {
+        return null;
+      }
+      ops[k] = (Const) o;
+    }
+    Const c = fold(i.op, ops);
+    return c == null ? BOTTOM : c;
+  }
+
+  /** Method fold: the result of operation op with constant operands, as
+   * the JVM computes it, or null if it cannot be computed at compile time
+   * (division by zero) or not written as a constant (infinite or NaN
+   * floats).
+   */
+  public static Const fold(Op op, Const... ops) {
+    Const a = ops[0];
+    Const b = ops.length > 1 ? ops[1] : null;
+    if (op == Op.NOT) {
+      return Const.ofBool(!a.boolValue());
+    } else if (op == Op.I2F) {
+      return Const.ofFloat((float) a.intValue);
+    } else if (a.type == IrType.FLOAT) {
+      float x = a.floatValue;
+      float y = b == null ? 0.0f : b.floatValue;
+      float r;
+      switch (op) {
+        case NEG:
+          r = -x;
+          break;
+        case ADD:
+          r = x + y;
+          break;
+        case SUB:
+          r = x - y;
+          break;
+        case MUL:
+          r = x * y;
+          break;
+        case DIV:
+          r = x / y;
+          break;
+        default:
+          // As fcmpl/fcmpg: -0.0 equals 0.0, NaN is unordered:
+          return Const.ofBool(compare(op, x < y ? -1 : x > y ? 1 : 0,
+              Float.isNaN(x) || Float.isNaN(y)));
+      }
+      return Float.isNaN(r) || Float.isInfinite(r) ? null : Const.ofFloat(r);
+    } else if (a.type == IrType.STRING) {
+      return null;
+    }
+    int x = a.intValue;
+    int y = b == null ? 0 : b.intValue;
+    switch (op) {
+      case NEG:
+        return Const.ofInt(-x);
+      case ADD:
+        return Const.ofInt(x + y);
+      case SUB:
+        return Const.ofInt(x - y);
+      case MUL:
+        return Const.ofInt(x * y);
+      case DIV:
+        // Integer.MIN_VALUE / -1 wraps like idiv does:
+        return y == 0 ? null : Const.ofInt(x / y);
+      default:
+        return Const.ofBool(compare(op, Integer.compare(x, y), false));
+    }
+  }
+
+  // Comparison op for operands that compare as cmp; false if unordered:
+  private static boolean compare(Op op, int cmp, boolean unordered) {
+    if (unordered) {
+      return op == Op.NE;
+    }
+    switch (op) {
+      case EQ:
+        return cmp == 0;
+      case NE:
+        return cmp != 0;
+      case LT:
+        return cmp < 0;
+      case LE:
+        return cmp <= 0;
+      case GT:
+        return cmp > 0;
+      default:
+        return cmp >= 0;
+    }
+  }
+
+  private boolean rewrite(Function f) {
+    boolean changed = false;
+    for (Block b : f.blocks) {
+      if (!executable.contains(b)) {
+        continue;
+      }
+      for (Instr i : new ArrayList<Instr>(b.instrs)) {
+        Object v = lattice.get(i);
+        if (v instanceof Const) {
+          i.replaceAllUsesWith((Const) v);
+          b.remove(i);
+          nrOfConstants++;
+          changed = true;
+        }
+      }
+      Instr t = b.getTerminator();
+      if (t.op == Op.BRANCH && t.getOperand(0) instanceof Const) {
+        b.replaceBranch(((Const) t.getOperand(0)).boolValue() ? 0 : 1);
+        nrOfBranches++;
+        changed = true;
+      }
+    }
+    if (f.removeUnreachableBlocks()) {
+      changed = true;
+    }
+    f.removeTrivialPhis();
+    return changed;
+  }
+
+}
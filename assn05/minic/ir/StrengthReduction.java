@@ -0,0 +1,207 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** StrengthReduction class: induction-variable optimization of loops.
+ *
+ * <p>A basic induction variable is a phi of the loop header that is
+ * incremented by the same loop-invariant step on every back edge, like
+ * the counter of a for loop: i = phi(init, i + step). The pass
+ * <ul>
+ *   <li>merges basic induction variables that have the same initial
+ *       value and step, and therefore the same value in every iteration,
+ *   <li>replaces a multiplication i * k of a basic induction variable and
+ *       a loop invariant by a new induction variable j, with initial value
+ *       init * k and step step * k, so that the multiplication becomes an
+ *       addition (which the backend emits as iinc if step * k is a small
+ *       constant). Equal products share one new induction variable.
+ * </ul>
+ * The int arithmetic of the JVM wraps around, so j equals i * k also if
+ * the products overflow. The induction variables that are no longer used
+ * are removed by the dead code elimination that runs afterwards.
+ */
+public class StrengthReduction {
+
+  // A basic induction variable: phi = phi(init, inc) with inc = phi +- step:
+  private static final class Iv {
+    Instr phi;
+    Value init;
+    Instr inc;
+    Value step;
+  }
+
+  private int nrOfReduced;
+  private int nrOfMerged;
+
+  /** Constructor of the StrengthReduction class. */
+  public StrengthReduction() {
+    nrOfReduced = 0;
+    nrOfMerged = 0;
+  }
+
+  /** Number of multiplications replaced by induction variables. */
+  public int getNrOfReduced() {
+    return nrOfReduced;
+  }
+
+  /** Number of induction variables merged with an equal one. */
+  public int getNrOfMerged() {
+    return nrOfMerged;
+  }
+
+  /** Method run: optimize the induction variables of the loops of f.
+   * Returns true if f changed.
+   */
+  public boolean run(Function f) {
+    List<Loop> loops = Loop.findLoops(f, new Dominators(f));
+    Loop.insertPreheaders(f, loops);
+    boolean changed = false;
+    for (Loop l : loops) {
+      ArrayList<Iv> ivs = findInductionVariables(l);
+      changed |= mergeInductionVariables(ivs);
+      changed |= reduceMultiplications(l, ivs);
+    }
+    return changed;
+  }
+
+  private static boolean isInvariant(Value v, Loop l) {
+    return v instanceof Const || !l.blocks.contains(((Instr) v).block);
+  }
+
+  private static boolean sameValue(Value a, Value b) {
+    return a == b || (a instanceof Const && ((Const) a).sameAs(b));
+  }
+
+  private ArrayList<Iv> findInductionVariables(Loop l) {
+    ArrayList<Iv> ivs = new ArrayList<Iv>();
+    Block h = l.header;
+    int in = h.preds.indexOf(l.preheader);
+    for (Instr phi : h.getPhis()) {
+      if (phi.type != IrType.INT) {
+        continue;
+      }
+      Value inc = null;
+      for (int k = 0; k < h.preds.size() && inc != phi; k++) {
+        Value v = phi.getOperand(k);
+        if (k != in) {
+          inc = inc == null || inc == v ? v : phi;
+        }
+      }
+      if (!(inc instanceof Instr) || inc == phi) {
+        continue;
+      }
+      Instr i = (Instr) inc;
+      Value step = null;
+      if (i.op == Op.ADD && i.getOperand(0) == phi) {
+        step = i.getOperand(1);
+      } else if (i.op == Op.ADD && i.getOperand(1) == phi) {
+        step = i.getOperand(0);
+      } else if (i.op == Op.SUB && i.getOperand(0) == phi) {
+        step = i.getOperand(1);
+      }
+      if (step == null || !isInvariant(step, l)) {
+        continue;
+      }
+      Iv iv = new Iv();
+      iv.phi = phi;
+      iv.init = phi.getOperand(in);
+      iv.inc = i;
+      iv.step = step;
+      ivs.add(iv);
+    }
+    return ivs;
+  }
+
+  // Replace each induction variable by an earlier one with the same values:
+  private boolean mergeInductionVariables(ArrayList<Iv> ivs) {
+    boolean changed = false;
+    for (int n = ivs.size() - 1; n > 0; n--) {
+      Iv b = ivs.get(n);
+      for (int m = 0; m < n; m++) {
+        Iv a = ivs.get(m);
+        if (a.inc.op == b.inc.op && sameValue(a.init, b.init)
+            && sameValue(a.step, b.step)) {
+          b.inc.replaceAllUsesWith(a.inc);
+          b.phi.replaceAllUsesWith(a.phi);
+          ivs.remove(n);
+          nrOfMerged++;
+          changed = true;
+          break;
+        }
+      }
+    }
+    return changed;
+  }
+
+  private boolean reduceMultiplications(Loop l, ArrayList<Iv> ivs) {
+    boolean changed = false;
+    // The new induction variables, as (iv, factor, phi):
+    ArrayList<Object[]> reduced = new ArrayList<Object[]>();
+    for (Block b : new ArrayList<Block>(l.blocks)) {
+      for (Instr m : b.instrs.toArray(new Instr[0])) {
+        if (m.op != Op.MUL || m.type != IrType.INT) {
+          continue;
+        }
+        for (int n = 0; n < ivs.size(); n++) {
+          Iv iv = ivs.get(n);
+          Value k = m.getOperand(0) == iv.phi ? m.getOperand(1)
+              : m.getOperand(1) == iv.phi ? m.getOperand(0) : null;
+          if (k == null || !isInvariant(k, l)) {
+            continue;
+          }
+          Instr j = null;
+          for (Object[] r : reduced) {
+            if (r[0] == iv && sameValue((Value) r[1], k)) {
+              j = (Instr) r[2];
+            }
+          }
+          if (j == null) {
+            // The new one may be reduced further, as in i * 4 * n:
+            Iv jv = newInductionVariable(l, iv, k);
+            ivs.add(jv);
+            j = jv.phi;
+            reduced.add(new Object[] {iv, k, j});
+          }
+          m.replaceAllUsesWith(j);
+          b.remove(m);
+          nrOfReduced++;
+          changed = true;
+          break;
+        }
+      }
+    }
+    return changed;
+  }
+
+  // The induction variable iv * k, with init and step computed before l:
+  private Iv newInductionVariable(Loop l, Iv iv, Value k) {
+    Block h = l.header;
+    Iv jv = new Iv();
+    jv.init = multiply(l.preheader, iv.init, k);
+    jv.step = multiply(l.preheader, iv.step, k);
+    jv.phi = h.addPhi(new Instr(Op.PHI, IrType.INT));
+    jv.inc = new Instr(iv.inc.op, IrType.INT, jv.phi, jv.step);
+    Block b = iv.inc.block;
+    b.insertBefore(jv.inc, b.instrs.get(b.instrs.indexOf(iv.inc) + 1));
+    for (Block p : h.preds) {
+      jv.phi.addOperand(p == l.preheader ? jv.init : jv.inc);
+    }
+    return jv;
+  }
+
+  // a * b, folded if possible, or else computed at the end of p:
+  private static Value multiply(Block p, Value a, Value b) {
+    if (a instanceof Const && b instanceof Const) {
+      return Sccp.fold(Op.MUL, (Const) a, (Const) b);
+    } else if (b instanceof Const) {
+      return multiply(p, b, a);
+    } else if (a instanceof Const && ((Const) a).intValue == 0) {
+      return a;
+    } else if (a instanceof Const && ((Const) a).intValue == 1) {
+      return b;
+    }
+    return p.insertBeforeTerminator(new Instr(Op.MUL, IrType.INT, a, b));
+  }
+
+}
@@ -0,0 +1,206 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** TailRecursionEliminator class: turns the recursive calls of a function
+ * to itself in tail position into a loop.
+ *
+ * <p>A call is in tail position if its value is returned right away, by
+ * a return in its own block or in a block it jumps to through blocks that
+ * only pass the value on in phis (as in "if (n == 0) r = 1; else
+ * r = f(n - 1); return r;"). The entry of the
+ * function becomes the head of a loop, with a phi for each parameter,
+ * and a tail call becomes a jump to the head that assigns the arguments
+ * to these phis.
+ *
+ * <p>A call whose value is added to or multiplied with a value x before
+ * it is returned (return n * f(n - 1)) is eliminated as well, with an
+ * accumulator a: the loop computes a = a * x instead, starting from 1,
+ * and each remaining return of a value v returns a * v. This uses that
+ * int addition and multiplication are associative and commutative, also
+ * when they overflow; it is not done for floats, and only for one of the
+ * two operations per function. Only pure instructions may follow the
+ * call in its block, so that no side effects change their order.
+ */
+public class TailRecursionEliminator {
+
+  // A tail call, and the ADD or MUL that combines its value with operand
+  // number x of the ADD or MUL:
+  private static final class Site {
+    Instr call;
+    Instr op;
+    int x;
+  }
+
+  private int nrOfCalls;
+
+  /** Constructor of the TailRecursionEliminator class. */
+  public TailRecursionEliminator() {
+    nrOfCalls = 0;
+  }
+
+  /** Number of recursive calls turned into jumps. */
+  public int getNrOfCalls() {
+    return nrOfCalls;
+  }
+
+  /** Method run: eliminate the tail calls of f to itself. Returns true if
+   * f changed.
+   */
+  public boolean run(Function f) {
+    if (f.isStatic()) {
+      return false;
+    }
+    ArrayList<Site> sites = new ArrayList<Site>();
+    Op accumulate = null;
+    for (Block b : f.blocks) {
+      Site s = getSite(f, b);
+      if (s == null || (s.op != null && accumulate != null
+          && s.op.op != accumulate)) {
+        continue;
+      }
+      if (s.op != null) {
+        accumulate = s.op.op;
+      }
+      sites.add(s);
+    }
+    if (sites.isEmpty()) {
+      return false;
+    }
+    // The loop head, with phis for the parameters and the accumulator:
+    Block entry = f.entry;
+    Instr lastParam = null;
+    for (Instr i : entry.instrs) {
+      if (i.op == Op.PARAM) {
+        lastParam = i;
+      }
+    }
+    Block head = f.splitBlock(entry, lastParam);
+    Instr j = new Instr(Op.JUMP, IrType.VOID);
+    j.targets[0] = head;
+    entry.append(j);
+    ArrayList<Instr> phis = new ArrayList<Instr>();
+    for (Instr p : entry.instrs) {
+      if (p.op == Op.PARAM) {
+        Instr phi = head.addPhi(new Instr(Op.PHI, p.type));
+        p.replaceAllUsesWith(phi);
+        phi.addOperand(p);
+        phis.add(phi);
+      }
+    }
+    Instr acc = null;
+    if (accumulate != null) {
+      acc = head.addPhi(new Instr(Op.PHI, IrType.INT,
+          Const.ofInt(accumulate == Op.ADD ? 0 : 1)));
+    }
+    for (Site s : sites) {
+      Block b = s.call.block;
+      b.remove(b.getTerminator());
+      Value next = acc;
+      if (s.op != null) {
+        next = b.append(new Instr(accumulate, IrType.INT, acc,
+            s.op.getOperand(s.x)));
+      }
+      j = new Instr(Op.JUMP, IrType.VOID);
+      j.targets[0] = head;
+      b.append(j);
+      for (int k = 0; k < phis.size(); k++) {
+        phis.get(k).addOperand(s.call.getOperand(k));
+      }
+      if (acc != null) {
+        acc.addOperand(next);
+      }
+    }
+    // Blocks that only returned the value of a tail call are gone now:
+    f.removeUnreachableBlocks();
+    for (Site s : sites) {
+      if (s.op != null) {
+        s.op.block.remove(s.op);
+      }
+      s.call.block.remove(s.call);
+      nrOfCalls++;
+    }
+    if (acc != null) {
+      for (Block b : f.blocks) {
+        Instr ret = b.getTerminator();
+        if (ret.op == Op.RET) {
+          Instr v = b.insertBefore(new Instr(accumulate, IrType.INT, acc,
+              ret.getOperand(0)), ret);
+          ret.setOperand(0, v);
+        }
+      }
+    }
+    f.removeTrivialPhis();
+    return true;
+  }
+
+  /* Method getSite returns the tail call that ends block b, or null if
+   * there is none.
+   */
+  private static Site getSite(Function f, Block b) {
+    // The path to the return, through blocks with phis and a jump only:
+    ArrayList<Block> path = new ArrayList<Block>();
+    path.add(b);
+    Instr t = b.getTerminator();
+    while (t.op == Op.JUMP) {
+      Block r = t.targets[0];
+      if (path.contains(r) || r.instrs.size() != r.getPhis().size() + 1) {
+        return null;
+      }
+      path.add(r);
+      t = r.getTerminator();
+    }
+    if (t.op != Op.RET) {
+      return null;
+    }
+    // The returned value, as it is known at the end of b:
+    Value v = t.getNrOfOperands() > 0 ? t.getOperand(0) : null;
+    for (int k = path.size() - 1; k > 0; k--) {
+      Block r = path.get(k);
+      if (v instanceof Instr && ((Instr) v).block == r) {
+        v = ((Instr) v).getOperand(r.preds.indexOf(path.get(k - 1)));
+      }
+    }
+    Site s = new Site();
+    List<Instr> instrs = b.instrs;
+    if (v == null) {
+      // A void function: the call must be the last instruction:
+      Instr last = instrs.size() > 1 ? instrs.get(instrs.size() - 2) : null;
+      s.call = isSelfCall(f, b, last) ? last : null;
+    } else if (isSelfCall(f, b, v)) {
+      s.call = v.getUsers().size() == 1 ? (Instr) v : null;
+    } else if (v instanceof Instr && ((Instr) v).block == b
+        && ((Instr) v).type == IrType.INT
+        && (((Instr) v).op == Op.ADD || ((Instr) v).op == Op.MUL)) {
+      s.op = (Instr) v;
+      for (int k = 1; k >= 0 && s.call == null; k--) {
+        Value c = s.op.getOperand(k);
+        if (isSelfCall(f, b, c) && c != s.op.getOperand(1 - k)
+            && c.getUsers().size() == 1) {
+          s.call = (Instr) c;
+          s.x = 1 - k;
+        }
+      }
+      if (s.op.getUsers().size() != 1) {
+        return null;
+      }
+    }
+    if (s.call == null) {
+      return null;
+    }
+    // Only pure instructions may follow the call:
+    for (int k = instrs.indexOf(s.call) + 1; k < instrs.size() - 1; k++) {
+      if (!instrs.get(k).isPure()) {
+        return null;
+      }
+    }
+    return s;
+  }
+
+  private static boolean isSelfCall(Function f, Block b, Value v) {
+    return v instanceof Instr && ((Instr) v).op == Op.CALL
+        && ((Instr) v).target == f && ((Instr) v).block == b;
+  }
+
+}
@@ -0,0 +1,45 @@
+package minic.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A value of the IR: a constant or the result of an instruction.
+ *
+ * <p>Every value knows its users. An instruction that uses a value several
+ * times is listed once per use.
+ */
+public abstract class Value {
+
+  public IrType type;
+  final ArrayList<Instr> users;
+
+  Value(IrType type) {
+    this.type = type;
+    this.users = new ArrayList<Instr>();
+  }
+
+  /** The instructions that use this value, once per use. */
+  public List<Instr> getUsers() {
+    return users;
+  }
+
+  public boolean hasUsers() {
+    return !users.isEmpty();
+  }
+
+  /** Method replaceAllUsesWith: make every user of this value use v. */
+  public void replaceAllUsesWith(Value v) {
+    if (v == this) {
+      return;
+    }
+    while (!users.isEmpty()) {
+      Instr u = users.get(users.size() - 1);
+      for (int i = 0; i < u.getNrOfOperands(); i++) {
+        if (u.getOperand(i) == this) {
+          u.setOperand(i, v);
+        }
+      }
+    }
+  }
+
+}
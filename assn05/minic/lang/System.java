@@ -93,4 +93,43 @@ public class System {
   public static final void putLn() {
     java.lang.System.out.println("");
   }
+
+  /* The initArray methods are not MiniC functions: the code generator
+   * calls them to fill an array from an initializer list of constants,
+   * which is encoded in a string constant instead of one store
+   * instruction per element.
+   */
+
+  /** initIntArray(): a[from + k] is char k of s, a 16 bit signed value. */
+  public static final void initIntArray(int[] a, int from, String s) {
+    for (int k = 0; k < s.length(); k++) {
+      a[from + k] = (short) s.charAt(k);
+    }
+  }
+
+  /** initWideIntArray(): a[from + k] is chars 2k (high 16 bits) and
+   * 2k + 1 (low 16 bits) of s.
+   */
+  public static final void initWideIntArray(int[] a, int from, String s) {
+    for (int k = 0; 2 * k < s.length(); k++) {
+      a[from + k] = s.charAt(2 * k) << 16 | s.charAt(2 * k + 1);
+    }
+  }
+
+  /** initFloatArray(): a[from + k] has the bits of chars 2k (high 16 bits)
+   * and 2k + 1 (low 16 bits) of s.
+   */
+  public static final void initFloatArray(float[] a, int from, String s) {
+    for (int k = 0; 2 * k < s.length(); k++) {
+      a[from + k] = Float.intBitsToFloat(
+          s.charAt(2 * k) << 16 | s.charAt(2 * k + 1));
+    }
+  }
+
+  /** initBoolArray(): a[from + k] is true if char k of s is '1'. */
+  public static final void initBoolArray(boolean[] a, int from, String s) {
+    for (int k = 0; k < s.length(); k++) {
+      a[from + k] = s.charAt(k) == '1';
+    }
+  }
 }
@@ -0,0 +1,381 @@
+package minic.optimizer;
+
+import minic.StdEnvironment;
+import minic.astgen.*;
+import minic.scanner.SourcePos;
+
+/** ConstantFolder visitor class.
+ *
+ * <p>Folds operator trees over literals in a checked AST into literals.
+ * Operators are evaluated with the semantics of the JVM instructions the
+ * Emitter would generate for them: int arithmetic wraps around, float
+ * arithmetic rounds to the nearest float, i2f rounds like the JVM's i2f.
+ * Divisions by zero are not folded, nor is anything whose result cannot be
+ * written as a MiniC literal (infinite or NaN floats).
+ *
+ * <p>Besides, "false &amp;&amp; E" and "true || E" are folded to their left
+ * operand, and "true &amp;&amp; E" and "false || E" to E, because E would
+ * not (resp. would) be evaluated by the short-circuit code either.
+ *
+ * <p>Expressions are folded bottom-up: after the children of a node have
+ * been folded, each of its expression children is replaced by its folded
+ * form.
+ */
+public class ConstantFolder implements Visitor {
+
+  private Walker walk;
+  private int nrOfFolds;
+
+  /** Constructor of the ConstantFolder visitor class. */
+  public ConstantFolder() {
+    nrOfFolds = 0;
+  }
+
+  /** Method fold: fold the constant expressions in the given program. */
+  public void fold(Program progAst) {
+    walk = new Walker(this);
+    walk.walk(progAst);
+  }
+
+  /** Number of operator nodes replaced during fold(). */
+  public int getNrOfFolds() {
+    return nrOfFolds;
+  }
+
+  /*
+   * Method fold(Expr e) returns the folded form of e. The operands of e
+   * have been folded already.
+   */
+  private Expr fold(Expr e) {
+    Expr f = e;
+    if (e instanceof BinaryExpr) {
+      f = foldBinary((BinaryExpr) e);
+    } else if (e instanceof UnaryExpr) {
+      f = foldUnary((UnaryExpr) e);
+    }
+    if (f != e) {
+      nrOfFolds++;
+    }
+    return f;
+  }
+
+  private Expr foldBinary(BinaryExpr x) {
+    String op = x.oAST.Lexeme;
+    Expr l = x.lAST;
+    Expr r = x.rAST;
+    if (op.equals("&&") && l instanceof BoolExpr) {
+      return ((BoolExpr) l).astBL.GetValue() ? r : l;
+    }
+    if (op.equals("||") && l instanceof BoolExpr) {
+      return ((BoolExpr) l).astBL.GetValue() ? l : r;
+    }
+    if (l instanceof IntExpr && r instanceof IntExpr) {
+      int a = ((IntExpr) l).GetValue();
+      int b = ((IntExpr) r).GetValue();
+      if (op.equals("+")) {
+        return intExpr(a + b, x.pos);
+      } else if (op.equals("-")) {
+        return intExpr(a - b, x.pos);
+      } else if (op.equals("*")) {
+        return intExpr(a * b, x.pos);
+      } else if (op.equals("/")) {
+        // Integer.MIN_VALUE / -1 wraps like idiv does:
+        return b == 0 ? x : intExpr(a / b, x.pos);
+      } else if (op.equals("<")) {
+        return boolExpr(a < b, x.pos);
+      } else if (op.equals("<=")) {
+        return boolExpr(a <= b, x.pos);
+      } else if (op.equals(">")) {
+        return boolExpr(a > b, x.pos);
+      } else if (op.equals(">=")) {
+        return boolExpr(a >= b, x.pos);
+      } else if (op.equals("==")) {
+        return boolExpr(a == b, x.pos);
+      } else if (op.equals("!=")) {
+        return boolExpr(a != b, x.pos);
+      }
+    } else if (l instanceof FloatExpr && r instanceof FloatExpr) {
+      float a = ((FloatExpr) l).astFL.GetValue();
+      float b = ((FloatExpr) r).astFL.GetValue();
+      if (op.equals("+")) {
+        return floatExpr(a + b, x);
+      } else if (op.equals("-")) {
+        return floatExpr(a - b, x);
+      } else if (op.equals("*")) {
+        return floatExpr(a * b, x);
+      } else if (op.equals("/")) {
+        return b == 0.0f ? x : floatExpr(a / b, x);
+      } else if (op.equals("<")) {
+        return boolExpr(a < b, x.pos);
+      } else if (op.equals("<=")) {
+        return boolExpr(a <= b, x.pos);
+      } else if (op.equals(">")) {
+        return boolExpr(a > b, x.pos);
+      } else if (op.equals(">=")) {
+        return boolExpr(a >= b, x.pos);
+      } else if (op.equals("==")) {
+        return boolExpr(a == b, x.pos);
+      } else if (op.equals("!=")) {
+        return boolExpr(a != b, x.pos);
+      }
+    } else if (l instanceof BoolExpr && r instanceof BoolExpr) {
+      boolean a = ((BoolExpr) l).astBL.GetValue();
+      boolean b = ((BoolExpr) r).astBL.GetValue();
+      if (op.equals("==")) {
+        return boolExpr(a == b, x.pos);
+      } else if (op.equals("!=")) {
+        return boolExpr(a != b, x.pos);
+      }
+    }
+    return x;
+  }
+
+  private Expr foldUnary(UnaryExpr x) {
+    String op = x.oAST.Lexeme;
+    Expr e = x.eAST;
+    if (e instanceof IntExpr) {
+      int a = ((IntExpr) e).GetValue();
+      if (op.equals("i2f")) {
+        return floatExpr((float) a, x);
+      } else if (op.equals("-")) {
+        return intExpr(-a, x.pos);
+      } else if (op.equals("+")) {
+        return e;
+      }
+    } else if (e instanceof FloatExpr) {
+      float a = ((FloatExpr) e).astFL.GetValue();
+      if (op.equals("-")) {
+        return floatExpr(-a, x);
+      } else if (op.equals("+")) {
+        return e;
+      }
+    } else if (e instanceof BoolExpr && op.equals("!")) {
+      return boolExpr(!((BoolExpr) e).astBL.GetValue(), x.pos);
+    }
+    return x;
+  }
+
+  private Expr intExpr(int value, SourcePos pos) {
+    IntExpr e = new IntExpr(new IntLiteral(Integer.toString(value), pos), pos);
+    e.type = StdEnvironment.intType;
+    return e;
+  }
+
+  // Returns x unfolded if value has no literal representation:
+  private Expr floatExpr(float value, Expr x) {
+    if (Float.isNaN(value) || Float.isInfinite(value)) {
+      return x;
+    }
+    FloatExpr e = new FloatExpr(new FloatLiteral(Float.toString(value), x.pos), x.pos);
+    e.type = StdEnvironment.floatType;
+    return e;
+  }
+
+  private Expr boolExpr(boolean value, SourcePos pos) {
+    BoolExpr e = new BoolExpr(new BoolLiteral(Boolean.toString(value), pos), pos);
+    e.type = StdEnvironment.boolType;
+    return e;
+  }
+
+  /*
+   *
+   * Visitor methods: schedule the children, then fold the expression
+   * children of the node.
+   *
+   */
+
+  public void visit(Program x) {
+    walk.visit(x.D);
+  }
+
+  public void visit(EmptyDecl x) {
+  }
+
+  public void visit(FunDecl x) {
+    walk.visit(x.paramsAST);
+    walk.visit(x.stmtAST);
+  }
+
+  public void visit(VarDecl x) {
+    walk.visit(x.eAST);
+    walk.then(() -> x.eAST = fold(x.eAST));
+  }
+
+  public void visit(TypeDecl x) {
+  }
+
+  public void visit(FormalParamDecl x) {
+  }
+
+  public void visit(FormalParamDeclSequence x) {
+  }
+
+  public void visit(EmptyFormalParamDecl x) {
+  }
+
+  public void visit(DeclSequence x) {
+    walk.visit(x.D1);
+    walk.visit(x.D2);
+  }
+
+  public void visit(AssignStmt x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> x.rAST = fold(x.rAST));
+  }
+
+  public void visit(IfStmt x) {
+    walk.visit(x.eAST);
+    walk.then(() -> x.eAST = fold(x.eAST));
+    walk.visit(x.thenAST);
+    walk.visit(x.elseAST);
+  }
+
+  public void visit(WhileStmt x) {
+    walk.visit(x.eAST);
+    walk.then(() -> x.eAST = fold(x.eAST));
+    walk.visit(x.stmtAST);
+  }
+
+  public void visit(ForStmt x) {
+    walk.visit(x.e1AST);
+    walk.visit(x.e2AST);
+    walk.visit(x.e3AST);
+    walk.then(() -> {
+      x.e1AST = fold(x.e1AST);
+      x.e2AST = fold(x.e2AST);
+      x.e3AST = fold(x.e3AST);
+    });
+    walk.visit(x.stmtAST);
+  }
+
+  public void visit(ReturnStmt x) {
+    walk.visit(x.eAST);
+    walk.then(() -> x.eAST = fold(x.eAST));
+  }
+
+  public void visit(CompoundStmt x) {
+    walk.visit(x.astDecl);
+    walk.visit(x.astStmt);
+  }
+
+  public void visit(EmptyCompoundStmt x) {
+  }
+
+  public void visit(EmptyStmt x) {
+  }
+
+  public void visit(StmtSequence x) {
+    walk.visit(x.s1AST);
+    walk.visit(x.s2AST);
+  }
+
+  public void visit(CallStmt x) {
+    walk.visit(x.eAST);
+  }
+
+  public void visit(VarExpr x) {
+  }
+
+  public void visit(AssignExpr x) {
+    walk.visit(x.rAST);
+    walk.then(() -> x.rAST = fold(x.rAST));
+  }
+
+  public void visit(IntExpr x) {
+  }
+
+  public void visit(FloatExpr x) {
+  }
+
+  public void visit(BoolExpr x) {
+  }
+
+  public void visit(ArrayExpr x) {
+    walk.visit(x.indexAST);
+    walk.then(() -> x.indexAST = fold(x.indexAST));
+  }
+
+  public void visit(StringExpr x) {
+  }
+
+  public void visit(BinaryExpr x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> {
+      x.lAST = fold(x.lAST);
+      x.rAST = fold(x.rAST);
+    });
+  }
+
+  public void visit(UnaryExpr x) {
+    walk.visit(x.eAST);
+    walk.then(() -> x.eAST = fold(x.eAST));
+  }
+
+  public void visit(EmptyExpr x) {
+  }
+
+  public void visit(ActualParam x) {
+    walk.visit(x.pAST);
+    walk.then(() -> x.pAST = fold(x.pAST));
+  }
+
+  public void visit(EmptyActualParam x) {
+  }
+
+  public void visit(ActualParamSequence x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(CallExpr x) {
+    walk.visit(x.paramAST);
+  }
+
+  public void visit(ExprSequence x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+    walk.then(() -> x.lAST = fold(x.lAST));
+  }
+
+  public void visit(ID x) {
+  }
+
+  public void visit(Operator x) {
+  }
+
+  public void visit(IntLiteral x) {
+  }
+
+  public void visit(FloatLiteral x) {
+  }
+
+  public void visit(BoolLiteral x) {
+  }
+
+  public void visit(StringLiteral x) {
+  }
+
+  public void visit(IntType x) {
+  }
+
+  public void visit(FloatType x) {
+  }
+
+  public void visit(BoolType x) {
+  }
+
+  public void visit(VoidType x) {
+  }
+
+  public void visit(StringType x) {
+  }
+
+  public void visit(ArrayType x) {
+  }
+
+  public void visit(ErrorType x) {
+  }
+
+}
@@ -0,0 +1,655 @@
+package minic.optimizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import minic.ErrorReporter;
+import minic.StdEnvironment;
+import minic.astgen.*;
+
+/** RangeAnalysis visitor class.
+ *
+ * <p>Computes the range of the index of the array accesses in a checked
+ * AST, for constant indices and for indices i + c and c - i, where i is the
+ * induction variable of a counted for loop and c a constant, and compares
+ * it with the size of the ArrayType of the array. An access that is
+ * provably out of bounds is reported as a warning: the JVM would throw an
+ * ArrayIndexOutOfBoundsException there.
+ *
+ * <p>A for loop is counted if it has the form
+ * <pre>
+ *   for (i = E; i &lt; L; i = i + c) S
+ * </pre>
+ * (or with &lt;=, or with &gt; or &gt;= and i - c), with a local int
+ * variable i that S does not assign, a constant step c, and an invariant
+ * limit L: L calls no function, reads no array, and reads no variable
+ * that the loop assigns, nor a global variable if the loop calls a
+ * function. In S, i then lies between the value of E and the last value
+ * before L. The Emitter generates the counted loops in the shape that the
+ * JIT compilers of the JVM recognize as counted loops, with L in a local
+ * variable (see getCountedLoop()), so that their range check elimination
+ * can remove the bounds checks of the accesses a[i + c] in S.
+ *
+ * <p>Whether a loop is counted is only known when the whole loop has
+ * been visited, so the accesses in S are kept with their loop until then.
+ */
+public class RangeAnalysis implements Visitor {
+
+  /** CountedLoop class: what the Emitter needs to know of a counted loop. */
+  public static final class CountedLoop {
+
+    /** The limit L, the operand of the condition that is not i. */
+    public final Expr limit;
+    /** True if L is evaluated once, before the loop, into a local
+     * variable: it is neither a literal nor a local variable.
+     */
+    public final boolean hoistLimit;
+    /** True if the condition holds for the initial value of i, so that
+     * it need not be tested before the first iteration.
+     */
+    public final boolean entered;
+
+    CountedLoop(Expr limit, boolean hoistLimit, boolean entered) {
+      this.limit = limit;
+      this.hoistLimit = hoistLimit;
+      this.entered = entered;
+    }
+  }
+
+  // A for loop that is being visited:
+  private static final class Loop {
+    ForStmt stmt;
+    // For the form of a counted loop, else var is null:
+    Decl var;
+    String op; // <, <=, > or >=, with i on the left
+    Expr limit;
+    int step;
+    Integer init;
+    Integer limitValue;
+    boolean entered;
+    // The guard depth of the body, once it is being visited:
+    boolean inBody;
+    int guards;
+    // What the condition, the update and the body do:
+    HashSet<Decl> assigned = new HashSet<Decl>();
+    boolean hasCall;
+    boolean hasReturn;
+    ArrayList<Access> accesses = new ArrayList<Access>();
+  }
+
+  // An access a[i + offset], or a[offset - i] if negated, to an array of
+  // the given size in a loop:
+  private static final class Access {
+    ArrayExpr expr;
+    int offset;
+    boolean negated;
+    int size;
+    // True if each iteration that gets to the end of the body executes it:
+    boolean unconditional;
+  }
+
+  private ErrorReporter reporter;
+  private Walker walk;
+  private HashSet<Decl> globals;
+  private boolean inFunction;
+  // The for loops around the node visited, innermost last:
+  private ArrayList<Loop> loops;
+  // The number of if statements, while loops, for loops that are not
+  // entered and right operands of && and || around the node visited:
+  private int guards;
+  private HashMap<ForStmt, CountedLoop> countedLoops;
+  private int nrInBounds;
+  private int nrOutOfBounds;
+  private int nrUnknown;
+
+  /** Constructor of the RangeAnalysis visitor class. */
+  public RangeAnalysis(ErrorReporter reporter) {
+    this.reporter = reporter;
+    globals = new HashSet<Decl>();
+    loops = new ArrayList<Loop>();
+    countedLoops = new HashMap<ForStmt, CountedLoop>();
+  }
+
+  /** Method analyze: analyze the array accesses and for loops of the
+   * given program.
+   */
+  public void analyze(Program progAst) {
+    walk = new Walker(this);
+    walk.walk(progAst);
+  }
+
+  /** The CountedLoop of the for loop x, or null if x is not counted. */
+  public CountedLoop getCountedLoop(ForStmt x) {
+    return countedLoops.get(x);
+  }
+
+  /** The statistics of analyze(), one line per figure. */
+  public String getStatistics() {
+    return "; range: " + countedLoops.size() + " counted loops\n"
+        + "; range: " + nrInBounds + " array accesses in bounds\n"
+        + "; range: " + nrOutOfBounds + " array accesses out of bounds\n"
+        + "; range: " + nrUnknown + " array accesses not known\n";
+  }
+
+  /*
+   * The form of a counted loop.
+   */
+
+  private Loop getShape(ForStmt x) {
+    Loop loop = new Loop();
+    loop.stmt = x;
+    if (!(x.e1AST instanceof AssignExpr) || !(x.e2AST instanceof BinaryExpr)
+        || !(x.e3AST instanceof AssignExpr)) {
+      return loop;
+    }
+    AssignExpr init = (AssignExpr) x.e1AST;
+    BinaryExpr cond = (BinaryExpr) x.e2AST;
+    AssignExpr update = (AssignExpr) x.e3AST;
+    Decl var = getVar(init.lAST);
+    if (var == null || globals.contains(var)
+        || !getType(var).Tequal(StdEnvironment.intType)
+        || getVar(update.lAST) != var) {
+      return loop;
+    }
+    String op = cond.oAST.Lexeme;
+    Expr limit;
+    if (getVar(cond.lAST) == var) {
+      limit = cond.rAST;
+    } else if (getVar(cond.rAST) == var) {
+      // L > i  =>  i < L
+      limit = cond.lAST;
+      op = op.equals("<") ? ">" : op.equals("<=") ? ">="
+          : op.equals(">") ? "<" : op.equals(">=") ? "<=" : op;
+    } else {
+      return loop;
+    }
+    Integer step = getStep(update.rAST, var);
+    if (step == null || !(op.equals("<") || op.equals("<=")
+        || op.equals(">") || op.equals(">="))
+        || (step > 0) != (op.equals("<") || op.equals("<="))) {
+      return loop;
+    }
+    loop.var = var;
+    loop.op = op;
+    loop.limit = limit;
+    loop.step = step;
+    loop.init = getIntConstant(init.rAST);
+    loop.limitValue = getIntConstant(limit);
+    if (loop.init != null && loop.limitValue != null) {
+      int a = loop.init;
+      int b = loop.limitValue;
+      loop.entered = op.equals("<") ? a < b : op.equals("<=") ? a <= b
+          : op.equals(">") ? a > b : a >= b;
+    }
+    return loop;
+  }
+
+  // The step c of the update i + c, c + i or i - c of var, or null:
+  private Integer getStep(Expr e, Decl var) {
+    if (!(e instanceof BinaryExpr)) {
+      return null;
+    }
+    BinaryExpr b = (BinaryExpr) e;
+    String op = b.oAST.Lexeme;
+    Integer c = null;
+    if (getVar(b.lAST) == var && (op.equals("+") || op.equals("-"))) {
+      c = getIntConstant(b.rAST);
+      if (c != null && op.equals("-")) {
+        c = c == Integer.MIN_VALUE ? null : -c;
+      }
+    } else if (getVar(b.rAST) == var && op.equals("+")) {
+      c = getIntConstant(b.lAST);
+    }
+    return c == null || c == 0 ? null : c;
+  }
+
+  // True if the limit of loop does not change while the loop runs:
+  private boolean isInvariant(Expr limit, Loop loop) {
+    ArrayList<Expr> work = new ArrayList<Expr>();
+    work.add(limit);
+    while (!work.isEmpty()) {
+      Expr e = work.remove(work.size() - 1);
+      if (e instanceof IntExpr) {
+        continue;
+      } else if (e instanceof VarExpr) {
+        Decl d = getVar(e);
+        if (d == null || d == loop.var || loop.assigned.contains(d)
+            || !getType(d).Tequal(StdEnvironment.intType)
+            || (globals.contains(d) && loop.hasCall)) {
+          return false;
+        }
+      } else if (e instanceof UnaryExpr) {
+        String op = ((UnaryExpr) e).oAST.Lexeme;
+        if (!op.equals("-") && !op.equals("+")) {
+          return false;
+        }
+        work.add(((UnaryExpr) e).eAST);
+      } else if (e instanceof BinaryExpr) {
+        String op = ((BinaryExpr) e).oAST.Lexeme;
+        if (!op.equals("+") && !op.equals("-") && !op.equals("*")
+            && !op.equals("/")) {
+          return false;
+        }
+        work.add(((BinaryExpr) e).lAST);
+        work.add(((BinaryExpr) e).rAST);
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * The ranges of the indices.
+   */
+
+  // Post-order part of visit(ArrayExpr).
+  private void check(ArrayExpr x) {
+    int size = getSize(x);
+    Integer c = getIntConstant(x.indexAST);
+    if (c != null) {
+      if (c >= 0 && c < size) {
+        nrInBounds++;
+      } else {
+        reportOutOfBounds(x, size);
+      }
+      return;
+    }
+    // i, i + c, c + i, i - c or c - i:
+    Decl var = getVar(x.indexAST);
+    int offset = 0;
+    boolean negated = false;
+    if (var == null && x.indexAST instanceof BinaryExpr) {
+      BinaryExpr b = (BinaryExpr) x.indexAST;
+      String op = b.oAST.Lexeme;
+      Integer k = null;
+      if (op.equals("+") || op.equals("-")) {
+        var = getVar(b.lAST);
+        k = getIntConstant(b.rAST);
+        if (var == null) {
+          var = getVar(b.rAST);
+          k = getIntConstant(b.lAST);
+          negated = op.equals("-");
+        }
+      }
+      if (k == null || (op.equals("-") && !negated
+          && k == Integer.MIN_VALUE)) {
+        var = null;
+      } else {
+        offset = op.equals("-") && !negated ? -k : k;
+      }
+    }
+    for (int n = loops.size() - 1; var != null && n >= 0; n--) {
+      Loop loop = loops.get(n);
+      if (loop.var == var) {
+        if (!loop.inBody) {
+          break;
+        }
+        Access a = new Access();
+        a.expr = x;
+        a.offset = offset;
+        a.negated = negated;
+        a.size = size;
+        a.unconditional = guards == loop.guards;
+        loop.accesses.add(a);
+        return;
+      }
+    }
+    nrUnknown++;
+  }
+
+  // When loop has been visited: is it counted, and where is i?
+  private void resolve(Loop loop) {
+    boolean counted = loop.var != null && !loop.assigned.contains(loop.var)
+        && isInvariant(loop.limit, loop);
+    if (!counted) {
+      nrUnknown += loop.accesses.size();
+      return;
+    }
+    boolean hoist = !(loop.limit instanceof IntExpr)
+        && !(loop.limit instanceof VarExpr && !globals.contains(
+            getVar(loop.limit)));
+    countedLoops.put(loop.stmt,
+        new CountedLoop(loop.limit, hoist, loop.entered));
+    // The values lo .. hi of i in the body. i moves from the initial value
+    // towards the limit, as long as i + c does not wrap around:
+    long lo;
+    long hi;
+    boolean exact = loop.init != null && loop.limitValue != null;
+    if (loop.step > 0) {
+      lo = loop.init != null ? loop.init : Integer.MIN_VALUE;
+      hi = loop.limitValue != null ? loop.limitValue : Integer.MAX_VALUE;
+      hi = loop.op.equals("<") ? hi - 1 : hi;
+      if (exact && lo <= hi) {
+        hi = lo + (hi - lo) / loop.step * loop.step;
+      }
+      if (hi + loop.step > Integer.MAX_VALUE) {
+        lo = Integer.MIN_VALUE;
+        exact = false;
+      }
+    } else {
+      hi = loop.init != null ? loop.init : Integer.MAX_VALUE;
+      lo = loop.limitValue != null ? loop.limitValue : Integer.MIN_VALUE;
+      lo = loop.op.equals(">") ? lo + 1 : lo;
+      if (exact && lo <= hi) {
+        lo = hi - (hi - lo) / -loop.step * -loop.step;
+      }
+      if (lo + loop.step < Integer.MIN_VALUE) {
+        hi = Integer.MAX_VALUE;
+        exact = false;
+      }
+    }
+    for (Access a : loop.accesses) {
+      long first = a.negated ? a.offset - hi : lo + a.offset;
+      long last = a.negated ? a.offset - lo : hi + a.offset;
+      if (lo > hi || (first >= 0 && last < a.size)) {
+        // In bounds, or never executed:
+        nrInBounds++;
+      } else if (first < Integer.MIN_VALUE || last > Integer.MAX_VALUE) {
+        // i + c may wrap around:
+        nrUnknown++;
+      } else if (last < 0 || first >= a.size) {
+        // Out of bounds in all iterations:
+        reportOutOfBounds(a.expr, a.size);
+      } else if (exact && loop.entered && !loop.hasReturn
+          && a.unconditional) {
+        // Out of bounds in the first or the last iteration:
+        reportOutOfBounds(a.expr, a.size);
+      } else {
+        nrUnknown++;
+      }
+    }
+  }
+
+  private void reportOutOfBounds(ArrayExpr x, int size) {
+    nrOutOfBounds++;
+    reporter.reportWarning("array index out of bounds, the size is %",
+        Integer.toString(size), x.pos);
+  }
+
+  private void noteAssignment(Expr target) {
+    Decl d = getVar(target);
+    if (d != null) {
+      for (Loop loop : loops) {
+        loop.assigned.add(d);
+      }
+    }
+  }
+
+  /*
+   * Helpers on the AST.
+   */
+
+  // The declaration of the variable e, or null if e is not a VarExpr:
+  private static Decl getVar(Expr e) {
+    if (e instanceof VarExpr && ((VarExpr) e).Ident.declAST instanceof Decl) {
+      return (Decl) ((VarExpr) e).Ident.declAST;
+    }
+    return null;
+  }
+
+  private static Type getType(Decl d) {
+    if (d instanceof VarDecl) {
+      return ((VarDecl) d).tAST;
+    } else if (d instanceof FormalParamDecl) {
+      return ((FormalParamDecl) d).astType;
+    }
+    return StdEnvironment.errorType;
+  }
+
+  // The size of the array of x:
+  private static int getSize(ArrayExpr x) {
+    return ((ArrayType) getType(getVar(x.idAST))).GetRange();
+  }
+
+  // The value of e if e is an int literal, possibly negated, else null:
+  private static Integer getIntConstant(Expr e) {
+    boolean negate = false;
+    while (e instanceof UnaryExpr) {
+      String op = ((UnaryExpr) e).oAST.Lexeme;
+      if (op.equals("-")) {
+        negate = !negate;
+      } else if (!op.equals("+")) {
+        return null;
+      }
+      e = ((UnaryExpr) e).eAST;
+    }
+    if (!(e instanceof IntExpr)) {
+      return null;
+    }
+    int value = ((IntExpr) e).GetValue();
+    return negate ? -value : value;
+  }
+
+  /*
+   *
+   * Visitor methods: keep track of the loops and the guards around the
+   * node, and of what the loops assign and call.
+   *
+   */
+
+  public void visit(Program x) {
+    walk.visit(x.D);
+  }
+
+  public void visit(EmptyDecl x) {
+  }
+
+  public void visit(FunDecl x) {
+    inFunction = true;
+    walk.visit(x.stmtAST);
+    walk.then(() -> inFunction = false);
+  }
+
+  public void visit(VarDecl x) {
+    if (!inFunction) {
+      globals.add(x);
+    }
+    walk.visit(x.eAST);
+  }
+
+  public void visit(TypeDecl x) {
+  }
+
+  public void visit(FormalParamDecl x) {
+  }
+
+  public void visit(FormalParamDeclSequence x) {
+  }
+
+  public void visit(EmptyFormalParamDecl x) {
+  }
+
+  public void visit(DeclSequence x) {
+    walk.visit(x.D1);
+    walk.visit(x.D2);
+  }
+
+  public void visit(AssignStmt x) {
+    noteAssignment(x.lAST);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(IfStmt x) {
+    walk.visit(x.eAST);
+    walk.then(() -> guards++);
+    walk.visit(x.thenAST);
+    walk.visit(x.elseAST);
+    walk.then(() -> guards--);
+  }
+
+  public void visit(WhileStmt x) {
+    guards++;
+    walk.visit(x.eAST);
+    walk.visit(x.stmtAST);
+    walk.then(() -> guards--);
+  }
+
+  public void visit(ForStmt x) {
+    Loop loop = getShape(x);
+    walk.visit(x.e1AST);
+    walk.then(() -> {
+      // The update of an inner loop assigns in the outer ones:
+      if (x.e3AST instanceof AssignExpr) {
+        noteAssignment(((AssignExpr) x.e3AST).lAST);
+      }
+      loops.add(loop);
+      if (!loop.entered) {
+        guards++;
+      }
+    });
+    walk.visit(x.e2AST);
+    if (x.e3AST instanceof AssignExpr) {
+      walk.visit(((AssignExpr) x.e3AST).rAST);
+    }
+    walk.then(() -> {
+      loop.inBody = true;
+      loop.guards = guards;
+    });
+    walk.visit(x.stmtAST);
+    walk.then(() -> {
+      loops.remove(loops.size() - 1);
+      if (!loop.entered) {
+        guards--;
+      }
+      resolve(loop);
+    });
+  }
+
+  public void visit(ReturnStmt x) {
+    for (Loop loop : loops) {
+      loop.hasReturn = true;
+    }
+    walk.visit(x.eAST);
+  }
+
+  public void visit(CompoundStmt x) {
+    walk.visit(x.astDecl);
+    walk.visit(x.astStmt);
+  }
+
+  public void visit(EmptyCompoundStmt x) {
+  }
+
+  public void visit(EmptyStmt x) {
+  }
+
+  public void visit(StmtSequence x) {
+    walk.visit(x.s1AST);
+    walk.visit(x.s2AST);
+  }
+
+  public void visit(CallStmt x) {
+    walk.visit(x.eAST);
+  }
+
+  public void visit(VarExpr x) {
+  }
+
+  public void visit(AssignExpr x) {
+    noteAssignment(x.lAST);
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(IntExpr x) {
+  }
+
+  public void visit(FloatExpr x) {
+  }
+
+  public void visit(BoolExpr x) {
+  }
+
+  public void visit(ArrayExpr x) {
+    walk.visit(x.indexAST);
+    walk.then(() -> check(x));
+  }
+
+  public void visit(StringExpr x) {
+  }
+
+  public void visit(BinaryExpr x) {
+    String op = x.oAST.Lexeme;
+    walk.visit(x.lAST);
+    if (op.equals("&&") || op.equals("||")) {
+      walk.then(() -> guards++);
+      walk.visit(x.rAST);
+      walk.then(() -> guards--);
+    } else {
+      walk.visit(x.rAST);
+    }
+  }
+
+  public void visit(UnaryExpr x) {
+    walk.visit(x.eAST);
+  }
+
+  public void visit(EmptyExpr x) {
+  }
+
+  public void visit(ActualParam x) {
+    walk.visit(x.pAST);
+  }
+
+  public void visit(EmptyActualParam x) {
+  }
+
+  public void visit(ActualParamSequence x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(CallExpr x) {
+    for (Loop loop : loops) {
+      loop.hasCall = true;
+    }
+    walk.visit(x.paramAST);
+  }
+
+  public void visit(ExprSequence x) {
+    walk.visit(x.lAST);
+    walk.visit(x.rAST);
+  }
+
+  public void visit(ID x) {
+  }
+
+  public void visit(Operator x) {
+  }
+
+  public void visit(IntLiteral x) {
+  }
+
+  public void visit(FloatLiteral x) {
+  }
+
+  public void visit(BoolLiteral x) {
+  }
+
+  public void visit(StringLiteral x) {
+  }
+
+  public void visit(IntType x) {
+  }
+
+  public void visit(FloatType x) {
+  }
+
+  public void visit(BoolType x) {
+  }
+
+  public void visit(VoidType x) {
+  }
+
+  public void visit(StringType x) {
+  }
+
+  public void visit(ArrayType x) {
+  }
+
+  public void visit(ErrorType x) {
+  }
+
+}
@@ -2,17 +2,19 @@ package minic.semanticanalysis;
 
 import minic.astgen.Decl;
 
-/** An instance of class IdEntry represents a scopestack entry. */
+/** An instance of class IdEntry represents a scopestack entry.
+ * Entries are immutable, so scope stacks can share them.
+ */
 public class IdEntry {
 
   // Identifier lexeme of this entry:
-  protected String id;
+  protected final String id;
   // AST that has the declaration of this entry:
-  protected Decl declAst;
+  protected final Decl declAst;
   // Scope-stack level:
-  protected int level;
+  protected final int level;
   // Link to previous scope stack entry to support look-up:
-  protected IdEntry previous;
+  protected final IdEntry previous;
 
   /** Constructor of scopestack entry class. */
   public IdEntry(String id, Decl declAst, int level, IdEntry previous) {
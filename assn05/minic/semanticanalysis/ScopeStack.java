@@ -1,5 +1,6 @@
 package minic.semanticanalysis;
 
+import minic.StdEnvironment;
 import minic.astgen.*;
 
 /** Class ScopeStack, for MiniC scopestacks. */
@@ -13,6 +14,44 @@ final class ScopeStack {
     latest = null;
   }
 
+  /*
+   * Frozen global scope with the entries of the StdEnvironment. It is built
+   * on first use and shared by all scope stacks: a scope stack only ever
+   * adds entries on top of it.
+   */
+  private static final class Prelude {
+    static final IdEntry entries;
+
+    static {
+      IdEntry e = null;
+      e = new IdEntry("int", StdEnvironment.intTypeDecl, 1, e);
+      e = new IdEntry("bool", StdEnvironment.boolTypeDecl, 1, e);
+      e = new IdEntry("float", StdEnvironment.floatTypeDecl, 1, e);
+      e = new IdEntry("void", StdEnvironment.voidTypeDecl, 1, e);
+      e = new IdEntry("getInt", StdEnvironment.getInt, 1, e);
+      e = new IdEntry("putInt", StdEnvironment.putInt, 1, e);
+      e = new IdEntry("getBool", StdEnvironment.getBool, 1, e);
+      e = new IdEntry("putBool", StdEnvironment.putBool, 1, e);
+      e = new IdEntry("getFloat", StdEnvironment.getFloat, 1, e);
+      e = new IdEntry("putFloat", StdEnvironment.putFloat, 1, e);
+      e = new IdEntry("getString", StdEnvironment.getString, 1, e);
+      e = new IdEntry("putString", StdEnvironment.putString, 1, e);
+      e = new IdEntry("putLn", StdEnvironment.putLn, 1, e);
+      entries = e;
+    }
+  }
+
+  /** Method withStdEnvironment().
+   *
+   *<p>Returns a new scope stack on level 1 that already contains the
+   * built-in types and functions of the StdEnvironment.
+   */
+  public static ScopeStack withStdEnvironment() {
+    ScopeStack s = new ScopeStack();
+    s.latest = Prelude.entries;
+    return s;
+  }
+
   /* Method openScope().
    *
    *<p>Opens a new level in the scope stack, 1 higher than the
@@ -24,6 +24,18 @@ SOLUTIONS_DIR="minic/codegen/tst/base/solutions"
 JAR_FILE="build/libs/MiniC-CodeGen.jar"
 JASMIN_JAR="resources/jasmin_2.4/jasmin.jar"
 
+# Extra compiler options, e.g. MINIC_OPTS="-ir -O0" ./test.sh
+MINIC_OPTS="${MINIC_OPTS:-}"
+
+# With -classfile, the compiler writes the .class file itself: Jasmin is
+# skipped, and the class is run with the bytecode verifier on. This needs
+# java.lang.classfile, which is final in JDK 25.
+CLASSFILE_MODE=0
+case " $MINIC_OPTS " in
+  *" -classfile "*) CLASSFILE_MODE=1 ;;
+esac
+MIN_CLASSFILE_JDK=25
+
 TEMP_DIR="/tmp/minic_codegen_test_$$"
 RESULTS_DIR="/tmp/minic_codegen_results_$$"
 
@@ -40,6 +52,7 @@ PREV_FAILED_TESTS=0
 PREV_PERCENTAGE=0
 declare -a PREV_FAILED_LIST
 RUN_COUNT=0
+BUILD_TASK=""
 
 # Pick a Jasmin assembler command
 jasmin_assemble() {
@@ -60,21 +73,82 @@ jasmin_assemble() {
 }
 
 build_project() {
-  # Try the most helpful tasks first (assignment provides these tasks)
-  local tasks=("jarNoScannerNoParserNoSem" "jarNoScannerNoParser" "jarNoScanner" "jar")
+  # Try the most helpful tasks first (assignment provides these tasks).
+  # jarProvidedFrontEnd runs our own driver with the provided scanner,
+  # parser and semantic analysis; the other jarNo* tasks also bring the
+  # provided driver, which does not know our options, so with MINIC_OPTS
+  # only our own driver will do.
+  local tasks=("jarProvidedFrontEnd" "jarNoScannerNoParserNoSem" "jarNoScannerNoParser" "jarNoScanner" "jar")
+  if [ -n "$MINIC_OPTS" ]; then
+    tasks=("jarProvidedFrontEnd" "jar")
+  fi
   for t in "${tasks[@]}"; do
     ./gradlew "$t" -q >/dev/null 2>&1
     if [ $? -eq 0 ] && [ -f "$JAR_FILE" ]; then
       echo -e "${GREEN}Build successful using task: ${t}${NC}"
+      BUILD_TASK="$t"
       return 0
     fi
   done
 
   echo -e "${RED}Build failed! Could not produce ${JAR_FILE}${NC}"
-  echo -e "${YELLOW}Try manually: ./gradlew jarNoScannerNoParserNoSem${NC}"
+  echo -e "${YELLOW}Try manually: ./gradlew jarProvidedFrontEnd${NC}"
   return 1
 }
 
+# True if the jar runs our own driver rather than the provided MiniC.class
+own_driver() {
+  [ "$BUILD_TASK" = "jarProvidedFrontEnd" ] || [ "$BUILD_TASK" = "jar" ]
+}
+
+# Drop the columns "a..b" from the diagnostics read from stdin
+strip_columns() {
+  sed -E 's/ [0-9]+\.\.[0-9]+, line / line /'
+}
+
+# Check that the optimizations a test is about fired. Each line of the
+# file $2 is "irdump: text" or "j: text": the text must be in the -irdump
+# output or in the Jasmin code of test $1 compiled with -ir, in dir $3;
+# with a leading "!", it must not be there. Prints the failed checks.
+check_passes() {
+  local testname="$1" checks="$2" dir="$3"
+  local rc=0 line kind text file
+  mkdir -p "$dir"
+  if ! (cd "$dir" && java -ea -jar "$ROOT_DIR/$JAR_FILE" -ir -irdump ir.txt \
+      "$ROOT_DIR/$TESTCASES_DIR/${testname}.mc" >compile.log 2>&1); then
+    echo "compilation with -ir -irdump failed"
+    return 1
+  fi
+  while IFS= read -r line || [ -n "$line" ]; do
+    case "$line" in
+      ''|'#'*) continue ;;
+    esac
+    kind="${line%%: *}"
+    text="${line#*: }"
+    case "${kind#!}" in
+      irdump) file="$dir/ir.txt" ;;
+      j) file="$dir/${testname}.j" ;;
+      *) echo "unknown check: $line"; rc=1; continue ;;
+    esac
+    if [ "$kind" != "${kind#!}" ]; then
+      if grep -qF -- "$text" "$file"; then
+        echo "unexpected in $(basename "$file"): $text"
+        rc=1
+      fi
+    elif ! grep -qF -- "$text" "$file"; then
+      echo "missing in $(basename "$file"): $text"
+      rc=1
+    fi
+  done < "$checks"
+  return $rc
+}
+
+# The major version of the java command, e.g. 25
+java_version() {
+  java -XshowSettings:properties -version 2>&1 \
+    | sed -n 's/^ *java\.specification\.version = \([0-9]*\).*/\1/p'
+}
+
 run_tests() {
   TOTAL_TESTS=0
   PASSED_TESTS=0
@@ -88,6 +162,17 @@ run_tests() {
   echo -e "${BLUE}========================================${NC}"
   echo ""
 
+  if [ "$CLASSFILE_MODE" -eq 1 ]; then
+    local jv
+    jv="$(java_version)"
+    if [ -z "$jv" ] || [ "$jv" -lt "$MIN_CLASSFILE_JDK" ]; then
+      echo -e "${RED}-classfile needs JDK ${MIN_CLASSFILE_JDK} or newer, found: java ${jv:-?}${NC}"
+      return 1
+    fi
+    echo -e "${YELLOW}Class file mode: no Jasmin, run with -Xverify:all (java ${jv})${NC}"
+    echo ""
+  fi
+
   echo -e "${YELLOW}Building project...${NC}"
   if ! build_project; then
     return 1
@@ -116,16 +201,23 @@ run_tests() {
     workdir="$TEMP_DIR/$testname"
     mkdir -p "$workdir"
 
-    # 1) Compile .mc -> .j (Emitter writes output in CWD), so run from workdir
+    # 1) Compile .mc -> .j, or .class with -classfile (the emitters write
+    #    the output in CWD), so run from workdir
     compile_log="$workdir/compile_${testname}.log"
     (
       cd "$workdir" || exit 1
-      java -ea -jar "$ROOT_DIR/$JAR_FILE" "$ROOT_DIR/$testfile" >"$compile_log" 2>&1
+      # shellcheck disable=SC2086
+      java -ea -jar "$ROOT_DIR/$JAR_FILE" $MINIC_OPTS "$ROOT_DIR/$testfile" >"$compile_log" 2>&1
     )
     comp_rc=$?
 
     generated_j="$workdir/${testname}.j"
-    if [ $comp_rc -ne 0 ] || [ ! -f "$generated_j" ]; then
+    generated_class="$workdir/${testname}.class"
+    generated="$generated_j"
+    if [ "$CLASSFILE_MODE" -eq 1 ]; then
+      generated="$generated_class"
+    fi
+    if [ $comp_rc -ne 0 ] || [ ! -f "$generated" ]; then
       echo -e "  ${RED}✗${NC} Test ${testname}: COMPILATION FAILED"
       FAILED_TESTS=$((FAILED_TESTS + 1))
       FAILED_LIST+=("$testname")
@@ -133,30 +225,68 @@ run_tests() {
       continue
     fi
 
-    # 2) Assemble .j -> .class
-    asm_log="$workdir/asm_${testname}.log"
-    (
-      cd "$workdir" || exit 1
-      jasmin_assemble "${testname}.j" >"$asm_log" 2>&1
-    )
-    asm_rc=$?
+    # Only our own driver reports the warnings of the range analysis.
+    # The columns are not compared: the provided parser does not record
+    # where every expression ends.
+    expected_warn="$SOLUTIONS_DIR/${testname}.warnings"
+    if own_driver && [ -f "$expected_warn" ]; then
+      if ! diff -u --ignore-all-space <(strip_columns < "$expected_warn") \
+          <(grep '^WARNING:' "$compile_log" | strip_columns) \
+          > "$RESULTS_DIR/diff_${testname}.txt" 2>&1; then
+        echo -e "  ${RED}✗${NC} Test ${testname}: WARNINGS DIFFER"
+        FAILED_TESTS=$((FAILED_TESTS + 1))
+        FAILED_LIST+=("$testname")
+        cp -f "$compile_log" "$RESULTS_DIR/${testname}_compile.log" 2>/dev/null
+        continue
+      fi
+      rm -f "$RESULTS_DIR/diff_${testname}.txt"
+    fi
 
-    generated_class="$workdir/${testname}.class"
-    if [ $asm_rc -ne 0 ] || [ ! -f "$generated_class" ]; then
-      echo -e "  ${RED}✗${NC} Test ${testname}: JASMIN ASSEMBLY FAILED"
-      FAILED_TESTS=$((FAILED_TESTS + 1))
-      FAILED_LIST+=("$testname")
-      cp -f "$asm_log" "$RESULTS_DIR/${testname}_asm.log" 2>/dev/null
-      continue
+    # The tests of the IR passes also check that the pass fired, which
+    # only our own driver can tell (-irdump).
+    expected_check="$SOLUTIONS_DIR/${testname}.check"
+    if own_driver && [ -f "$expected_check" ]; then
+      if ! check_passes "$testname" "$expected_check" "$workdir/check" \
+          > "$RESULTS_DIR/diff_${testname}.txt" 2>&1; then
+        echo -e "  ${RED}✗${NC} Test ${testname}: OPTIMIZATION CHECK FAILED"
+        FAILED_TESTS=$((FAILED_TESTS + 1))
+        FAILED_LIST+=("$testname")
+        continue
+      fi
+      rm -f "$RESULTS_DIR/diff_${testname}.txt"
     fi
 
-    # 3) Run bytecode
+    # 2) Assemble .j -> .class (not with -classfile)
+    asm_log="$workdir/asm_${testname}.log"
+    if [ "$CLASSFILE_MODE" -eq 0 ]; then
+      (
+        cd "$workdir" || exit 1
+        jasmin_assemble "${testname}.j" >"$asm_log" 2>&1
+      )
+      asm_rc=$?
+
+      if [ $asm_rc -ne 0 ] || [ ! -f "$generated_class" ]; then
+        echo -e "  ${RED}✗${NC} Test ${testname}: JASMIN ASSEMBLY FAILED"
+        FAILED_TESTS=$((FAILED_TESTS + 1))
+        FAILED_LIST+=("$testname")
+        cp -f "$asm_log" "$RESULTS_DIR/${testname}_asm.log" 2>/dev/null
+        continue
+      fi
+    fi
+
+    # 3) Run bytecode; the class files we write ourselves are verified in
+    #    full, also the ones the JVM would trust otherwise
     output_file="$workdir/output_${testname}.txt"
     run_log="$workdir/run_${testname}.log"
+    verify=""
+    if [ "$CLASSFILE_MODE" -eq 1 ]; then
+      verify="-Xverify:all"
+    fi
     (
       cd "$workdir" || exit 1
       # build/classes/java/main contains minic/lang runtime
-      java -cp "$ROOT_DIR/build/classes/java/main:." "$testname" >"$output_file" 2>"$run_log"
+      # shellcheck disable=SC2086
+      java $verify -cp "$ROOT_DIR/build/classes/java/main:." "$testname" >"$output_file" 2>"$run_log"
     )
     run_rc=$?
 
@@ -184,7 +314,7 @@ run_tests() {
       FAILED_TESTS=$((FAILED_TESTS + 1))
       FAILED_LIST+=("$testname")
       diff -u --ignore-all-space "$expected_out" "$output_file" > "$RESULTS_DIR/diff_${testname}.txt" 2>&1
-      cp -f "$generated_j" "$RESULTS_DIR/${testname}.j" 2>/dev/null
+      cp -f "$generated" "$RESULTS_DIR/" 2>/dev/null
       cp -f "$compile_log" "$RESULTS_DIR/${testname}_compile.log" 2>/dev/null
       cp -f "$asm_log" "$RESULTS_DIR/${testname}_asm.log" 2>/dev/null
       cp -f "$run_log" "$RESULTS_DIR/${testname}_run.log" 2>/dev/null